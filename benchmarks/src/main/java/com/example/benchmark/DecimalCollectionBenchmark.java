@@ -0,0 +1,92 @@
+package com.example.benchmark;
+
+import com.example.mutableDecimal.DecimalHashSet;
+import com.example.mutableDecimal.MutableDecimal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// compareTo and hashCode cost when amounts are grouped in collections
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DecimalCollectionBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private long[] unscaledValues;
+    private int[] scales;
+    private BigDecimal[] bigDecimals;
+    private MutableDecimal[] mutableDecimals;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        unscaledValues = new long[size];
+        scales = new int[size];
+        bigDecimals = new BigDecimal[size];
+        mutableDecimals = new MutableDecimal[size];
+        for (int i = 0; i < size; i++) {
+            // a quarter of the values repeat with a different scale
+            unscaledValues[i] = random.nextInt(size) * 100L;
+            scales[i] = 2 + random.nextInt(2);
+            bigDecimals[i] = BigDecimal.valueOf(unscaledValues[i], scales[i]);
+            mutableDecimals[i] = new MutableDecimal(unscaledValues[i], scales[i]);
+        }
+    }
+
+    @Benchmark
+    public int bigDecimalTreeSet() {
+        Set<BigDecimal> set = new TreeSet<>();
+        for (BigDecimal value : bigDecimals) set.add(value);
+        return set.size();
+    }
+
+    @Benchmark
+    public int mutableDecimalTreeSet() {
+        Set<MutableDecimal> set = new TreeSet<>();
+        for (MutableDecimal value : mutableDecimals) set.add(value);
+        return set.size();
+    }
+
+    @Benchmark
+    public int bigDecimalHashSet() {
+        // stripTrailingZeros makes the BigDecimal set agree with compareTo, as MutableDecimal does
+        Set<BigDecimal> set = new HashSet<>();
+        for (BigDecimal value : bigDecimals) set.add(value.stripTrailingZeros());
+        return set.size();
+    }
+
+    @Benchmark
+    public int mutableDecimalHashSet() {
+        Set<MutableDecimal> set = new HashSet<>();
+        for (MutableDecimal value : mutableDecimals) set.add(value);
+        return set.size();
+    }
+
+    @Benchmark
+    public int decimalHashSet() {
+        DecimalHashSet set = new DecimalHashSet();
+        for (int i = 0; i < unscaledValues.length; i++) set.add(unscaledValues[i], scales[i]);
+        return set.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.benchmark;
+
+import com.example.engine.Bindings;
+import com.example.engine.CompiledFormula;
+import com.example.engine.FormulaCalculator;
+import com.example.mutableDecimal.MutableDecimal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+// calculate() against compiled formulas, for both operation implementations and growing formula sizes
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FormulaCalculatorBenchmark {
+
+    @Param({"BIGDECIMAL", "MUTABLEDECIMAL", "ADAPTIVE"})
+    public FormulaCalculator.OPERATION_IMPLEMENTATION implementation;
+
+    // number of "(principal+fee)*rate/100" blocks in the formula
+    @Param({"1", "4", "16"})
+    public int formulaSize;
+
+    private FormulaCalculator calculator;
+    private String literalFormula;
+    private CompiledFormula compiledLiteralFormula;
+    private CompiledFormula compiledVariableFormula;
+    private CompiledFormula bytecodeVariableFormula;
+    private Bindings bindings;
+    private MutableDecimal result;
+
+    @Setup
+    public void setup() {
+        StringJoiner literal = new StringJoiner("+");
+        StringJoiner variable = new StringJoiner("+");
+        for (int i = 0; i < formulaSize; i++) {
+            literal.add("(100+950.45)*12/100");
+            variable.add("(principal+fee)*rate/100");
+        }
+        calculator = new FormulaCalculator(implementation);
+        literalFormula = literal.toString();
+        compiledLiteralFormula = calculator.compile(literalFormula);
+        compiledVariableFormula = calculator.compile(variable.toString());
+        bytecodeVariableFormula = calculator.compileToBytecode(variable.toString());
+        bindings = compiledVariableFormula.newBindings()
+                .set("principal", 100, 0)
+                .set("fee", 95045, 2)
+                .set("rate", 12, 0);
+        result = new MutableDecimal(0, 0);
+    }
+
+    @Benchmark
+    public String calculate() {
+        return calculator.calculate(literalFormula);
+    }
+
+    @Benchmark
+    public CompiledFormula compile() {
+        return calculator.compile(literalFormula);
+    }
+
+    @Benchmark
+    public String compiledEvaluate() {
+        return compiledLiteralFormula.evaluate();
+    }
+
+    @Benchmark
+    public String compiledEvaluateWithBindings() {
+        return compiledVariableFormula.evaluate(bindings);
+    }
+
+    @Benchmark
+    public MutableDecimal compiledEvaluateIntoResult() {
+        return compiledVariableFormula.evaluate(bindings, result);
+    }
+
+    @Benchmark
+    public MutableDecimal bytecodeEvaluateIntoResult() {
+        return bytecodeVariableFormula.evaluate(bindings, result);
+    }
+}
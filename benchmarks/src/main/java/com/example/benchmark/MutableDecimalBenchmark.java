@@ -0,0 +1,135 @@
+package com.example.benchmark;
+
+import com.example.mutableDecimal.MutableDecimal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// single arithmetic, parse and format operations of MutableDecimal against BigDecimal
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MutableDecimalBenchmark {
+
+    private static final String FIRST = "12345.6789";
+    private static final String SECOND = "2.35";
+
+    private BigDecimal firstBigDecimal;
+    private BigDecimal secondBigDecimal;
+    private MutableDecimal firstMutableDecimal;
+    private MutableDecimal secondMutableDecimal;
+    private MutableDecimal target;
+    private byte[] firstBytes;
+    private byte[] output;
+    private StringBuilder sb;
+
+    @Setup
+    public void setup() {
+        firstBigDecimal = new BigDecimal(FIRST);
+        secondBigDecimal = new BigDecimal(SECOND);
+        firstMutableDecimal = new MutableDecimal(FIRST);
+        secondMutableDecimal = new MutableDecimal(SECOND);
+        target = new MutableDecimal(0, 0);
+        firstBytes = FIRST.getBytes(StandardCharsets.US_ASCII);
+        output = new byte[32];
+        sb = new StringBuilder(32);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalAdd() {
+        return firstBigDecimal.add(secondBigDecimal);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalAdd() {
+        return firstMutableDecimal.add(secondMutableDecimal);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalAddIntoTarget() {
+        return firstMutableDecimal.add(secondMutableDecimal, target);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalMultiply() {
+        return firstBigDecimal.multiply(secondBigDecimal);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalMultiply() {
+        return firstMutableDecimal.multiply(secondMutableDecimal);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalMultiplyIntoTarget() {
+        return firstMutableDecimal.multiply(secondMutableDecimal, target);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalDivide() {
+        return firstBigDecimal.divide(secondBigDecimal, 2, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalDivide() {
+        return firstMutableDecimal.divide(secondMutableDecimal);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalDivideIntoTarget() {
+        return firstMutableDecimal.divide(secondMutableDecimal, 2, target);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalParse() {
+        return new BigDecimal(FIRST);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalParse() {
+        return new MutableDecimal(FIRST);
+    }
+
+    @Benchmark
+    public MutableDecimal mutableDecimalParseBytes() {
+        target.reset(firstBytes, 0, firstBytes.length);
+        return target;
+    }
+
+    @Benchmark
+    public String bigDecimalToString() {
+        // BigDecimal caches its string, a fresh instance keeps the comparison fair
+        return firstBigDecimal.add(BigDecimal.ZERO).toPlainString();
+    }
+
+    @Benchmark
+    public String mutableDecimalToString() {
+        return MutableDecimal.toString(firstMutableDecimal.getUnscaledValue(), firstMutableDecimal.getScale());
+    }
+
+    @Benchmark
+    public StringBuilder mutableDecimalAppendTo() {
+        sb.setLength(0);
+        return firstMutableDecimal.appendTo(sb);
+    }
+
+    @Benchmark
+    public int mutableDecimalWriteAscii() {
+        return firstMutableDecimal.writeAscii(output, 0);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.simd;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD kernels over columns of unscaled values sharing one scale, eg, cents at scale 2.
+// at a common scale decimal addition and comparison are long addition and comparison, and the product
+// of two columns at scale s is the long product at scale 2s, so values are never rescaled here.
+// overflow is detected lane by lane, a block holding an overflowing lane is redone with the scalar
+// Math.addExact / Math.multiplyExact path, which throws ArithmeticException like MutableDecimal does
+public final class SameScaleKernels {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    // int lanes as many as long lanes, for compare results
+    private static final VectorSpecies<Integer> INT_SPECIES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    private SameScaleKernels() {
+    }
+
+    // exact sum of the values, throws ArithmeticException if it does not fit in a long
+    public static long sum(long[] values) {
+        LongVector sums = LongVector.zero(SPECIES);
+        // sign bit set in a lane once one of its additions overflowed
+        LongVector overflow = LongVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(values.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector x = LongVector.fromArray(SPECIES, values, i);
+            LongVector sum = sums.add(x);
+            overflow = overflow.or(addOverflow(sums, x, sum));
+            sums = sum;
+        }
+        if (overflow.compare(VectorOperators.LT, 0).anyTrue())
+            return scalarSum(values);
+        try {
+            long sum = 0;
+            for (int lane = 0; lane < SPECIES.length(); lane++) sum = Math.addExact(sum, sums.lane(lane));
+            for (; i < values.length; i++) sum = Math.addExact(sum, values[i]);
+            return sum;
+        } catch (ArithmeticException e) {
+            // lane sums may overflow when combined while the total still fits
+            return scalarSum(values);
+        }
+    }
+
+    public static long[] add(long[] x, long[] y, long[] result) {
+        checkLength(x, y);
+        checkLength(x, result);
+        int bound = SPECIES.loopBound(x.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector a = LongVector.fromArray(SPECIES, x, i);
+            LongVector b = LongVector.fromArray(SPECIES, y, i);
+            LongVector sum = a.add(b);
+            if (addOverflow(a, b, sum).compare(VectorOperators.LT, 0).anyTrue()) {
+                for (int j = i; j < i + SPECIES.length(); j++) result[j] = Math.addExact(x[j], y[j]);
+            } else {
+                sum.intoArray(result, i);
+            }
+        }
+        for (; i < x.length; i++) result[i] = Math.addExact(x[i], y[i]);
+        return result;
+    }
+
+    // result is at twice the scale of the operands
+    public static long[] multiply(long[] x, long[] y, long[] result) {
+        checkLength(x, y);
+        checkLength(x, result);
+        int bound = SPECIES.loopBound(x.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector a = LongVector.fromArray(SPECIES, x, i);
+            LongVector b = LongVector.fromArray(SPECIES, y, i);
+            // the product of two int range values always fits, other lanes take the exact path
+            if (outsideIntRange(a).or(outsideIntRange(b)).anyTrue()) {
+                for (int j = i; j < i + SPECIES.length(); j++) result[j] = Math.multiplyExact(x[j], y[j]);
+            } else {
+                a.mul(b).intoArray(result, i);
+            }
+        }
+        for (; i < x.length; i++) result[i] = Math.multiplyExact(x[i], y[i]);
+        return result;
+    }
+
+    // result[i] is -1, 0 or 1 as x[i] is less than, equal to or greater than y[i]
+    public static int[] compare(long[] x, long[] y, int[] result) {
+        checkLength(x, y);
+        if (result.length != x.length)
+            throw new IllegalArgumentException(String.format("column lengths differ (%s, %s)", x.length, result.length));
+        LongVector zero = LongVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(x.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector a = LongVector.fromArray(SPECIES, x, i);
+            LongVector b = LongVector.fromArray(SPECIES, y, i);
+            LongVector signum = zero.blend(1, a.compare(VectorOperators.GT, b)).blend(-1, a.compare(VectorOperators.LT, b));
+            ((IntVector) signum.convertShape(VectorOperators.L2I, INT_SPECIES, 0)).intoArray(result, i);
+        }
+        for (; i < x.length; i++) result[i] = Long.compare(x[i], y[i]);
+        return result;
+    }
+
+    // sign bit set where x + y overflowed, both operands then have the sign opposite to the sum
+    private static LongVector addOverflow(LongVector x, LongVector y, LongVector sum) {
+        return x.lanewise(VectorOperators.XOR, sum).and(y.lanewise(VectorOperators.XOR, sum));
+    }
+
+    private static VectorMask<Long> outsideIntRange(LongVector x) {
+        return x.add(1L << 31).lanewise(VectorOperators.LSHR, 32).compare(VectorOperators.NE, 0);
+    }
+
+    // counts the wraps of the running sum so only a total outside the long range throws
+    private static long scalarSum(long[] values) {
+        long sum = 0;
+        long wraps = 0;
+        for (long x : values) {
+            long next = sum + x;
+            if (((sum ^ next) & (x ^ next)) < 0) wraps += x < 0 ? -1 : 1;
+            sum = next;
+        }
+        if (wraps != 0)
+            throw new ArithmeticException("long overflow");
+        return sum;
+    }
+
+    private static void checkLength(long[] x, long[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException(String.format("column lengths differ (%s, %s)", x.length, y.length));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.simd;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class SameScaleKernelsTest {
+
+    // not a multiple of any lane count, so the scalar tail runs too
+    private static final int LENGTH = 10_003;
+
+    @Test
+    public void matchesScalarTest() {
+        Random random = new Random(16);
+        long[] x = new long[LENGTH];
+        long[] y = new long[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = random.nextInt(2_000_000_000) - 1_000_000_000;
+            // some lanes beyond the int range take the exact multiply path
+            y[i] = i % 97 == 0 ? 3_000_000_000L - random.nextInt(1000) : random.nextInt(2_000_000) - 1_000_000;
+        }
+        long[] sum = SameScaleKernels.add(x, y, new long[LENGTH]);
+        long[] product = SameScaleKernels.multiply(x, y, new long[LENGTH]);
+        int[] comparison = SameScaleKernels.compare(x, y, new int[LENGTH]);
+        long total = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(x[i] + y[i], sum[i]);
+            Assertions.assertEquals(x[i] * y[i], product[i]);
+            Assertions.assertEquals(Long.compare(x[i], y[i]), comparison[i]);
+            total += x[i];
+        }
+        Assertions.assertEquals(total, SameScaleKernels.sum(x));
+        Assertions.assertEquals(0, SameScaleKernels.compare(x, x, new int[LENGTH])[LENGTH - 1]);
+    }
+
+    @Test
+    public void overflowTest() {
+        long[] x = new long[LENGTH];
+        long[] y = new long[LENGTH];
+        x[LENGTH / 2] = Long.MAX_VALUE;
+        y[LENGTH / 2] = 1;
+        Assertions.assertThrows(ArithmeticException.class, () -> SameScaleKernels.add(x, y, new long[LENGTH]));
+        y[LENGTH / 2] = 2;
+        Assertions.assertThrows(ArithmeticException.class, () -> SameScaleKernels.multiply(x, y, new long[LENGTH]));
+        x[LENGTH - 1] = 1;
+        Assertions.assertThrows(ArithmeticException.class, () -> SameScaleKernels.sum(x));
+    }
+
+    @Test
+    public void sumFitsAfterOverflowingLanesTest() {
+        // every lane overflows on its own, the total still fits
+        long[] x = new long[64];
+        for (int i = 0; i < 32; i++) x[i] = Long.MAX_VALUE;
+        for (int i = 32; i < 64; i++) x[i] = -Long.MAX_VALUE;
+        x[63] += 5;
+        Assertions.assertEquals(5, SameScaleKernels.sum(x));
+        Assertions.assertEquals(0, SameScaleKernels.sum(new long[0]));
+    }
+
+    @Test
+    public void lengthsDifferTest() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SameScaleKernels.add(new long[3], new long[4], new long[3]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SameScaleKernels.multiply(new long[3], new long[3], new long[2]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SameScaleKernels.compare(new long[3], new long[3], new int[4]));
+    }
+}
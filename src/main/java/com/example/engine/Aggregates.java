@@ -0,0 +1,205 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.DecimalAccumulator;
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// built in aggregate functions over array bindings, eg, SUM(amounts) / COUNT(amounts).
+// sums are exact, see DecimalAccumulator, so only a result out of range of the operation implementation fails.
+// arrays of PARALLEL_THRESHOLD values or more are split over the common ForkJoinPool
+final class Aggregates {
+
+    enum Function {
+        SUM,
+        AVG,
+        MIN,
+        MAX,
+        COUNT
+    }
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final Function[] FUNCTIONS = Function.values();
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    private Aggregates() {
+    }
+
+    // MUTABLEDECIMAL result, normalized, in stack.unscaledValues[index] and stack.scales[index].
+    // AVG divides at scale with the RoundingMode of ordinal roundingMode, like '/' of the formula
+    static void evaluate(int function, Bindings bindings, boolean sameLayout, String[] variables, int variable,
+                         int scale, int roundingMode, PrimitiveEvaluator.OperandStack stack, int index) {
+        int binding = Bindings.requireArray(bindings, sameLayout, variables, variable);
+        long[] unscaledValues = bindings.arrayUnscaledValues(binding);
+        int[] scales = bindings.arrayScales(binding);
+        int length = unscaledValues.length;
+        switch (FUNCTIONS[function]) {
+            case COUNT -> set(stack, index, length, 0);
+            case SUM -> {
+                MutableDecimal sum = sum(unscaledValues, scales, stack.accumulator).get(stack.sum);
+                set(stack, index, sum.getUnscaledValue(), sum.getScale());
+            }
+            case AVG -> {
+                requireNonEmpty(FUNCTIONS[function], variables[variable], length);
+                DecimalAccumulator sum = sum(unscaledValues, scales, stack.accumulator);
+                MutableDecimal total;
+                try {
+                    total = sum.get(stack.sum);
+                } catch (ArithmeticException e) {
+                    // the average of a sum out of range may still fit
+                    set(stack, index, sum.toBigDecimal().divide(BigDecimal.valueOf(length), scale, ROUNDING_MODES[roundingMode]));
+                    return;
+                }
+                // same as SUM(x) / COUNT(x) whenever the sum fits
+                set(stack, index, MutableDecimal.divideUnscaled(total.getUnscaledValue(), total.getScale(), length, 0, scale, ROUNDING_MODES[roundingMode]), scale);
+            }
+            case MIN, MAX -> {
+                requireNonEmpty(FUNCTIONS[function], variables[variable], length);
+                int extreme = extreme(unscaledValues, scales, FUNCTIONS[function] == Function.MIN ? -1 : 1);
+                set(stack, index, unscaledValues[extreme], scales[extreme]);
+            }
+        }
+    }
+
+    // BIGDECIMAL result, sums keep the largest scale of the values like BigDecimal.add
+    static BigDecimal evaluate(int function, Bindings bindings, boolean sameLayout, String[] variables, int variable, int scale, int roundingMode) {
+        int binding = Bindings.requireArray(bindings, sameLayout, variables, variable);
+        long[] unscaledValues = bindings.arrayUnscaledValues(binding);
+        int[] scales = bindings.arrayScales(binding);
+        int length = unscaledValues.length;
+        return switch (FUNCTIONS[function]) {
+            case COUNT -> BigDecimal.valueOf(length);
+            case SUM -> sum(unscaledValues, scales, new DecimalAccumulator()).toBigDecimal();
+            // same rounding as Arithmetic.BigDecimalArithmetic.divide
+            case AVG -> {
+                requireNonEmpty(FUNCTIONS[function], variables[variable], length);
+                yield sum(unscaledValues, scales, new DecimalAccumulator()).toBigDecimal().divide(BigDecimal.valueOf(length), scale, ROUNDING_MODES[roundingMode]);
+            }
+            case MIN, MAX -> {
+                requireNonEmpty(FUNCTIONS[function], variables[variable], length);
+                int extreme = extreme(unscaledValues, scales, FUNCTIONS[function] == Function.MIN ? -1 : 1);
+                yield BigDecimal.valueOf(unscaledValues[extreme], scales[extreme]);
+            }
+        };
+    }
+
+    private static void requireNonEmpty(Function function, String variable, int length) {
+        if (length == 0)
+            throw new IllegalArgumentException(String.format("%s of empty array (%s)", function, variable));
+    }
+
+    private static void set(PrimitiveEvaluator.OperandStack stack, int index, long unscaledValue, int scale) {
+        stack.unscaledValues[index] = MutableDecimal.normalizedUnscaled(unscaledValue, scale);
+        stack.scales[index] = MutableDecimal.normalizedScale(unscaledValue, scale);
+    }
+
+    // throws ArithmeticException if the value does not fit in a long
+    private static void set(PrimitiveEvaluator.OperandStack stack, int index, BigDecimal value) {
+        BigDecimal stripped = value.stripTrailingZeros();
+        long unscaledValue = stripped.unscaledValue().longValueExact();
+        if (stripped.scale() < 0)
+            set(stack, index, MutableDecimal.scaleUp(unscaledValue, -stripped.scale()), 0);
+        else
+            set(stack, index, unscaledValue, stripped.scale());
+    }
+
+    // short arrays are summed into scratch, long ones into accumulators of their own
+    private static DecimalAccumulator sum(long[] unscaledValues, int[] scales, DecimalAccumulator scratch) {
+        if (unscaledValues.length < PARALLEL_THRESHOLD) {
+            scratch.reset();
+            for (int i = 0; i < unscaledValues.length; i++) scratch.add(unscaledValues[i], scales[i]);
+            return scratch;
+        }
+        return ForkJoinPool.commonPool().invoke(new SumTask(unscaledValues, scales, 0, unscaledValues.length, leafSize(unscaledValues.length)));
+    }
+
+    private static DecimalAccumulator sum(long[] unscaledValues, int[] scales, int from, int to) {
+        DecimalAccumulator sum = new DecimalAccumulator();
+        for (int i = from; i < to; i++) sum.add(unscaledValues[i], scales[i]);
+        return sum;
+    }
+
+    // index of the smallest value for sign -1, the largest for sign 1, the first one on ties
+    private static int extreme(long[] unscaledValues, int[] scales, int sign) {
+        if (unscaledValues.length < PARALLEL_THRESHOLD)
+            return extreme(unscaledValues, scales, sign, 0, unscaledValues.length);
+        return ForkJoinPool.commonPool().invoke(new ExtremeTask(unscaledValues, scales, sign, 0, unscaledValues.length, leafSize(unscaledValues.length)));
+    }
+
+    private static int extreme(long[] unscaledValues, int[] scales, int sign, int from, int to) {
+        int extreme = from;
+        for (int i = from + 1; i < to; i++) {
+            if (MutableDecimal.compare(unscaledValues[i], scales[i], unscaledValues[extreme], scales[extreme]) * sign > 0)
+                extreme = i;
+        }
+        return extreme;
+    }
+
+    private static int leafSize(int length) {
+        return Math.max(PARALLEL_THRESHOLD / 4, length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+    }
+
+    private static final class SumTask extends RecursiveTask<DecimalAccumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] unscaledValues;
+        private final int[] scales;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        SumTask(long[] unscaledValues, int[] scales, int from, int to, int leafSize) {
+            this.unscaledValues = unscaledValues;
+            this.scales = scales;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected DecimalAccumulator compute() {
+            if (to - from <= leafSize)
+                return sum(unscaledValues, scales, from, to);
+            int middle = (from + to) >>> 1;
+            SumTask right = new SumTask(unscaledValues, scales, middle, to, leafSize);
+            right.fork();
+            DecimalAccumulator left = new SumTask(unscaledValues, scales, from, middle, leafSize).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    private static final class ExtremeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] unscaledValues;
+        private final int[] scales;
+        private final int sign;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        ExtremeTask(long[] unscaledValues, int[] scales, int sign, int from, int to, int leafSize) {
+            this.unscaledValues = unscaledValues;
+            this.scales = scales;
+            this.sign = sign;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= leafSize)
+                return extreme(unscaledValues, scales, sign, from, to);
+            int middle = (from + to) >>> 1;
+            ExtremeTask right = new ExtremeTask(unscaledValues, scales, sign, middle, to, leafSize);
+            right.fork();
+            int left = new ExtremeTask(unscaledValues, scales, sign, from, middle, leafSize).compute();
+            int other = right.join();
+            return MutableDecimal.compare(unscaledValues[other], scales[other], unscaledValues[left], scales[left]) * sign > 0 ? other : left;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// value based counterpart of FormulaCalculator.Operation, used by compiled formulas
+interface Arithmetic<T> {
+    T valueOf(BigDecimal constant);
+    T negate(T value);
+    T add(T first, T second);
+    T multiply(T first, T second);
+    T divide(T first, T second, int scale, RoundingMode roundingMode);
+    // first * second / divisor with a single rounding, same as divide(multiply(first, second), divisor, ...) when that does not overflow
+    T multiplyDivide(T first, T second, T divisor, int scale, RoundingMode roundingMode);
+    T round(T value, int scale, RoundingMode roundingMode);
+    T[] newArray(int length);
+
+    final class BigDecimalArithmetic implements Arithmetic<BigDecimal> {
+
+        @Override
+        public BigDecimal valueOf(BigDecimal constant) {
+            return constant;
+        }
+
+        @Override
+        public BigDecimal negate(BigDecimal value) {
+            return value.negate();
+        }
+
+        @Override
+        public BigDecimal add(BigDecimal first, BigDecimal second) {
+            return first.add(second);
+        }
+
+        @Override
+        public BigDecimal multiply(BigDecimal first, BigDecimal second) {
+            return first.multiply(second);
+        }
+
+        @Override
+        public BigDecimal divide(BigDecimal first, BigDecimal second, int scale, RoundingMode roundingMode) {
+            return first.divide(second, scale, roundingMode);
+        }
+
+        @Override
+        public BigDecimal multiplyDivide(BigDecimal first, BigDecimal second, BigDecimal divisor, int scale, RoundingMode roundingMode) {
+            return first.multiply(second).divide(divisor, scale, roundingMode);
+        }
+
+        // keeps the scale of a value with fewer digits, like MutableDecimal.round
+        @Override
+        public BigDecimal round(BigDecimal value, int scale, RoundingMode roundingMode) {
+            return value.scale() <= scale ? value : value.setScale(scale, roundingMode);
+        }
+
+        @Override
+        public BigDecimal[] newArray(int length) {
+            return new BigDecimal[length];
+        }
+    }
+}
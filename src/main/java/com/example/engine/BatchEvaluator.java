@@ -0,0 +1,198 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.DecimalVector;
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// evaluates one CompiledFormula over columnar records on a ForkJoinPool.
+// rows are split into ranges, each task owns its Bindings and result scratch so workers share nothing mutable,
+// and row i of the output always holds the result of row i of the inputs, whatever the parallelism
+public final class BatchEvaluator implements AutoCloseable {
+
+    // rows below which a range is not split further
+    private static final int MIN_BATCH_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    // a pool of its own with the given number of workers, shut down by close()
+    public BatchEvaluator(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(String.format("non-positive parallelism (%s)", parallelism));
+        this.pool = new ForkJoinPool(parallelism);
+        this.ownsPool = true;
+    }
+
+    // shares the given pool, close() leaves it running
+    public BatchEvaluator(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.ownsPool = false;
+    }
+
+    // inputUnscaledValues[v][row] and inputScales[v][row] hold variable v of formula.getVariables().
+    // results go to outputUnscaledValues[row] and outputScales[row]. evaluation stops at the first failing row,
+    // the exception is rethrown and other rows may or may not have been written
+    public void evaluateBatch(CompiledFormula formula, long[][] inputUnscaledValues, int[][] inputScales,
+                              long[] outputUnscaledValues, int[] outputScales) {
+        int rows = outputUnscaledValues.length;
+        int variables = formula.getVariables().size();
+        if (outputScales.length != rows)
+            throw new IllegalArgumentException(String.format("output column lengths differ (%s, %s)", rows, outputScales.length));
+        if (inputUnscaledValues.length != variables || inputScales.length != variables)
+            throw new IllegalArgumentException(String.format("expected (%s) input columns", variables));
+        for (int v = 0; v < variables; v++) {
+            if (inputUnscaledValues[v].length != rows || inputScales[v].length != rows)
+                throw new IllegalArgumentException(String.format("input column (%s) length differs from (%s) rows", formula.getVariables().get(v), rows));
+        }
+        if (rows == 0)
+            return;
+        int batchSize = Math.max(MIN_BATCH_SIZE, rows / (pool.getParallelism() * 4));
+        BatchTask task = new BatchTask(formula, inputUnscaledValues, inputScales, outputUnscaledValues, outputScales, 0, rows, batchSize);
+        if (rows <= batchSize)
+            task.evaluateRange();
+        else
+            pool.invoke(task);
+    }
+
+    // inputs[v] holds variable v of formula.getVariables(), results go to output.
+    // MUTABLEDECIMAL formulas run column at a time, each instruction a bulk kernel over blocks of rows,
+    // BIGDECIMAL formulas run row by row. failures behave as in the columnar array variant
+    public void evaluateBatch(CompiledFormula formula, DecimalVector[] inputs, DecimalVector output) {
+        int rows = output.length();
+        int variables = formula.getVariables().size();
+        if (inputs.length != variables)
+            throw new IllegalArgumentException(String.format("expected (%s) input columns", variables));
+        for (int v = 0; v < variables; v++) {
+            if (inputs[v].length() != rows)
+                throw new IllegalArgumentException(String.format("input column (%s) length differs from (%s) rows", formula.getVariables().get(v), rows));
+        }
+        if (rows == 0)
+            return;
+        // whole blocks per task
+        int batchSize = Math.max(VectorEvaluator.BLOCK_SIZE, rows / (pool.getParallelism() * 4) / VectorEvaluator.BLOCK_SIZE * VectorEvaluator.BLOCK_SIZE);
+        VectorTask task = new VectorTask(formula, inputs, output, 0, rows, batchSize);
+        if (rows <= batchSize)
+            task.evaluateRange();
+        else
+            pool.invoke(task);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) pool.shutdown();
+    }
+
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledFormula formula;
+        private final long[][] inputUnscaledValues;
+        private final int[][] inputScales;
+        private final long[] outputUnscaledValues;
+        private final int[] outputScales;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+
+        BatchTask(CompiledFormula formula, long[][] inputUnscaledValues, int[][] inputScales,
+                  long[] outputUnscaledValues, int[] outputScales, int from, int to, int batchSize) {
+            this.formula = formula;
+            this.inputUnscaledValues = inputUnscaledValues;
+            this.inputScales = inputScales;
+            this.outputUnscaledValues = outputUnscaledValues;
+            this.outputScales = outputScales;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                evaluateRange();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(formula, inputUnscaledValues, inputScales, outputUnscaledValues, outputScales, from, middle, batchSize),
+                    new BatchTask(formula, inputUnscaledValues, inputScales, outputUnscaledValues, outputScales, middle, to, batchSize));
+        }
+
+        // scratch state of this task only, the operand stack is per thread inside CompiledFormula
+        void evaluateRange() {
+            Bindings bindings = formula.newBindings();
+            MutableDecimal result = new MutableDecimal(0, 0);
+            int variables = inputUnscaledValues.length;
+            for (int row = from; row < to; row++) {
+                for (int v = 0; v < variables; v++) {
+                    bindings.set(v, inputUnscaledValues[v][row], inputScales[v][row]);
+                }
+                formula.evaluate(bindings, result);
+                outputUnscaledValues[row] = result.getUnscaledValue();
+                outputScales[row] = result.getScale();
+            }
+        }
+    }
+
+    private static final class VectorTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledFormula formula;
+        private final DecimalVector[] inputs;
+        private final DecimalVector output;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+
+        VectorTask(CompiledFormula formula, DecimalVector[] inputs, DecimalVector output, int from, int to, int batchSize) {
+            this.formula = formula;
+            this.inputs = inputs;
+            this.output = output;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                evaluateRange();
+                return;
+            }
+            // split on a block boundary
+            int middle = from + ((to - from) / 2 + VectorEvaluator.BLOCK_SIZE - 1) / VectorEvaluator.BLOCK_SIZE * VectorEvaluator.BLOCK_SIZE;
+            invokeAll(new VectorTask(formula, inputs, output, from, middle, batchSize),
+                    new VectorTask(formula, inputs, output, middle, to, batchSize));
+        }
+
+        void evaluateRange() {
+            VectorEvaluator evaluator = formula.vectorEvaluator();
+            if (evaluator != null) {
+                DecimalVector[] rangeInputs = new DecimalVector[inputs.length];
+                for (int v = 0; v < inputs.length; v++) rangeInputs[v] = inputs[v].slice(from, to - from);
+                try {
+                    evaluator.evaluate(rangeInputs, output.slice(from, to - from));
+                    return;
+                } catch (ArithmeticException e) {
+                    // ADAPTIVE formulas redo the range row by row, overflowing rows are re-run on BigDecimal
+                    if (formula.getOperationImplementation() != FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE)
+                        throw e;
+                }
+            }
+            Bindings bindings = formula.newBindings();
+            MutableDecimal result = new MutableDecimal(0, 0);
+            for (int row = from; row < to; row++) {
+                for (int v = 0; v < inputs.length; v++) {
+                    bindings.set(v, inputs[v].getUnscaledValue(row), inputs[v].getScale(row));
+                }
+                output.set(row, formula.evaluate(bindings, result));
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// variable values for CompiledFormula.evaluate, kept as (unscaled long, scale) pairs
+// meant to be reused record after record. a BigDecimal out of long range is kept as it is, for the
+// BIGDECIMAL and ADAPTIVE implementations. variables read by aggregate functions, eg, SUM(amounts),
+// are bound to arrays instead. this implementation is not synchronized
+public final class Bindings {
+
+    private final String[] names;
+    private final Map<String, Integer> indexByName;
+    private final long[] unscaledValues;
+    private final int[] scales;
+    private final boolean[] bound;
+    // allocated on the first BigDecimal out of long range, null in the slots holding a pair
+    private BigDecimal[] wideValues;
+    // allocated on the first setArray
+    private long[][] arrayUnscaledValues;
+    private int[][] arrayScales;
+
+    public Bindings(String... names) {
+        this(names.clone(), indexByName(names));
+    }
+
+    public Bindings(List<String> names) {
+        this(names.toArray(new String[0]));
+    }
+
+    private Bindings(String[] names, Map<String, Integer> indexByName) {
+        this.names = names;
+        this.indexByName = indexByName;
+        this.unscaledValues = new long[names.length];
+        this.scales = new int[names.length];
+        this.bound = new boolean[names.length];
+    }
+
+    // shares the variable array of a CompiledFormula, see CompiledFormula.newBindings
+    static Bindings of(String[] names, Map<String, Integer> indexByName) {
+        return new Bindings(names, indexByName);
+    }
+
+    static Map<String, Integer> indexByName(String[] names) {
+        Map<String, Integer> indexByName = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            if (indexByName.put(names[i], i) != null)
+                throw new IllegalArgumentException(String.format("duplicate variable (%s)", names[i]));
+        }
+        return indexByName;
+    }
+
+    // slot of the variable, -1 if unknown
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public List<String> getNames() {
+        return List.of(names);
+    }
+
+    public Bindings set(String name, long unscaledValue, int scale) {
+        return set(requireIndex(name), unscaledValue, scale);
+    }
+
+    public Bindings set(String name, MutableDecimal value) {
+        return set(requireIndex(name), value);
+    }
+
+    public Bindings set(String name, BigDecimal value) {
+        return set(requireIndex(name), value);
+    }
+
+    public Bindings set(int index, long unscaledValue, int scale) {
+        unscaledValues[index] = unscaledValue;
+        scales[index] = scale;
+        bound[index] = true;
+        if (arrayUnscaledValues != null) arrayUnscaledValues[index] = null;
+        if (wideValues != null) wideValues[index] = null;
+        return this;
+    }
+
+    public Bindings set(int index, MutableDecimal value) {
+        return set(index, value.getUnscaledValue(), value.getScale());
+    }
+
+    // a value whose unscaled value does not fit in a long makes MUTABLEDECIMAL evaluations throw
+    // ArithmeticException, the other implementations evaluate it on BigDecimal
+    public Bindings set(int index, BigDecimal value) {
+        if (value.unscaledValue().bitLength() < Long.SIZE)
+            return set(index, value.unscaledValue().longValue(), value.scale());
+        set(index, 0, 0);
+        if (wideValues == null) wideValues = new BigDecimal[names.length];
+        wideValues[index] = value;
+        return this;
+    }
+
+    public Bindings setArray(String name, long[] unscaledValues, int[] scales) {
+        return setArray(requireIndex(name), unscaledValues, scales);
+    }
+
+    public Bindings setArray(String name, MutableDecimal... values) {
+        return setArray(requireIndex(name), values);
+    }
+
+    // the arrays are read on evaluate, not copied
+    public Bindings setArray(int index, long[] unscaledValues, int[] scales) {
+        if (unscaledValues.length != scales.length)
+            throw new IllegalArgumentException(String.format("array lengths differ (%s, %s)", unscaledValues.length, scales.length));
+        if (arrayUnscaledValues == null) {
+            arrayUnscaledValues = new long[names.length][];
+            arrayScales = new int[names.length][];
+        }
+        arrayUnscaledValues[index] = unscaledValues;
+        arrayScales[index] = scales;
+        bound[index] = false;
+        if (wideValues != null) wideValues[index] = null;
+        return this;
+    }
+
+    public Bindings setArray(int index, MutableDecimal... values) {
+        long[] unscaledValues = new long[values.length];
+        int[] scales = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            unscaledValues[i] = values[i].getUnscaledValue();
+            scales[i] = values[i].getScale();
+        }
+        return setArray(index, unscaledValues, scales);
+    }
+
+    public void clear() {
+        Arrays.fill(bound, false);
+        if (arrayUnscaledValues != null) {
+            Arrays.fill(arrayUnscaledValues, null);
+            Arrays.fill(arrayScales, null);
+        }
+        if (wideValues != null) Arrays.fill(wideValues, null);
+    }
+
+    // throws ArithmeticException for a value out of long range, which ADAPTIVE re-runs on BigDecimal
+    long unscaledValue(int index) {
+        if (wideValues != null && wideValues[index] != null)
+            throw new ArithmeticException(String.format("variable (%s) out of long range", names[index]));
+        return unscaledValues[index];
+    }
+
+    int scale(int index) {
+        return scales[index];
+    }
+
+    BigDecimal bigDecimal(int index) {
+        if (wideValues != null && wideValues[index] != null)
+            return wideValues[index];
+        return BigDecimal.valueOf(unscaledValues[index], scales[index]);
+    }
+
+    boolean isBound(int index) {
+        return bound[index];
+    }
+
+    long[] arrayUnscaledValues(int index) {
+        return arrayUnscaledValues[index];
+    }
+
+    int[] arrayScales(int index) {
+        return arrayScales[index];
+    }
+
+    boolean hasLayout(String[] variables) {
+        return names == variables;
+    }
+
+    // slot holding the given program variable, sameLayout when bindings.hasLayout(variables)
+    static int requireBound(Bindings bindings, boolean sameLayout, String[] variables, int variable) {
+        int index = bindings == null ? -1 : sameLayout ? variable : bindings.indexOf(variables[variable]);
+        if (index < 0 || !bindings.isBound(index))
+            throw new IllegalArgumentException(String.format("variable (%s) is not bound", variables[variable]));
+        return index;
+    }
+
+    // slot holding the given program variable as an array
+    static int requireArray(Bindings bindings, boolean sameLayout, String[] variables, int variable) {
+        int index = bindings == null ? -1 : sameLayout ? variable : bindings.indexOf(variables[variable]);
+        if (index < 0 || bindings.arrayUnscaledValues == null || bindings.arrayUnscaledValues[index] == null)
+            throw new IllegalArgumentException(String.format("variable (%s) is not bound to an array", variables[variable]));
+        return index;
+    }
+
+    private int requireIndex(String name) {
+        int index = indexOf(name);
+        if (index < 0)
+            throw new IllegalArgumentException(String.format("unknown variable (%s)", name));
+        return index;
+    }
+}
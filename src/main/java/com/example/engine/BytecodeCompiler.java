@@ -0,0 +1,581 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// turns a Program into a hidden class whose evaluate method is the straight line translation of the program,
+// so the JIT sees the MutableDecimal or BigDecimal calls of the whole formula in one method and can inline them.
+// the class file is written by hand, it has no branches and therefore needs no StackMapTable
+final class BytecodeCompiler {
+
+    // result in stack.unscaledValues[0] and stack.scales[0], same as PrimitiveEvaluator.evaluate
+    interface PrimitiveFormula {
+        void evaluate(Bindings bindings, PrimitiveEvaluator.OperandStack stack);
+    }
+
+    interface BigDecimalFormula {
+        BigDecimal evaluate(Bindings bindings);
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAX_LOCALS = 65535;
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING_ARRAY = "[Ljava/lang/String;";
+    private static final String BIG_DECIMAL = "java/math/BigDecimal";
+    private static final String BIG_DECIMAL_DESCRIPTOR = "Ljava/math/BigDecimal;";
+    private static final String BINDINGS = "com/example/engine/Bindings";
+    private static final String BINDINGS_DESCRIPTOR = "Lcom/example/engine/Bindings;";
+    private static final String OPERAND_STACK = "com/example/engine/PrimitiveEvaluator$OperandStack";
+    private static final String MUTABLE_DECIMAL = "com/example/mutableDecimal/MutableDecimal";
+    private static final String COMPILER = "com/example/engine/BytecodeCompiler";
+    private static final String AGGREGATES = "com/example/engine/Aggregates";
+    private static final String ROUNDING_MODE_DESCRIPTOR = "Ljava/math/RoundingMode;";
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    private BytecodeCompiler() {
+    }
+
+    // variables must be the array the formula's Bindings are laid out for, see Bindings.hasLayout
+    // null when the program is too large for a single method, the caller keeps interpreting
+    static PrimitiveFormula compile(Program program, String[] variables, PrimitiveEvaluator evaluator) {
+        ClassBuilder builder = new ClassBuilder(PrimitiveFormula.class);
+        int variablesField = builder.field("variables", STRING_ARRAY);
+        Code code = new Code(builder.pool);
+        // locals: this, bindings, stack, sameLayout, temporary (long, int) pair, binding index, then a (long, int) pair per frame slot
+        int temporary = 4;
+        int temporaryScale = 6;
+        int bindingIndex = 7;
+        int maxStack = program.maxStack();
+        int[] instructions = program.code();
+        int maxLocals = 8 + 3 * program.frameSize();
+        if (maxLocals > MAX_LOCALS)
+            return null;
+        if (variables.length > 0) {
+            code.load(Code.ALOAD, 1).load(Code.ALOAD, 0).field(Code.GETFIELD, variablesField)
+                    .invoke(Code.INVOKESTATIC, COMPILER, "hasLayout", "(" + BINDINGS_DESCRIPTOR + STRING_ARRAY + ")Z")
+                    .load(Code.ISTORE, 3);
+        }
+        int top = -1;
+        int pc = 0;
+        while (pc < instructions.length) {
+            switch (instructions[pc++]) {
+                case Program.PUSH -> {
+                    int constant = instructions[pc++];
+                    top++;
+                    code.pushLong(evaluator.constantUnscaledValue(constant)).load(Code.LSTORE, unscaledLocal(top))
+                            .pushInt(evaluator.constantScale(constant)).load(Code.ISTORE, scaleLocal(top));
+                }
+                case Program.LOAD -> {
+                    code.load(Code.ALOAD, 1).load(Code.ILOAD, 3).load(Code.ALOAD, 0).field(Code.GETFIELD, variablesField)
+                            .pushInt(instructions[pc++])
+                            .invoke(Code.INVOKESTATIC, BINDINGS, "requireBound", "(" + BINDINGS_DESCRIPTOR + "Z" + STRING_ARRAY + "I)I")
+                            .load(Code.ISTORE, bindingIndex)
+                            .load(Code.ALOAD, 1).load(Code.ILOAD, bindingIndex).invoke(Code.INVOKEVIRTUAL, BINDINGS, "unscaledValue", "(I)J")
+                            .load(Code.LSTORE, temporary)
+                            .load(Code.ALOAD, 1).load(Code.ILOAD, bindingIndex).invoke(Code.INVOKEVIRTUAL, BINDINGS, "scale", "(I)I")
+                            .load(Code.ISTORE, temporaryScale);
+                    normalize(code, temporary, temporaryScale, ++top);
+                }
+                case Program.AGGREGATE -> {
+                    int function = instructions[pc++];
+                    top++;
+                    // the result lands in stack slot 0, which generated code only writes at the end
+                    code.pushInt(function).load(Code.ALOAD, 1).load(Code.ILOAD, 3).load(Code.ALOAD, 0).field(Code.GETFIELD, variablesField)
+                            .pushInt(instructions[pc++]).pushInt(instructions[pc++]).pushInt(instructions[pc++]).load(Code.ALOAD, 2).pushInt(0)
+                            .invoke(Code.INVOKESTATIC, AGGREGATES, "evaluate", "(I" + BINDINGS_DESCRIPTOR + "Z" + STRING_ARRAY + "IIIL" + OPERAND_STACK + ";I)V")
+                            .load(Code.ALOAD, 2).field(Code.GETFIELD, builder.pool.fieldRef(OPERAND_STACK, "unscaledValues", "[J"))
+                            .pushInt(0).op(Code.LALOAD).load(Code.LSTORE, unscaledLocal(top))
+                            .load(Code.ALOAD, 2).field(Code.GETFIELD, builder.pool.fieldRef(OPERAND_STACK, "scales", "[I"))
+                            .pushInt(0).op(Code.IALOAD).load(Code.ISTORE, scaleLocal(top));
+                }
+                case Program.NEGATE -> code.load(Code.LLOAD, unscaledLocal(top))
+                        .invoke(Code.INVOKESTATIC, "java/lang/Math", "negateExact", "(J)J")
+                        .load(Code.LSTORE, unscaledLocal(top));
+                case Program.ADD -> {
+                    top--;
+                    pushOperands(code, top);
+                    code.invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "addUnscaled", "(JIJI)J").load(Code.LSTORE, temporary)
+                            .load(Code.ILOAD, scaleLocal(top)).load(Code.ILOAD, scaleLocal(top + 1))
+                            .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "addScale", "(II)I").load(Code.ISTORE, temporaryScale);
+                    normalize(code, temporary, temporaryScale, top);
+                }
+                case Program.MULTIPLY -> {
+                    top--;
+                    code.load(Code.LLOAD, unscaledLocal(top)).load(Code.LLOAD, unscaledLocal(top + 1))
+                            .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "multiplyUnscaled", "(JJ)J").load(Code.LSTORE, temporary)
+                            .load(Code.ILOAD, scaleLocal(top)).load(Code.ILOAD, scaleLocal(top + 1))
+                            .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "multiplyScale", "(II)I").load(Code.ISTORE, temporaryScale);
+                    normalize(code, temporary, temporaryScale, top);
+                }
+                case Program.DIVIDE -> {
+                    int scale = instructions[pc++];
+                    int roundingMode = instructions[pc++];
+                    top--;
+                    pushOperands(code, top);
+                    code.pushInt(scale).field(Code.GETSTATIC, roundingModeField(builder.pool, roundingMode))
+                            .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "divideUnscaled", "(JIJII" + ROUNDING_MODE_DESCRIPTOR + ")J").load(Code.LSTORE, temporary)
+                            .pushInt(scale).load(Code.ISTORE, temporaryScale);
+                    normalize(code, temporary, temporaryScale, top);
+                }
+                case Program.MULTIPLY_DIVIDE -> {
+                    int scale = instructions[pc++];
+                    int roundingMode = instructions[pc++];
+                    top -= 2;
+                    pushOperands(code, top);
+                    code.load(Code.LLOAD, unscaledLocal(top + 2)).load(Code.ILOAD, scaleLocal(top + 2))
+                            .pushInt(scale).field(Code.GETSTATIC, roundingModeField(builder.pool, roundingMode))
+                            .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "multiplyDivideUnscaled", "(JIJIJII" + ROUNDING_MODE_DESCRIPTOR + ")J")
+                            .load(Code.LSTORE, temporary)
+                            .pushInt(scale).load(Code.ISTORE, temporaryScale);
+                    normalize(code, temporary, temporaryScale, top);
+                }
+                case Program.ROUND -> {
+                    int scale = instructions[pc++];
+                    int roundingMode = instructions[pc++];
+                    code.load(Code.LLOAD, unscaledLocal(top)).load(Code.ILOAD, scaleLocal(top))
+                            .pushInt(scale).field(Code.GETSTATIC, roundingModeField(builder.pool, roundingMode))
+                            .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "roundUnscaled", "(JII" + ROUNDING_MODE_DESCRIPTOR + ")J").load(Code.LSTORE, temporary)
+                            .load(Code.ILOAD, scaleLocal(top)).pushInt(scale)
+                            .invoke(Code.INVOKESTATIC, "java/lang/Math", "min", "(II)I").load(Code.ISTORE, temporaryScale);
+                    normalize(code, temporary, temporaryScale, top);
+                }
+                case Program.STORE -> {
+                    int slot = maxStack + instructions[pc++];
+                    code.load(Code.LLOAD, unscaledLocal(top)).load(Code.LSTORE, unscaledLocal(slot))
+                            .load(Code.ILOAD, scaleLocal(top)).load(Code.ISTORE, scaleLocal(slot));
+                }
+                case Program.RECALL -> {
+                    int slot = maxStack + instructions[pc++];
+                    top++;
+                    code.load(Code.LLOAD, unscaledLocal(slot)).load(Code.LSTORE, unscaledLocal(top))
+                            .load(Code.ILOAD, scaleLocal(slot)).load(Code.ISTORE, scaleLocal(top));
+                }
+                default -> throw new IllegalStateException(String.format("invalid instruction (%s)", instructions[pc - 1]));
+            }
+        }
+        code.load(Code.ALOAD, 2).field(Code.GETFIELD, builder.pool.fieldRef(OPERAND_STACK, "unscaledValues", "[J"))
+                .pushInt(0).load(Code.LLOAD, unscaledLocal(0)).op(Code.LASTORE)
+                .load(Code.ALOAD, 2).field(Code.GETFIELD, builder.pool.fieldRef(OPERAND_STACK, "scales", "[I"))
+                .pushInt(0).load(Code.ILOAD, scaleLocal(0)).op(Code.IASTORE)
+                .op(Code.RETURN);
+        if (code.length() > MAX_CODE_LENGTH)
+            return null;
+        // operands live in locals, the widest call is a MULTIPLY_DIVIDE with 11 words of arguments
+        builder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluate", "(" + BINDINGS_DESCRIPTOR + "L" + OPERAND_STACK + ";)V", 11, maxLocals, code);
+        return (PrimitiveFormula) builder.newInstance((Object) variables);
+    }
+
+    static BigDecimalFormula compile(Program program, String[] variables, BigDecimal[] constants) {
+        ClassBuilder builder = new ClassBuilder(BigDecimalFormula.class);
+        int variablesField = builder.field("variables", STRING_ARRAY);
+        int constantsField = builder.field("constants", "[" + BIG_DECIMAL_DESCRIPTOR);
+        Code code = new Code(builder.pool);
+        // locals: this, bindings, sameLayout, binding index, then one per slot. operands live on the JVM stack
+        int bindingIndex = 3;
+        int firstSlot = 4;
+        int[] instructions = program.code();
+        int maxLocals = firstSlot + program.slotCount();
+        if (maxLocals > MAX_LOCALS)
+            return null;
+        if (variables.length > 0) {
+            code.load(Code.ALOAD, 1).load(Code.ALOAD, 0).field(Code.GETFIELD, variablesField)
+                    .invoke(Code.INVOKESTATIC, COMPILER, "hasLayout", "(" + BINDINGS_DESCRIPTOR + STRING_ARRAY + ")Z")
+                    .load(Code.ISTORE, 2);
+        }
+        String binaryDescriptor = "(" + BIG_DECIMAL_DESCRIPTOR + ")" + BIG_DECIMAL_DESCRIPTOR;
+        int pc = 0;
+        while (pc < instructions.length) {
+            switch (instructions[pc++]) {
+                case Program.PUSH -> code.load(Code.ALOAD, 0).field(Code.GETFIELD, constantsField)
+                        .pushInt(instructions[pc++]).op(Code.AALOAD);
+                case Program.LOAD -> code.load(Code.ALOAD, 1).load(Code.ILOAD, 2).load(Code.ALOAD, 0).field(Code.GETFIELD, variablesField)
+                        .pushInt(instructions[pc++])
+                        .invoke(Code.INVOKESTATIC, BINDINGS, "requireBound", "(" + BINDINGS_DESCRIPTOR + "Z" + STRING_ARRAY + "I)I")
+                        .load(Code.ISTORE, bindingIndex)
+                        .load(Code.ALOAD, 1).load(Code.ILOAD, bindingIndex).invoke(Code.INVOKEVIRTUAL, BINDINGS, "bigDecimal", "(I)" + BIG_DECIMAL_DESCRIPTOR);
+                case Program.AGGREGATE -> {
+                    int function = instructions[pc++];
+                    code.pushInt(function).load(Code.ALOAD, 1).load(Code.ILOAD, 2).load(Code.ALOAD, 0).field(Code.GETFIELD, variablesField)
+                            .pushInt(instructions[pc++]).pushInt(instructions[pc++]).pushInt(instructions[pc++])
+                            .invoke(Code.INVOKESTATIC, AGGREGATES, "evaluate", "(I" + BINDINGS_DESCRIPTOR + "Z" + STRING_ARRAY + "III)" + BIG_DECIMAL_DESCRIPTOR);
+                }
+                case Program.NEGATE -> code.invoke(Code.INVOKEVIRTUAL, BIG_DECIMAL, "negate", "()" + BIG_DECIMAL_DESCRIPTOR);
+                case Program.ADD -> code.invoke(Code.INVOKEVIRTUAL, BIG_DECIMAL, "add", binaryDescriptor);
+                case Program.MULTIPLY -> code.invoke(Code.INVOKEVIRTUAL, BIG_DECIMAL, "multiply", binaryDescriptor);
+                // same as Arithmetic.BigDecimalArithmetic.divide
+                case Program.DIVIDE -> code.pushInt(instructions[pc++]).field(Code.GETSTATIC, roundingModeField(builder.pool, instructions[pc++]))
+                        .invoke(Code.INVOKEVIRTUAL, BIG_DECIMAL, "divide", "(" + BIG_DECIMAL_DESCRIPTOR + "I" + ROUNDING_MODE_DESCRIPTOR + ")" + BIG_DECIMAL_DESCRIPTOR);
+                case Program.MULTIPLY_DIVIDE -> code.pushInt(instructions[pc++]).field(Code.GETSTATIC, roundingModeField(builder.pool, instructions[pc++]))
+                        .invoke(Code.INVOKESTATIC, COMPILER, "multiplyDivide",
+                                "(" + BIG_DECIMAL_DESCRIPTOR + BIG_DECIMAL_DESCRIPTOR + BIG_DECIMAL_DESCRIPTOR + "I" + ROUNDING_MODE_DESCRIPTOR + ")" + BIG_DECIMAL_DESCRIPTOR);
+                case Program.ROUND -> code.pushInt(instructions[pc++]).field(Code.GETSTATIC, roundingModeField(builder.pool, instructions[pc++]))
+                        .invoke(Code.INVOKESTATIC, COMPILER, "round", "(" + BIG_DECIMAL_DESCRIPTOR + "I" + ROUNDING_MODE_DESCRIPTOR + ")" + BIG_DECIMAL_DESCRIPTOR);
+                case Program.STORE -> code.op(Code.DUP).load(Code.ASTORE, firstSlot + instructions[pc++]);
+                case Program.RECALL -> code.load(Code.ALOAD, firstSlot + instructions[pc++]);
+                default -> throw new IllegalStateException(String.format("invalid instruction (%s)", instructions[pc - 1]));
+            }
+        }
+        code.op(Code.ARETURN);
+        if (code.length() > MAX_CODE_LENGTH)
+            return null;
+        // an AGGREGATE needs at most 7 words above the operands, a LOAD 4, a divide 2
+        builder.method(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_FINAL, "evaluate", "(" + BINDINGS_DESCRIPTOR + ")" + BIG_DECIMAL_DESCRIPTOR, program.maxStack() + 7, maxLocals, code);
+        return (BigDecimalFormula) builder.newInstance(variables, constants);
+    }
+
+    // called by generated code, keeps the null check out of the branch free method
+    static boolean hasLayout(Bindings bindings, String[] variables) {
+        return bindings != null && bindings.hasLayout(variables);
+    }
+
+    // called by generated code, the divisor is on top of the JVM stack so multiply and divide can not be inlined
+    static BigDecimal multiplyDivide(BigDecimal first, BigDecimal second, BigDecimal divisor, int scale, RoundingMode roundingMode) {
+        return first.multiply(second).divide(divisor, scale, roundingMode);
+    }
+
+    // called by generated code, same as Arithmetic.BigDecimalArithmetic.round without a branch in the generated method
+    static BigDecimal round(BigDecimal value, int scale, RoundingMode roundingMode) {
+        return value.scale() <= scale ? value : value.setScale(scale, roundingMode);
+    }
+
+    private static int roundingModeField(ConstantPool pool, int roundingMode) {
+        return pool.fieldRef("java/math/RoundingMode", ROUNDING_MODES[roundingMode].name(), ROUNDING_MODE_DESCRIPTOR);
+    }
+
+    private static int unscaledLocal(int slot) {
+        return 8 + 3 * slot;
+    }
+
+    private static int scaleLocal(int slot) {
+        return 8 + 3 * slot + 2;
+    }
+
+    // pushes the (long, int) pairs of slot and slot + 1
+    private static void pushOperands(Code code, int slot) {
+        code.load(Code.LLOAD, unscaledLocal(slot)).load(Code.ILOAD, scaleLocal(slot))
+                .load(Code.LLOAD, unscaledLocal(slot + 1)).load(Code.ILOAD, scaleLocal(slot + 1));
+    }
+
+    private static void normalize(Code code, int unscaledLocal, int scaleLocal, int slot) {
+        code.load(Code.LLOAD, unscaledLocal).load(Code.ILOAD, scaleLocal)
+                .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "normalizedUnscaled", "(JI)J").load(Code.LSTORE, unscaledLocal(slot))
+                .load(Code.LLOAD, unscaledLocal).load(Code.ILOAD, scaleLocal)
+                .invoke(Code.INVOKESTATIC, MUTABLE_DECIMAL, "normalizedScale", "(JI)I").load(Code.ISTORE, scaleLocal(slot));
+    }
+
+    // single class with final fields set by a constructor taking the field values in declaration order
+    private static final class ClassBuilder {
+        private static final int ACC_PRIVATE = 0x0002;
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private final ConstantPool pool = new ConstantPool();
+        private final Class<?> anInterface;
+        private final int thisClass;
+        private final ByteVector fields = new ByteVector();
+        private final ByteVector methods = new ByteVector();
+        private final StringBuilder constructorDescriptor = new StringBuilder("(");
+        private final Code constructor;
+        private int fieldCount;
+        private int methodCount;
+
+        ClassBuilder(Class<?> anInterface) {
+            this.anInterface = anInterface;
+            this.thisClass = pool.classRef("com/example/engine/GeneratedFormula");
+            this.constructor = new Code(pool).load(Code.ALOAD, 0).invoke(Code.INVOKESPECIAL, OBJECT, "<init>", "()V");
+        }
+
+        int field(String name, String descriptor) {
+            fields.putShort(ACC_PRIVATE | ACC_FINAL).putShort(pool.utf8(name)).putShort(pool.utf8(descriptor)).putShort(0);
+            fieldCount++;
+            constructorDescriptor.append(descriptor);
+            int field = pool.fieldRef("com/example/engine/GeneratedFormula", name, descriptor);
+            constructor.load(Code.ALOAD, 0).load(Code.ALOAD, fieldCount).field(Code.PUTFIELD, field);
+            return field;
+        }
+
+        void method(int access, String name, String descriptor, int maxStack, int maxLocals, Code code) {
+            methods.putShort(access).putShort(pool.utf8(name)).putShort(pool.utf8(descriptor)).putShort(1);
+            ByteVector codeBytes = code.bytes;
+            methods.putShort(pool.utf8("Code")).putInt(12 + codeBytes.length)
+                    .putShort(maxStack).putShort(maxLocals).putInt(codeBytes.length).putBytes(codeBytes)
+                    .putShort(0).putShort(0);
+            methodCount++;
+        }
+
+        Object newInstance(Object... fieldValues) {
+            constructor.op(Code.RETURN);
+            method(ACC_PUBLIC, "<init>", constructorDescriptor + ")V", 2, fieldCount + 1, constructor);
+            int superClass = pool.classRef(OBJECT);
+            int interfaceClass = pool.classRef(anInterface.getName().replace('.', '/'));
+            ByteVector classFile = new ByteVector()
+                    .putInt(0xCAFEBABE).putShort(0).putShort(61)
+                    .putShort(pool.count).putBytes(pool.bytes)
+                    .putShort(ACC_FINAL | ACC_SUPER).putShort(thisClass).putShort(superClass)
+                    .putShort(1).putShort(interfaceClass)
+                    .putShort(fieldCount).putBytes(fields)
+                    .putShort(methodCount).putBytes(methods)
+                    .putShort(0);
+            try {
+                Class<?> generated = LOOKUP.defineHiddenClass(classFile.toArray(), true).lookupClass();
+                Class<?>[] parameterTypes = new Class<?>[fieldValues.length];
+                for (int i = 0; i < fieldValues.length; i++) parameterTypes[i] = fieldValues[i].getClass();
+                return LOOKUP.findConstructor(generated, MethodType.methodType(void.class, parameterTypes)).invokeWithArguments(fieldValues);
+            } catch (Throwable e) {
+                throw new IllegalStateException("formula class generation failed", e);
+            }
+        }
+    }
+
+    private static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int INTEGER = 3;
+        private static final int LONG = 5;
+        private static final int CLASS = 7;
+        private static final int FIELD_REF = 9;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteVector bytes = new ByteVector();
+        private final Map<String, Integer> indexByKey = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            Integer index = indexByKey.get("U" + value);
+            if (index != null)
+                return index;
+            bytes.putByte(UTF8).putUtf8(value);
+            return add("U" + value, 1);
+        }
+
+        int classRef(String internalName) {
+            Integer index = indexByKey.get("C" + internalName);
+            if (index != null)
+                return index;
+            int name = utf8(internalName);
+            bytes.putByte(CLASS).putShort(name);
+            return add("C" + internalName, 1);
+        }
+
+        int integer(int value) {
+            Integer index = indexByKey.get("I" + value);
+            if (index != null)
+                return index;
+            bytes.putByte(INTEGER).putInt(value);
+            return add("I" + value, 1);
+        }
+
+        // long entries take two pool slots
+        int longConstant(long value) {
+            Integer index = indexByKey.get("J" + value);
+            if (index != null)
+                return index;
+            bytes.putByte(LONG).putInt((int) (value >>> 32)).putInt((int) value);
+            return add("J" + value, 2);
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(FIELD_REF, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(METHOD_REF, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = indexByKey.get(key);
+            if (index != null)
+                return index;
+            int ownerClass = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            bytes.putByte(tag).putShort(ownerClass).putShort(nameAndType);
+            return add(key, 1);
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            String key = "N" + name + descriptor;
+            Integer index = indexByKey.get(key);
+            if (index != null)
+                return index;
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            bytes.putByte(NAME_AND_TYPE).putShort(nameIndex).putShort(descriptorIndex);
+            return add(key, 1);
+        }
+
+        private int add(String key, int size) {
+            int index = count;
+            indexByKey.put(key, index);
+            count += size;
+            if (count > 65535)
+                throw new IllegalStateException("constant pool overflow");
+            return index;
+        }
+    }
+
+    private static final class Code {
+        static final int ICONST_0 = 0x03;
+        static final int LCONST_0 = 0x09;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC = 0x12;
+        static final int LDC_W = 0x13;
+        static final int LDC2_W = 0x14;
+        static final int ILOAD = 0x15;
+        static final int LLOAD = 0x16;
+        static final int ALOAD = 0x19;
+        static final int IALOAD = 0x2E;
+        static final int LALOAD = 0x2F;
+        static final int AALOAD = 0x32;
+        static final int ISTORE = 0x36;
+        static final int LSTORE = 0x37;
+        static final int ASTORE = 0x3A;
+        static final int IASTORE = 0x4F;
+        static final int LASTORE = 0x50;
+        static final int DUP = 0x59;
+        static final int ARETURN = 0xB0;
+        static final int RETURN = 0xB1;
+        static final int GETSTATIC = 0xB2;
+        static final int GETFIELD = 0xB4;
+        static final int PUTFIELD = 0xB5;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESPECIAL = 0xB7;
+        static final int INVOKESTATIC = 0xB8;
+        static final int WIDE = 0xC4;
+
+        private final ConstantPool pool;
+        private final ByteVector bytes = new ByteVector();
+
+        Code(ConstantPool pool) {
+            this.pool = pool;
+        }
+
+        Code op(int opcode) {
+            bytes.putByte(opcode);
+            return this;
+        }
+
+        // load or store of a local variable
+        Code load(int opcode, int local) {
+            if (local > 255)
+                bytes.putByte(WIDE).putByte(opcode).putShort(local);
+            else
+                bytes.putByte(opcode).putByte(local);
+            return this;
+        }
+
+        Code field(int opcode, int fieldRef) {
+            bytes.putByte(opcode).putShort(fieldRef);
+            return this;
+        }
+
+        Code invoke(int opcode, String owner, String name, String descriptor) {
+            bytes.putByte(opcode).putShort(pool.methodRef(owner, name, descriptor));
+            return this;
+        }
+
+        Code pushInt(int value) {
+            if (value >= -1 && value <= 5)
+                return op(ICONST_0 + value);
+            if (value == (byte) value)
+                bytes.putByte(BIPUSH).putByte(value);
+            else if (value == (short) value)
+                bytes.putByte(SIPUSH).putShort(value);
+            else {
+                int index = pool.integer(value);
+                if (index > 255)
+                    bytes.putByte(LDC_W).putShort(index);
+                else
+                    bytes.putByte(LDC).putByte(index);
+            }
+            return this;
+        }
+
+        Code pushLong(long value) {
+            if (value == 0 || value == 1)
+                return op(LCONST_0 + (int) value);
+            bytes.putByte(LDC2_W).putShort(pool.longConstant(value));
+            return this;
+        }
+
+        int length() {
+            return bytes.length;
+        }
+    }
+
+    private static final class ByteVector {
+        private byte[] data = new byte[64];
+        private int length;
+
+        ByteVector putByte(int value) {
+            ensure(1);
+            data[length++] = (byte) value;
+            return this;
+        }
+
+        ByteVector putShort(int value) {
+            ensure(2);
+            data[length++] = (byte) (value >>> 8);
+            data[length++] = (byte) value;
+            return this;
+        }
+
+        ByteVector putInt(int value) {
+            ensure(4);
+            data[length++] = (byte) (value >>> 24);
+            data[length++] = (byte) (value >>> 16);
+            data[length++] = (byte) (value >>> 8);
+            data[length++] = (byte) value;
+            return this;
+        }
+
+        ByteVector putBytes(ByteVector other) {
+            ensure(other.length);
+            System.arraycopy(other.data, 0, data, length, other.length);
+            length += other.length;
+            return this;
+        }
+
+        // modified UTF-8 of the class file format
+        ByteVector putUtf8(String value) {
+            int start = length;
+            putShort(0);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 1 && c <= 0x7F) {
+                    putByte(c);
+                } else if (c <= 0x7FF) {
+                    putByte(0xC0 | (c >> 6)).putByte(0x80 | (c & 0x3F));
+                } else {
+                    putByte(0xE0 | (c >> 12)).putByte(0x80 | ((c >> 6) & 0x3F)).putByte(0x80 | (c & 0x3F));
+                }
+            }
+            int utfLength = length - start - 2;
+            if (utfLength > 65535)
+                throw new IllegalStateException("constant too long");
+            data[start] = (byte) (utfLength >>> 8);
+            data[start + 1] = (byte) utfLength;
+            return this;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+        private void ensure(int size) {
+            if (length + size > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + size));
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// formula parsed once by FormulaCalculator.compile, immutable and safe to share between threads
+public final class CompiledFormula {
+
+    private final String formula;
+    private final FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation;
+    private final String[] variables;
+    private final Map<String, Integer> variableIndex;
+    private final Program program;
+    private final ObjectStackEvaluator<BigDecimal> bigDecimalEvaluator;
+    private final PrimitiveEvaluator primitiveEvaluator;
+    // generated counterparts of the evaluators, null when interpreting
+    private final BytecodeCompiler.BigDecimalFormula bigDecimalFormula;
+    private final BytecodeCompiler.PrimitiveFormula primitiveFormula;
+    // null without metrics, evaluations then pay a single null check
+    private final FormulaMetrics.Recorder recorder;
+    // literals and variables, reported to JFR
+    private final int operandCount;
+    // overflow history of an ADAPTIVE formula, null on the other implementations
+    private final Adaptive adaptive;
+    // column at a time evaluator per thread, null where there is none, see vectorEvaluator()
+    private final ThreadLocal<VectorEvaluator> vectorEvaluator;
+
+    CompiledFormula(String formula, FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation, Program program) {
+        this(formula, operationImplementation, program, false);
+    }
+
+    CompiledFormula(String formula, FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation, Program program, boolean generateBytecode) {
+        this(formula, operationImplementation, program, generateBytecode, null, FormulaCalculator.DEFAULT_ADAPTIVE_OVERFLOW_RATE);
+    }
+
+    // generateBytecode falls back to interpreting when the formula does not fit a generated method
+    CompiledFormula(String formula, FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation, Program program, boolean generateBytecode,
+                    FormulaMetrics.Recorder recorder, double adaptiveOverflowRate) {
+        this.formula = formula;
+        this.recorder = recorder;
+        this.operationImplementation = operationImplementation;
+        this.variables = program.variables();
+        this.variableIndex = Bindings.indexByName(variables);
+        this.program = program;
+        this.operandCount = program.constants().length + variables.length;
+        switch (operationImplementation) {
+            case BIGDECIMAL -> {
+                this.bigDecimalEvaluator = new ObjectStackEvaluator<>(program, variables, new Arithmetic.BigDecimalArithmetic());
+                this.primitiveEvaluator = null;
+                this.bigDecimalFormula = generateBytecode ? BytecodeCompiler.compile(program, variables, program.constants()) : null;
+                this.primitiveFormula = null;
+                this.adaptive = null;
+            }
+            case MUTABLEDECIMAL -> {
+                this.bigDecimalEvaluator = null;
+                this.primitiveEvaluator = new PrimitiveEvaluator(program, variables);
+                this.bigDecimalFormula = null;
+                this.primitiveFormula = generateBytecode ? BytecodeCompiler.compile(program, variables, primitiveEvaluator) : null;
+                this.adaptive = null;
+            }
+            // both, the BIGDECIMAL evaluators re-run overflowing evaluations. constants out of long range
+            // leave only the BIGDECIMAL ones, the formula then starts on BigDecimal for good
+            case ADAPTIVE -> {
+                this.bigDecimalEvaluator = new ObjectStackEvaluator<>(program, variables, new Arithmetic.BigDecimalArithmetic());
+                this.primitiveEvaluator = primitiveEvaluatorOrNull(program, variables);
+                this.bigDecimalFormula = generateBytecode ? BytecodeCompiler.compile(program, variables, program.constants()) : null;
+                this.primitiveFormula = generateBytecode && primitiveEvaluator != null ? BytecodeCompiler.compile(program, variables, primitiveEvaluator) : null;
+                this.adaptive = new Adaptive(adaptiveOverflowRate, primitiveEvaluator == null);
+            }
+            default -> throw new UnsupportedOperationException("new operation implementation needed");
+        }
+        PrimitiveEvaluator evaluator = primitiveEvaluator;
+        this.vectorEvaluator = evaluator == null || program.hasAggregates() ? null : ThreadLocal.withInitial(() -> new VectorEvaluator(program, evaluator));
+    }
+
+    private static PrimitiveEvaluator primitiveEvaluatorOrNull(Program program, String[] variables) {
+        try {
+            return new PrimitiveEvaluator(program, variables);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // same result as FormulaCalculator.calculate(getFormula())
+    public String evaluate() {
+        return evaluate((Bindings) null);
+    }
+
+    // bindings created by newBindings() are read by slot, other bindings are looked up by name
+    public String evaluate(Bindings bindings) {
+        PrimitiveEvaluator.OperandStack stack = evaluatePrimitive(bindings);
+        if (stack == null)
+            return toString(evaluateBigDecimal(bindings));
+        return MutableDecimal.toString(stack.resultUnscaledValue(), stack.resultScale());
+    }
+
+    // appends the same text as evaluate(bindings), no garbage on the MUTABLEDECIMAL implementation
+    public StringBuilder appendTo(Bindings bindings, StringBuilder sb) {
+        PrimitiveEvaluator.OperandStack stack = evaluatePrimitive(bindings);
+        if (stack == null)
+            return sb.append(toString(evaluateBigDecimal(bindings)));
+        return MutableDecimal.appendTo(stack.resultUnscaledValue(), stack.resultScale(), sb);
+    }
+
+    // puts the ASCII text of evaluate(bindings) at the buffer position and advances it
+    public ByteBuffer writeAscii(Bindings bindings, ByteBuffer buffer) {
+        PrimitiveEvaluator.OperandStack stack = evaluatePrimitive(bindings);
+        if (stack == null) {
+            String result = toString(evaluateBigDecimal(bindings));
+            for (int i = 0; i < result.length(); i++) buffer.put((byte) result.charAt(i));
+            return buffer;
+        }
+        buffer.position(MutableDecimal.writeAscii(stack.resultUnscaledValue(), stack.resultScale(), buffer, buffer.position()));
+        return buffer;
+    }
+
+    // writes the result into the given instance, no garbage on the MUTABLEDECIMAL implementation.
+    // throws ArithmeticException if a BigDecimal result does not fit
+    public MutableDecimal evaluate(Bindings bindings, MutableDecimal result) {
+        PrimitiveEvaluator.OperandStack stack = evaluatePrimitive(bindings);
+        if (stack == null) {
+            BigDecimal value = evaluateBigDecimal(bindings);
+            if (adaptive != null)
+                value = value.stripTrailingZeros();
+            result.reset(value.unscaledValue().longValueExact(), value.scale());
+            return result;
+        }
+        result.reset(stack.resultUnscaledValue(), stack.resultScale());
+        return result;
+    }
+
+    // null with the result in the given instance while evaluating on (unscaled long, scale) pairs, otherwise
+    // the BigDecimal result, trailing zeros stripped on ADAPTIVE. for callers writing results without text
+    BigDecimal evaluateOrBigDecimal(Bindings bindings, MutableDecimal result) {
+        PrimitiveEvaluator.OperandStack stack = evaluatePrimitive(bindings);
+        if (stack == null) {
+            BigDecimal value = evaluateBigDecimal(bindings);
+            return adaptive == null ? value : value.stripTrailingZeros();
+        }
+        result.reset(stack.resultUnscaledValue(), stack.resultScale());
+        return null;
+    }
+
+    // ADAPTIVE results read like MUTABLEDECIMAL ones whichever evaluator computed them
+    String toString(BigDecimal value) {
+        return adaptive == null ? value.toString() : value.stripTrailingZeros().toPlainString();
+    }
+
+    private BigDecimal evaluateBigDecimal(Bindings bindings) {
+        ArithmeticException fallback = null;
+        if (adaptive != null && primitiveEvaluator != null) {
+            PrimitiveEvaluator.OperandStack stack = primitiveEvaluator.operandStack();
+            fallback = stack.fallback;
+            stack.fallback = null;
+        }
+        FormulaEvaluateEvent event = FormulaEvaluateEvent.beginIfEnabled();
+        long start = recorder == null ? 0 : System.nanoTime();
+        BigDecimal result;
+        try {
+            result = bigDecimalFormula != null ? bigDecimalFormula.evaluate(bindings) : bigDecimalEvaluator.evaluate(bindings);
+        } catch (RuntimeException e) {
+            failed(e);
+            throw e;
+        }
+        evaluated(event, start);
+        // only a re-run BigDecimal completes was a range overflow, a division by zero fails on both
+        if (fallback != null) {
+            adaptive.overflowed();
+            if (recorder != null)
+                recorder.fellBack();
+            FormulaOverflowEvent.commit(formula, operationImplementation, fallback, true);
+        }
+        return result;
+    }
+
+    // result in the operand stack of the calling thread, null when the formula has to be evaluated on BigDecimal:
+    // always on the BIGDECIMAL implementation, after an overflow or for good on the ADAPTIVE one
+    private PrimitiveEvaluator.OperandStack evaluatePrimitive(Bindings bindings) {
+        if (primitiveEvaluator == null || adaptive != null && adaptive.onBigDecimal)
+            return null;
+        PrimitiveEvaluator.OperandStack stack = primitiveEvaluator.operandStack();
+        FormulaEvaluateEvent event = FormulaEvaluateEvent.beginIfEnabled();
+        long start = recorder == null ? 0 : System.nanoTime();
+        try {
+            if (primitiveFormula != null)
+                primitiveFormula.evaluate(bindings, stack);
+            else
+                primitiveEvaluator.evaluate(bindings, stack);
+        } catch (ArithmeticException e) {
+            if (adaptive == null) {
+                failed(e);
+                throw e;
+            }
+            stack.fallback = e;
+            return null;
+        } catch (RuntimeException e) {
+            failed(e);
+            throw e;
+        }
+        evaluated(event, start);
+        if (adaptive != null)
+            adaptive.evaluations.increment();
+        return stack;
+    }
+
+    private void evaluated(FormulaEvaluateEvent event, long start) {
+        if (recorder != null)
+            recorder.evaluated(System.nanoTime() - start);
+        if (event != null && event.shouldCommit()) {
+            event.formula = formula;
+            event.implementation = operationImplementation.name();
+            event.operandCount = operandCount;
+            event.bytecodeCompiled = isBytecodeCompiled();
+            event.commit();
+        }
+    }
+
+    private void failed(RuntimeException e) {
+        if (recorder != null)
+            recorder.failed(e);
+        if (e instanceof ArithmeticException arithmeticException)
+            FormulaOverflowEvent.commit(formula, operationImplementation, arithmeticException, false);
+    }
+
+    // column at a time evaluator owned by the calling thread, null on the BIGDECIMAL implementation,
+    // for formulas with aggregates, which read array bindings, and for ADAPTIVE formulas moved to BigDecimal.
+    // its frameSize scratch blocks of BLOCK_SIZE rows are allocated once per thread and reused by every batch
+    VectorEvaluator vectorEvaluator() {
+        return vectorEvaluator == null || adaptive != null && adaptive.onBigDecimal ? null : vectorEvaluator.get();
+    }
+
+    // bindings laid out for the variables of this formula
+    public Bindings newBindings() {
+        return Bindings.of(variables, variableIndex);
+    }
+
+    public List<String> getVariables() {
+        return List.of(variables);
+    }
+
+    public String getFormula() {
+        return formula;
+    }
+
+    public FormulaCalculator.OPERATION_IMPLEMENTATION getOperationImplementation() {
+        return operationImplementation;
+    }
+
+    // false when interpreted, either by choice or because the formula is too large for a generated method
+    public boolean isBytecodeCompiled() {
+        return bigDecimalFormula != null || primitiveFormula != null;
+    }
+
+    // the implementation evaluations start on: MUTABLEDECIMAL for an ADAPTIVE formula until it moves to BIGDECIMAL
+    public FormulaCalculator.OPERATION_IMPLEMENTATION getActiveImplementation() {
+        if (adaptive == null)
+            return operationImplementation;
+        return adaptive.onBigDecimal ? FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL : FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL;
+    }
+
+    @Override
+    public String toString() {
+        return formula;
+    }
+
+    // evaluations and overflows on MUTABLEDECIMAL, counted until the formula moves to BigDecimal
+    private static final class Adaptive {
+        // overflows of the first evaluations are judged as if there had been at least this many
+        private static final int MIN_EVALUATIONS = 1_000;
+
+        private final double overflowRate;
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder overflows = new LongAdder();
+        private volatile boolean onBigDecimal;
+
+        Adaptive(double overflowRate, boolean onBigDecimal) {
+            this.overflowRate = overflowRate;
+            this.onBigDecimal = onBigDecimal;
+        }
+
+        // an ArithmeticException of the long path the BigDecimal re-run did not throw
+        void overflowed() {
+            evaluations.increment();
+            overflows.increment();
+            long overflowCount = overflows.sum();
+            if (overflowCount > overflowRate * Math.max(MIN_EVALUATIONS, evaluations.sum()))
+                onBigDecimal = true;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+// bounded map from formula text to its CompiledFormula, each distinct formula is parsed once
+// least recently used formulas are evicted first. entries are split over lock striped segments
+// so concurrent lookups of different formulas rarely wait on each other
+public final class FormulaCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final FormulaCalculator calculator;
+    private final int maximumSize;
+    private final Segment[] segments;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public FormulaCache(FormulaCalculator calculator, int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException(String.format("non-positive maximum size (%s)", maximumSize));
+        this.calculator = Objects.requireNonNull(calculator, "calculator");
+        this.maximumSize = maximumSize;
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && maximumSize / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // capacities add up to maximumSize exactly
+            segments[i] = new Segment(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    public record Stats(long hitCount, long missCount, long evictionCount) {
+
+        public long requestCount() {
+            return hitCount + missCount;
+        }
+
+        // 1 when nothing was requested yet
+        public double hitRate() {
+            long requestCount = requestCount();
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+    }
+
+    // compiles on a miss, compile errors propagate and nothing is cached
+    public CompiledFormula get(String formula) {
+        Objects.requireNonNull(formula, "formula");
+        Segment segment = segmentFor(formula);
+        CompiledFormula compiledFormula = segment.get(formula);
+        if (compiledFormula != null) {
+            hitCount.increment();
+            return compiledFormula;
+        }
+        missCount.increment();
+        // compile outside the lock, a concurrent miss on the same formula keeps the first instance
+        return segment.putIfAbsent(formula, calculator.compile(formula));
+    }
+
+    public void invalidate(String formula) {
+        segmentFor(formula).remove(formula);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) segment.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) size += segment.size();
+        return size;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
+
+    public FormulaCalculator getCalculator() {
+        return calculator;
+    }
+
+    private Segment segmentFor(String formula) {
+        int h = formula.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private final class Segment {
+        private final Map<String, CompiledFormula> entries;
+
+        Segment(int capacity) {
+            // access order turns the map into an LRU list
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledFormula> eldest) {
+                    if (size() <= capacity)
+                        return false;
+                    evictionCount.increment();
+                    return true;
+                }
+            };
+        }
+
+        synchronized CompiledFormula get(String formula) {
+            return entries.get(formula);
+        }
+
+        synchronized CompiledFormula putIfAbsent(String formula, CompiledFormula compiledFormula) {
+            CompiledFormula existing = entries.putIfAbsent(formula, compiledFormula);
+            return existing == null ? compiledFormula : existing;
+        }
+
+        synchronized void remove(String formula) {
+            entries.remove(formula);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.engine;
 
 
+import com.example.mutableDecimal.DecimalAccumulator;
 import com.example.mutableDecimal.MutableDecimal;
 
 import java.math.BigDecimal;
@@ -10,21 +11,55 @@ import java.util.*;
 public class FormulaCalculator {
 
     private final Operation operation;
+    // BIGDECIMAL operation re-running ADAPTIVE calculations that overflow, null on the other implementations
+    private final Operation fallbackOperation;
+    private final OPERATION_IMPLEMENTATION operationImplementation;
+    private final FormulaCache formulaCache;
+    private final int divideScale;
+    private final RoundingMode roundingMode;
+    private volatile FormulaMetrics metrics;
+    private volatile double adaptiveOverflowRate = DEFAULT_ADAPTIVE_OVERFLOW_RATE;
     public enum OPERATION_IMPLEMENTATION {
         BIGDECIMAL,
-        MUTABLEDECIMAL
+        MUTABLEDECIMAL,
+        // MUTABLEDECIMAL, an evaluation that overflows is re-run on BIGDECIMAL and returns the exact result.
+        // compiled formulas overflowing more often than the adaptive overflow rate move to BIGDECIMAL for good
+        ADAPTIVE
     }
 
+    public static final double DEFAULT_ADAPTIVE_OVERFLOW_RATE = 0.01;
+
     public FormulaCalculator(){
-        operation = new MutableDecimalOperation();
+        this(OPERATION_IMPLEMENTATION.MUTABLEDECIMAL);
     }
 
     public FormulaCalculator(OPERATION_IMPLEMENTATION operationImplementation) {
+        this(operationImplementation, 0);
+    }
+
+    // cacheSize > 0 makes calculate() compile each distinct formula once and keep up to cacheSize of them
+    public FormulaCalculator(OPERATION_IMPLEMENTATION operationImplementation, int cacheSize) {
+        this(operationImplementation, cacheSize, 2, RoundingMode.HALF_UP);
+    }
+
+    // every '/' of the formulas rounds to divideScale digits with roundingMode, calculate() and compiled alike
+    public FormulaCalculator(OPERATION_IMPLEMENTATION operationImplementation, int cacheSize, int divideScale, RoundingMode roundingMode) {
+        if (cacheSize < 0)
+            throw new IllegalArgumentException(String.format("negative cache size (%s)", cacheSize));
+        if (divideScale < 0)
+            throw new IllegalArgumentException(String.format("negative divide scale (%s)", divideScale));
+        if (roundingMode == null)
+            throw new IllegalArgumentException("missing rounding mode");
+        this.operationImplementation = operationImplementation;
+        this.divideScale = divideScale;
+        this.roundingMode = roundingMode;
+        this.formulaCache = cacheSize == 0 ? null : new FormulaCache(this, cacheSize);
         operation = switch (operationImplementation) {
-            case BIGDECIMAL -> new BigDecimalOperation();
-            case MUTABLEDECIMAL -> new MutableDecimalOperation();
+            case BIGDECIMAL -> new BigDecimalOperation(divideScale, roundingMode);
+            case MUTABLEDECIMAL, ADAPTIVE -> new MutableDecimalOperation(divideScale, roundingMode);
             default -> throw new UnsupportedOperationException("new operation implementation needed");
         };
+        fallbackOperation = operationImplementation == OPERATION_IMPLEMENTATION.ADAPTIVE ? new BigDecimalOperation(divideScale, roundingMode) : null;
     }
 
     interface Operation {
@@ -35,6 +70,13 @@ public class FormulaCalculator {
     }
 
     static class BigDecimalOperation implements Operation {
+        private final int divideScale;
+        private final RoundingMode roundingMode;
+
+        BigDecimalOperation(int divideScale, RoundingMode roundingMode) {
+            this.divideScale = divideScale;
+            this.roundingMode = roundingMode;
+        }
 
         @Override
         public String multiply(String first, String second) {
@@ -43,7 +85,7 @@ public class FormulaCalculator {
 
         @Override
         public String divide(String first, String second) {
-            return (new BigDecimal(first).divide(new BigDecimal(second), 2, RoundingMode.HALF_UP)).toString();
+            return (new BigDecimal(first).divide(new BigDecimal(second), divideScale, roundingMode)).toString();
         }
 
         @Override
@@ -62,6 +104,13 @@ public class FormulaCalculator {
     }
 
     static class MutableDecimalOperation implements Operation {
+        private final int divideScale;
+        private final RoundingMode roundingMode;
+
+        MutableDecimalOperation(int divideScale, RoundingMode roundingMode) {
+            this.divideScale = divideScale;
+            this.roundingMode = roundingMode;
+        }
 
         @Override
         public String multiply(String first, String second) {
@@ -70,25 +119,34 @@ public class FormulaCalculator {
 
         @Override
         public String divide(String first, String second) {
-            return (new MutableDecimal(first).divide(new MutableDecimal(second))).toString();
+            return (new MutableDecimal(first).divide(new MutableDecimal(second), divideScale, roundingMode)).toString();
         }
 
+        // running totals are exact, only a total out of MutableDecimal range throws
         @Override
         public String sumDeque(Deque<String> deque) {
-            MutableDecimal result = MutableDecimal.ZERO;
+            DecimalAccumulator result = new DecimalAccumulator();
+            MutableDecimal value = new MutableDecimal(0, 0);
             while (!deque.isEmpty()){
-                result = result.add(new MutableDecimal(deque.pop()));
+                value.reset(deque.pop());
+                result.add(value);
             }
-            return result.toString();
+            return result.get(value).toString();
         }
 
         @Override
         public String sumList(List<String> inputList){
-            return inputList.stream().map(MutableDecimal::new).reduce(MutableDecimal.ZERO, MutableDecimal::add).toString();
+            DecimalAccumulator result = new DecimalAccumulator();
+            MutableDecimal value = new MutableDecimal(0, 0);
+            for (String input : inputList) {
+                value.reset(input);
+                result.add(value);
+            }
+            return result.get(value).toString();
         }
     }
 
-    private String evaluate(char operator, String first, String second) {
+    private static String evaluate(Operation operation, char operator, String first, String second) {
         return switch (operator) {
             case '+' -> {
                 yield first;
@@ -97,16 +155,61 @@ public class FormulaCalculator {
                 yield "-" + first;
             }
             case '*' -> {
-                yield this.operation.multiply(first, second);
+                yield operation.multiply(first, second);
             }
             case '/' -> {
-                yield this.operation.divide(first, second);
+                yield operation.divide(first, second);
             }
             default -> throw new IllegalArgumentException(String.format("invalid operator (%s)", operator));
         };
     }
 
     public String calculate(String s) {
+        if (formulaCache != null)
+            return formulaCache.get(s).evaluate();
+        FormulaEvaluateEvent event = FormulaEvaluateEvent.beginIfEnabled();
+        FormulaMetrics metrics = this.metrics;
+        if (metrics == null) {
+            String result = interpret(s);
+            evaluated(event, s);
+            return result;
+        }
+        FormulaMetrics.Recorder recorder = metrics.recorder(s);
+        long start = System.nanoTime();
+        String result;
+        try {
+            result = interpret(s);
+        } catch (RuntimeException e) {
+            recorder.failed(e);
+            throw e;
+        }
+        recorder.evaluated(System.nanoTime() - start);
+        evaluated(event, s);
+        return result;
+    }
+
+    private void evaluated(FormulaEvaluateEvent event, String s) {
+        if (event != null && event.shouldCommit()) {
+            event.formula = s;
+            event.implementation = operationImplementation.name();
+            event.commit();
+        }
+    }
+
+    // ADAPTIVE calculations keep no per formula history without formula cache, each one starts on MUTABLEDECIMAL
+    private String interpret(String s) {
+        if (fallbackOperation == null)
+            return interpret(s, operation);
+        try {
+            return interpret(s, operation);
+        } catch (ArithmeticException | NumberFormatException e) {
+            // an overflow or a literal out of MutableDecimal range, malformed numbers fail on BigDecimal as well.
+            // same text as a MUTABLEDECIMAL result
+            return new BigDecimal(interpret(s, fallbackOperation)).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static String interpret(String s, Operation operation) {
         Deque<String> stack = new ArrayDeque<>();
         String curr = "";
         char previousOperator = '+';
@@ -121,9 +224,9 @@ public class FormulaCalculator {
                 previousOperator = '+';
             } else {
                 if (previousOperator == '*' || previousOperator == '/') {
-                    stack.push(evaluate(previousOperator, stack.pop(), curr));
+                    stack.push(evaluate(operation, previousOperator, stack.pop(), curr));
                 } else {
-                    stack.push(evaluate(previousOperator, curr, "0"));
+                    stack.push(evaluate(operation, previousOperator, curr, "0"));
                 }
 
                 curr = "";
@@ -133,13 +236,90 @@ public class FormulaCalculator {
                     while (!operators.contains(stack.peek())) {
                         numberList.add(stack.pop());
                     }
-                    curr = this.operation.sumList(numberList);
+                    curr = operation.sumList(numberList);
                     previousOperator = stack.pop().charAt(0); // convert string from stack back to char
                 }
             }
         }
 
-        return this.operation.sumDeque(stack);
+        return operation.sumDeque(stack);
+    }
+
+    // parse once, evaluate many times without re-tokenizing
+    public CompiledFormula compile(String s) {
+        return compile(s, false);
+    }
+
+    // same as compile, then translated into a generated class the JIT can inline as a whole,
+    // for the hottest formulas. falls back to compile's interpreter when the formula is too large
+    public CompiledFormula compileToBytecode(String s) {
+        return compile(s, true);
+    }
+
+    private CompiledFormula compile(String s, boolean generateBytecode) {
+        FormulaCompileEvent event = FormulaCompileEvent.beginIfEnabled();
+        FormulaMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        Program program = program(s);
+        // formulas failing to parse are not recorded
+        FormulaMetrics.Recorder recorder = metrics == null ? null : metrics.recorder(s);
+        CompiledFormula compiledFormula = new CompiledFormula(s, operationImplementation, program, generateBytecode, recorder, adaptiveOverflowRate);
+        if (recorder != null)
+            recorder.compiled(System.nanoTime() - start, generateBytecode && !compiledFormula.isBytecodeCompiled());
+        if (event != null && event.shouldCommit()) {
+            event.formula = s;
+            event.implementation = operationImplementation.name();
+            event.bytecodeRequested = generateBytecode;
+            event.bytecodeCompiled = compiledFormula.isBytecodeCompiled();
+            event.commit();
+        }
+        return compiledFormula;
+    }
+
+    private Program program(String s) {
+        return Program.compile(Optimizer.optimize(FormulaParser.parse(s, divideScale, roundingMode), operationImplementation));
+    }
+
+    public OPERATION_IMPLEMENTATION getOperationImplementation() {
+        return operationImplementation;
+    }
+
+    public int getDivideScale() {
+        return divideScale;
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    // formulas calculated or compiled from now on record into metrics, null turns recording off for them.
+    // formulas compiled before, cached ones included, keep the metrics they were compiled with
+    public FormulaCalculator setMetrics(FormulaMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    // null unless set
+    public FormulaMetrics getMetrics() {
+        return metrics;
+    }
+
+    // share of overflowing evaluations above which an ADAPTIVE formula compiled from now on moves to BIGDECIMAL,
+    // 1 keeps formulas on MUTABLEDECIMAL
+    public FormulaCalculator setAdaptiveOverflowRate(double adaptiveOverflowRate) {
+        if (!(adaptiveOverflowRate >= 0 && adaptiveOverflowRate <= 1))
+            throw new IllegalArgumentException(String.format("invalid overflow rate (%s)", adaptiveOverflowRate));
+        this.adaptiveOverflowRate = adaptiveOverflowRate;
+        return this;
+    }
+
+    public double getAdaptiveOverflowRate() {
+        return adaptiveOverflowRate;
+    }
+
+    // null when constructed without a cache
+    public FormulaCache getFormulaCache() {
+        return formulaCache;
     }
 }
 
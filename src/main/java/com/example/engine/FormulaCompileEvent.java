@@ -0,0 +1,41 @@
+package com.example.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+// parsing, optimizing and code generation of one formula by FormulaCalculator.compile or compileToBytecode
+@Name("com.example.engine.FormulaCompile")
+@Label("Formula Compile")
+@Category("Formula Engine")
+@Description("Formula parsed and compiled, slower than the threshold")
+@Threshold("1 ms")
+final class FormulaCompileEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(FormulaCompileEvent.class);
+
+    @Label("Formula")
+    String formula;
+
+    @Label("Implementation")
+    String implementation;
+
+    @Label("Bytecode Requested")
+    boolean bytecodeRequested;
+
+    @Label("Bytecode Compiled")
+    @Description("False when interpreted, by choice or because the formula is too large for a generated method")
+    boolean bytecodeCompiled;
+
+    // null when no recording enables the event, so the hot path allocates nothing
+    static FormulaCompileEvent beginIfEnabled() {
+        if (!TYPE.isEnabled())
+            return null;
+        FormulaCompileEvent event = new FormulaCompileEvent();
+        event.begin();
+        return event;
+    }
+}
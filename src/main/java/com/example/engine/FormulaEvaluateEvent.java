@@ -0,0 +1,41 @@
+package com.example.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+// one successful evaluation, of a CompiledFormula or of FormulaCalculator.calculate without formula cache
+@Name("com.example.engine.FormulaEvaluate")
+@Label("Formula Evaluate")
+@Category("Formula Engine")
+@Description("Formula evaluated, slower than the threshold")
+@Threshold("100 us")
+final class FormulaEvaluateEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(FormulaEvaluateEvent.class);
+
+    @Label("Formula")
+    String formula;
+
+    @Label("Implementation")
+    String implementation;
+
+    @Label("Operand Count")
+    @Description("Literals and variables of the formula, 0 for calculate without formula cache")
+    int operandCount;
+
+    @Label("Bytecode Compiled")
+    boolean bytecodeCompiled;
+
+    // null when no recording enables the event, so the hot path allocates nothing
+    static FormulaEvaluateEvent beginIfEnabled() {
+        if (!TYPE.isEnabled())
+            return null;
+        FormulaEvaluateEvent event = new FormulaEvaluateEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// named formulas referencing each other spreadsheet style, eg, net = gross - tax, tax = gross * rate / 100.
+// variables that name another formula take its value, the others are inputs set on the graph.
+// changing an input only recomputes the formulas downstream of it, level by level in topological order,
+// with the formulas of one level evaluated in parallel. values read like calculate() of the calculator's
+// implementation, BIGDECIMAL and ADAPTIVE ones beyond long range included. this implementation is not synchronized
+public final class FormulaGraph {
+
+    // formulas per leaf task when a level is split over the pool
+    private static final int BATCH_SIZE = 16;
+
+    private final FormulaCalculator calculator;
+    private final ForkJoinPool pool;
+    private final Map<String, FormulaNode> formulas = new LinkedHashMap<>();
+    private final Map<String, Input> inputs = new HashMap<>();
+    private final Map<String, List<FormulaNode>> dependents = new HashMap<>();
+    private List<List<FormulaNode>> levels = List.of();
+    private boolean dirty;
+
+    public FormulaGraph(FormulaCalculator calculator) {
+        this(calculator, ForkJoinPool.commonPool());
+    }
+
+    // a null pool evaluates every formula on the calling thread
+    public FormulaGraph(FormulaCalculator calculator, ForkJoinPool pool) {
+        this.calculator = Objects.requireNonNull(calculator, "calculator");
+        this.pool = pool;
+    }
+
+    // adds or replaces a formula, throws IllegalArgumentException and leaves the graph unchanged on a cycle
+    public FormulaGraph define(String name, String formula) {
+        Objects.requireNonNull(name, "name");
+        CompiledFormula compiledFormula = calculator.compile(formula);
+        List<String> cycle = findPath(compiledFormula.getVariables(), name);
+        if (cycle != null) {
+            cycle.add(0, name);
+            throw new IllegalArgumentException(String.format("cycle (%s)", String.join(" -> ", cycle)));
+        }
+        formulas.put(name, new FormulaNode(name, compiledFormula));
+        inputs.remove(name);
+        rebuild();
+        markDirty(name);
+        formulas.get(name).dirty = true;
+        return this;
+    }
+
+    public FormulaGraph set(String input, long unscaledValue, int scale) {
+        if (formulas.containsKey(input))
+            throw new IllegalArgumentException(String.format("(%s) is a formula", input));
+        Input value = inputs.computeIfAbsent(input, name -> new Input());
+        // an unchanged value leaves downstream formulas clean
+        if (value.bound && value.bigDecimalValue == null && value.unscaledValue == unscaledValue && value.scale == scale)
+            return this;
+        value.unscaledValue = unscaledValue;
+        value.scale = scale;
+        value.bigDecimalValue = null;
+        value.bound = true;
+        markDirty(input);
+        return this;
+    }
+
+    public FormulaGraph set(String input, MutableDecimal value) {
+        return set(input, value.getUnscaledValue(), value.getScale());
+    }
+
+    // a value out of long range fails the MUTABLEDECIMAL formulas reading it, see Bindings.set
+    public FormulaGraph set(String input, BigDecimal value) {
+        if (value.unscaledValue().bitLength() < Long.SIZE)
+            return set(input, value.unscaledValue().longValue(), value.scale());
+        if (formulas.containsKey(input))
+            throw new IllegalArgumentException(String.format("(%s) is a formula", input));
+        Input bound = inputs.computeIfAbsent(input, name -> new Input());
+        if (bound.bound && value.equals(bound.bigDecimalValue))
+            return this;
+        bound.bigDecimalValue = value;
+        bound.bound = true;
+        markDirty(input);
+        return this;
+    }
+
+    // value of a formula or an input, recalculates dirty formulas first. formulas read like
+    // CompiledFormula.evaluate, eg, 3.00 on BIGDECIMAL
+    public String get(String name) {
+        FormulaNode node = formulas.get(name);
+        if (node == null)
+            return get(name, new MutableDecimal(0, 0)).toString();
+        if (dirty) recalculate();
+        return node.bigDecimalValue == null ? node.value.toString() : node.formula.toString(node.bigDecimalValue);
+    }
+
+    // throws ArithmeticException if the value does not fit in a MutableDecimal
+    public MutableDecimal get(String name, MutableDecimal result) {
+        FormulaNode node = formulas.get(name);
+        if (node != null) {
+            if (dirty) recalculate();
+            if (node.bigDecimalValue != null)
+                result.reset(node.bigDecimalValue.unscaledValue().longValueExact(), node.bigDecimalValue.scale());
+            else
+                result.reset(node.value.getUnscaledValue(), node.value.getScale());
+            return result;
+        }
+        Input input = inputs.get(name);
+        if (input == null || !input.bound)
+            throw new IllegalArgumentException(String.format("variable (%s) is not bound", name));
+        if (input.bigDecimalValue != null)
+            result.reset(input.bigDecimalValue.unscaledValue().longValueExact(), input.bigDecimalValue.scale());
+        else
+            result.reset(input.unscaledValue, input.scale);
+        return result;
+    }
+
+    // recomputes dirty formulas, returns how many were evaluated
+    public int recalculate() {
+        int evaluated = 0;
+        for (List<FormulaNode> level : levels) {
+            List<FormulaNode> dirtyNodes = new ArrayList<>();
+            for (FormulaNode node : level) {
+                if (node.dirty) dirtyNodes.add(node);
+            }
+            if (dirtyNodes.isEmpty())
+                continue;
+            // formulas of one level never reference each other
+            if (pool == null || dirtyNodes.size() <= BATCH_SIZE) {
+                for (FormulaNode node : dirtyNodes) node.evaluate();
+            } else {
+                pool.invoke(new LevelTask(dirtyNodes, 0, dirtyNodes.size()));
+            }
+            for (FormulaNode node : dirtyNodes) node.dirty = false;
+            evaluated += dirtyNodes.size();
+        }
+        dirty = false;
+        return evaluated;
+    }
+
+    // formula names, every formula after the formulas it references
+    public List<String> getEvaluationOrder() {
+        List<String> order = new ArrayList<>(formulas.size());
+        for (List<FormulaNode> level : levels) {
+            for (FormulaNode node : level) order.add(node.name);
+        }
+        return order;
+    }
+
+    // variables referenced by formulas that are not formulas themselves
+    public Set<String> getInputs() {
+        Set<String> names = new LinkedHashSet<>();
+        for (FormulaNode node : formulas.values()) {
+            for (String variable : node.variables) {
+                if (!formulas.containsKey(variable)) names.add(variable);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    public FormulaCalculator getCalculator() {
+        return calculator;
+    }
+
+    // formula names leading from one of the variables to the target, null if the target is unreachable
+    private List<String> findPath(List<String> variables, String target) {
+        Set<String> visited = new LinkedHashSet<>();
+        for (String variable : variables) {
+            Deque<String> path = new ArrayDeque<>();
+            if (findPath(variable, target, visited, path))
+                return new ArrayList<>(path);
+        }
+        return null;
+    }
+
+    private boolean findPath(String name, String target, Set<String> visited, Deque<String> path) {
+        path.addLast(name);
+        if (name.equals(target))
+            return true;
+        FormulaNode node = formulas.get(name);
+        if (node != null && visited.add(name)) {
+            for (String variable : node.variables) {
+                if (findPath(variable, target, visited, path))
+                    return true;
+            }
+        }
+        path.removeLast();
+        return false;
+    }
+
+    // dependents and topological levels after a definition change, the graph is acyclic here
+    private void rebuild() {
+        dependents.clear();
+        for (FormulaNode node : formulas.values()) {
+            for (String variable : node.variables) {
+                dependents.computeIfAbsent(variable, name -> new ArrayList<>()).add(node);
+            }
+        }
+        Map<String, Integer> levelByName = new HashMap<>();
+        List<List<FormulaNode>> newLevels = new ArrayList<>();
+        for (FormulaNode node : formulas.values()) {
+            int level = levelOf(node, levelByName);
+            while (newLevels.size() <= level) newLevels.add(new ArrayList<>());
+            newLevels.get(level).add(node);
+        }
+        levels = newLevels;
+    }
+
+    private int levelOf(FormulaNode node, Map<String, Integer> levelByName) {
+        Integer known = levelByName.get(node.name);
+        if (known != null)
+            return known;
+        int level = 0;
+        for (String variable : node.variables) {
+            FormulaNode upstream = formulas.get(variable);
+            if (upstream != null) level = Math.max(level, levelOf(upstream, levelByName) + 1);
+        }
+        levelByName.put(node.name, level);
+        return level;
+    }
+
+    // every formula downstream of name
+    private void markDirty(String name) {
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(name);
+        while (!pending.isEmpty()) {
+            for (FormulaNode node : dependents.getOrDefault(pending.pop(), List.of())) {
+                if (!node.dirty) {
+                    node.dirty = true;
+                    pending.push(node.name);
+                }
+            }
+        }
+        dirty = true;
+    }
+
+    private static final class Input {
+        long unscaledValue;
+        int scale;
+        // a value out of long range, null otherwise
+        BigDecimal bigDecimalValue;
+        boolean bound;
+    }
+
+    private final class FormulaNode {
+        final String name;
+        final CompiledFormula formula;
+        final String[] variables;
+        // written by one task only, read by later levels after the pool join
+        final Bindings bindings;
+        final MutableDecimal value = new MutableDecimal(0, 0);
+        // the result of evaluations run on BigDecimal, keeping its scale and range, null when in value
+        BigDecimal bigDecimalValue;
+        boolean dirty;
+
+        FormulaNode(String name, CompiledFormula formula) {
+            this.name = name;
+            this.formula = formula;
+            this.variables = formula.getVariables().toArray(new String[0]);
+            this.bindings = formula.newBindings();
+        }
+
+        void evaluate() {
+            bindings.clear();
+            for (int i = 0; i < variables.length; i++) {
+                FormulaNode upstream = formulas.get(variables[i]);
+                if (upstream != null) {
+                    if (upstream.bigDecimalValue != null) bindings.set(i, upstream.bigDecimalValue);
+                    else bindings.set(i, upstream.value);
+                } else {
+                    Input input = inputs.get(variables[i]);
+                    if (input != null && input.bound) {
+                        if (input.bigDecimalValue != null) bindings.set(i, input.bigDecimalValue);
+                        else bindings.set(i, input.unscaledValue, input.scale);
+                    }
+                }
+            }
+            bigDecimalValue = formula.evaluateOrBigDecimal(bindings, value);
+        }
+    }
+
+    // splits a level in halves down to BATCH_SIZE formulas per task
+    private static final class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<FormulaNode> nodes;
+        private final int from;
+        private final int to;
+
+        LevelTask(List<FormulaNode> nodes, int from, int to) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) nodes.get(i).evaluate();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LevelTask(nodes, from, middle), new LevelTask(nodes, middle, to));
+        }
+    }
+}
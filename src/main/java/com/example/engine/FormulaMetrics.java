@@ -0,0 +1,171 @@
+package com.example.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// opt-in instrumentation of a FormulaCalculator, see FormulaCalculator.setMetrics. numbers are kept per formula text:
+// evaluation and compile counts, ArithmeticException (overflow, division by zero) and other failure counts,
+// BigDecimal and bytecode fallbacks and log2 bucketed latency histograms. counters are striped LongAdders, so recording
+// never locks and threads evaluating the same formula rarely contend. formulas compiled without metrics record nothing
+public final class FormulaMetrics {
+
+    // bucket i counts durations of [2^(i-1), 2^i) nanoseconds, bucket 0 those of 0
+    public static final int BUCKET_COUNT = Long.SIZE;
+
+    private final ConcurrentHashMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+    public record Histogram(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+
+        public Histogram {
+            bucketCounts = bucketCounts.clone();
+        }
+
+        @Override
+        public long[] bucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        // 0 when nothing was recorded yet
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        // upper bound of the bucket holding the given percentile, never above maxNanos. 0 when nothing was recorded yet
+        public long percentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException(String.format("invalid percentile (%s)", percentile));
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank)
+                    return Math.min(maxNanos, i == 0 ? 0 : i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Histogram other && Arrays.equals(bucketCounts, other.bucketCounts)
+                    && count == other.count && totalNanos == other.totalNanos && maxNanos == other.maxNanos;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(bucketCounts), count, totalNanos, maxNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Histogram[count=%s, mean=%.0fns, p50=%sns, p99=%sns, max=%sns]",
+                    count, meanNanos(), percentileNanos(50), percentileNanos(99), maxNanos);
+        }
+    }
+
+    // evaluationLatency covers successful evaluations only, compileLatency parsing, optimizing and code generation.
+    // bigDecimalFallbackCount counts ADAPTIVE evaluations re-run on BigDecimal after an ArithmeticException
+    public record Stats(long evaluationCount, long arithmeticExceptionCount, long failureCount, Histogram evaluationLatency,
+                        long bigDecimalFallbackCount, long compileCount, long bytecodeFallbackCount, Histogram compileLatency) {
+
+        // evaluations that threw, ArithmeticException or other
+        public long failedEvaluationCount() {
+            return arithmeticExceptionCount + failureCount;
+        }
+    }
+
+    // snapshot of one formula, null when nothing was recorded for it
+    public Stats stats(String formula) {
+        Recorder recorder = recorders.get(formula);
+        return recorder == null ? null : recorder.stats();
+    }
+
+    // snapshot of every formula, sorted by formula text. counters of one formula are read one after
+    // the other while recording goes on, so they may be off by the evaluations running meanwhile
+    public Map<String, Stats> snapshot() {
+        Map<String, Stats> snapshot = new TreeMap<>();
+        recorders.forEach((formula, recorder) -> snapshot.put(formula, recorder.stats()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    // forgets every formula, formulas compiled before keep recording into recorders no longer reported
+    public void reset() {
+        recorders.clear();
+    }
+
+    Recorder recorder(String formula) {
+        return recorders.computeIfAbsent(formula, f -> new Recorder());
+    }
+
+    static final class Recorder {
+        private final LongAdder arithmeticExceptionCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private final LongAdder bytecodeFallbackCount = new LongAdder();
+        private final LongAdder bigDecimalFallbackCount = new LongAdder();
+        private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+        private final LatencyHistogram compileLatency = new LatencyHistogram();
+
+        void evaluated(long nanos) {
+            evaluationLatency.record(nanos);
+        }
+
+        void failed(RuntimeException e) {
+            if (e instanceof ArithmeticException)
+                arithmeticExceptionCount.increment();
+            else
+                failureCount.increment();
+        }
+
+        void fellBack() {
+            bigDecimalFallbackCount.increment();
+        }
+
+        void compiled(long nanos, boolean bytecodeFallback) {
+            compileLatency.record(nanos);
+            if (bytecodeFallback) bytecodeFallbackCount.increment();
+        }
+
+        Stats stats() {
+            Histogram evaluations = evaluationLatency.snapshot();
+            long arithmeticExceptions = arithmeticExceptionCount.sum();
+            long failures = failureCount.sum();
+            Histogram compilations = compileLatency.snapshot();
+            return new Stats(evaluations.count() + arithmeticExceptions + failures, arithmeticExceptions, failures, evaluations,
+                    bigDecimalFallbackCount.sum(), compilations.count(), bytecodeFallbackCount.sum(), compilations);
+        }
+    }
+
+    private static final class LatencyHistogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        LatencyHistogram() {
+            for (int i = 0; i < BUCKET_COUNT; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            // a clock going backwards counts as 0
+            long value = Math.max(0, nanos);
+            buckets[Math.min(BUCKET_COUNT - 1, Long.SIZE - Long.numberOfLeadingZeros(value))].increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+        }
+
+        // count is the sum of the buckets read, so percentiles stay consistent with it
+        Histogram snapshot() {
+            long[] counts = new long[BUCKET_COUNT];
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            return new Histogram(counts, count, totalNanos.sum(), maxNanos.get());
+        }
+    }
+}
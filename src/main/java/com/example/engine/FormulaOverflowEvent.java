@@ -0,0 +1,39 @@
+package com.example.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// evaluation ending in an ArithmeticException, mostly a MUTABLEDECIMAL result out of long range,
+// or re-run on BigDecimal for an ADAPTIVE formula
+@Name("com.example.engine.FormulaOverflow")
+@Label("Formula Overflow")
+@Category("Formula Engine")
+@Description("Formula evaluation failed with an ArithmeticException, overflow or division by zero")
+final class FormulaOverflowEvent extends jdk.jfr.Event {
+
+    @Label("Formula")
+    String formula;
+
+    @Label("Implementation")
+    String implementation;
+
+    @Label("Message")
+    String message;
+
+    @Label("Fallback")
+    @Description("True when an ADAPTIVE formula re-runs the evaluation on BigDecimal instead of failing")
+    boolean fallback;
+
+    static void commit(String formula, FormulaCalculator.OPERATION_IMPLEMENTATION implementation, ArithmeticException e, boolean fallback) {
+        FormulaOverflowEvent event = new FormulaOverflowEvent();
+        if (!event.isEnabled())
+            return;
+        event.formula = formula;
+        event.implementation = implementation.name();
+        event.message = e.getMessage();
+        event.fallback = fallback;
+        event.commit();
+    }
+}
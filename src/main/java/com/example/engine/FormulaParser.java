@@ -0,0 +1,220 @@
+package com.example.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// recursive descent parser for the grammar accepted by FormulaCalculator.calculate
+// sum    := term (('+' | '-') term)*
+// term   := factor (('*' | '/') factor)*
+// factor := number | identifier | function '(' identifier ')' | '(' sum ')'
+//         | DIV '(' sum ',' sum [',' scale [',' mode]] ')' | ROUND '(' sum [',' scale [',' mode]] ')'
+// function := SUM | AVG | MIN | MAX | COUNT, function and mode names in any case, mode a RoundingMode name.
+// '/' and a DIV or ROUND without scale or mode use the scale and rounding mode of the formula
+final class FormulaParser {
+
+    private final String formula;
+    private final int scale;
+    private final RoundingMode roundingMode;
+    private int position;
+
+    private FormulaParser(String formula, int scale, RoundingMode roundingMode) {
+        this.formula = formula;
+        this.scale = scale;
+        this.roundingMode = roundingMode;
+    }
+
+    // divisions at scale 2 rounded HALF_UP, same as calculate()
+    static Node parse(String formula) {
+        return parse(formula, 2, RoundingMode.HALF_UP);
+    }
+
+    static Node parse(String formula, int scale, RoundingMode roundingMode) {
+        if (formula == null)
+            throw new IllegalArgumentException("formula should not be null");
+        FormulaParser parser = new FormulaParser(formula, scale, roundingMode);
+        Node root = parser.parseSum();
+        parser.skipWhitespace();
+        if (parser.position < formula.length())
+            throw parser.unexpected();
+        return root;
+    }
+
+    private Node parseSum() {
+        List<Node> terms = new ArrayList<>();
+        terms.add(parseTerm(false));
+        while (true) {
+            char c = peek();
+            if (c == '+' || c == '-') {
+                position++;
+                terms.add(parseTerm(c == '-'));
+            } else {
+                break;
+            }
+        }
+        return terms.size() == 1 ? terms.get(0) : new Node.Sum(terms);
+    }
+
+    private Node parseTerm(boolean negate) {
+        Node result = parseFactor();
+        if (negate) result = new Node.Negate(result);
+        while (true) {
+            char c = peek();
+            if (c == '*' || c == '/') {
+                position++;
+                result = c == '*' ? new Node.Multiply(result, parseFactor()) : new Node.Divide(result, parseFactor(), scale, roundingMode);
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private Node parseFactor() {
+        char c = peek();
+        if (c == '(') {
+            position++;
+            Node inner = parseSum();
+            if (peek() != ')')
+                throw unexpected();
+            position++;
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (Character.isLetter(c) || c == '_') {
+            int start = position;
+            String identifier = parseIdentifier();
+            if (peek() == '(')
+                return parseFunction(identifier, start);
+            return new Node.Variable(identifier);
+        }
+        throw unexpected();
+    }
+
+    private Node parseFunction(String name, int start) {
+        String upperCaseName = name.toUpperCase(Locale.ROOT);
+        if (upperCaseName.equals("DIV")) {
+            position++;
+            Node dividend = parseSum();
+            expect(',');
+            Node divisor = parseSum();
+            int divideScale = optionalScale();
+            RoundingMode divideRoundingMode = optionalRoundingMode();
+            expect(')');
+            return new Node.Divide(dividend, divisor, divideScale, divideRoundingMode);
+        }
+        if (upperCaseName.equals("ROUND")) {
+            position++;
+            Node operand = parseSum();
+            int roundScale = optionalScale();
+            RoundingMode roundRoundingMode = optionalRoundingMode();
+            expect(')');
+            return new Node.Round(operand, roundScale, roundRoundingMode);
+        }
+        return parseAggregate(name, start);
+    }
+
+    // ',' scale, or the scale of the formula when the argument list ends
+    private int optionalScale() {
+        if (peek() != ',')
+            return scale;
+        position++;
+        skipWhitespace();
+        int start = position;
+        while (position < formula.length() && Character.isDigit(formula.charAt(position))) position++;
+        if (start == position)
+            throw unexpected();
+        String literal = formula.substring(start, position);
+        try {
+            return Integer.parseInt(literal);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("invalid scale (%s) at index %s", literal, start), e);
+        }
+    }
+
+    // ',' mode, or the rounding mode of the formula when the argument list ends
+    private RoundingMode optionalRoundingMode() {
+        if (peek() != ',')
+            return roundingMode;
+        position++;
+        char c = peek();
+        if (!Character.isLetter(c) && c != '_')
+            throw unexpected();
+        int start = position;
+        String name = parseIdentifier();
+        try {
+            return RoundingMode.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("unknown rounding mode (%s) at index %s", name, start));
+        }
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw unexpected();
+        position++;
+    }
+
+    private Node parseAggregate(String name, int start) {
+        Aggregates.Function function;
+        try {
+            function = Aggregates.Function.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("unknown function (%s) at index %s", name, start));
+        }
+        position++;
+        char c = peek();
+        if (!Character.isLetter(c) && c != '_')
+            throw unexpected();
+        String array = parseIdentifier();
+        if (peek() != ')')
+            throw unexpected();
+        position++;
+        return new Node.Aggregate(function, array, scale, roundingMode);
+    }
+
+    private String parseIdentifier() {
+        int start = position;
+        while (position < formula.length()
+                && (Character.isLetterOrDigit(formula.charAt(position)) || formula.charAt(position) == '_')) {
+            position++;
+        }
+        return formula.substring(start, position);
+    }
+
+    private Node parseNumber() {
+        int start = position;
+        while (position < formula.length()
+                && (Character.isDigit(formula.charAt(position)) || formula.charAt(position) == '.')) {
+            position++;
+        }
+        String literal = formula.substring(start, position);
+        try {
+            return new Node.Literal(new BigDecimal(literal));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("invalid number (%s) at index %s", literal, start), e);
+        }
+    }
+
+    // next non-whitespace character, or 0 at the end of input
+    private char peek() {
+        skipWhitespace();
+        return position < formula.length() ? formula.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (position < formula.length() && Character.isWhitespace(formula.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException unexpected() {
+        if (position >= formula.length())
+            return new IllegalArgumentException(String.format("unexpected end of formula (%s)", formula));
+        return new IllegalArgumentException(String.format("unexpected character (%s) at index %s", formula.charAt(position), position));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+// parsed formula tree, shaped after the evaluation order of FormulaCalculator.calculate
+sealed interface Node {
+
+    record Literal(BigDecimal value) implements Node {
+    }
+
+    record Variable(String name) implements Node {
+    }
+
+    // aggregate function over an array binding, eg, SUM(amounts). AVG divides with the scale and rounding of the formula
+    record Aggregate(Aggregates.Function function, String array, int scale, RoundingMode roundingMode) implements Node {
+    }
+
+    // negation applies to the first factor of a subtracted term, same as calculate()
+    record Negate(Node operand) implements Node {
+    }
+
+    // terms are added from the last one to the first one, same as the stack in calculate()
+    record Sum(List<Node> terms) implements Node {
+        public Sum {
+            terms = List.copyOf(terms);
+        }
+    }
+
+    // '*', evaluated from left to right
+    record Multiply(Node left, Node right) implements Node {
+    }
+
+    // '/' with the scale and rounding of the formula, or DIV(dividend, divisor, scale, mode)
+    record Divide(Node dividend, Node divisor, int scale, RoundingMode roundingMode) implements Node {
+    }
+
+    // ROUND(operand, scale, mode)
+    record Round(Node operand, int scale, RoundingMode roundingMode) implements Node {
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// runs a Program over a stack of BigDecimal or MutableDecimal values
+final class ObjectStackEvaluator<T> {
+
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    private final Arithmetic<T> arithmetic;
+    private final int[] code;
+    private final T[] constants;
+    private final String[] variables;
+    private final int maxStack;
+    private final int frameSize;
+
+    ObjectStackEvaluator(Program program, String[] variables, Arithmetic<T> arithmetic) {
+        this.arithmetic = arithmetic;
+        this.code = program.code();
+        this.variables = variables;
+        BigDecimal[] programConstants = program.constants();
+        this.constants = arithmetic.newArray(programConstants.length);
+        for (int i = 0; i < programConstants.length; i++) {
+            constants[i] = arithmetic.valueOf(programConstants[i]);
+        }
+        this.maxStack = program.maxStack();
+        this.frameSize = program.frameSize();
+    }
+
+    T evaluate(Bindings bindings) {
+        boolean sameLayout = bindings != null && bindings.hasLayout(variables);
+        T[] stack = arithmetic.newArray(frameSize);
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case Program.PUSH -> stack[++top] = constants[code[pc++]];
+                case Program.LOAD -> {
+                    int index = Bindings.requireBound(bindings, sameLayout, variables, code[pc++]);
+                    stack[++top] = arithmetic.valueOf(bindings.bigDecimal(index));
+                }
+                case Program.STORE -> stack[maxStack + code[pc++]] = stack[top];
+                case Program.RECALL -> stack[++top] = stack[maxStack + code[pc++]];
+                case Program.AGGREGATE -> {
+                    int function = code[pc++];
+                    int variable = code[pc++];
+                    int scale = code[pc++];
+                    stack[++top] = arithmetic.valueOf(Aggregates.evaluate(function, bindings, sameLayout, variables, variable, scale, code[pc++]));
+                }
+                case Program.NEGATE -> stack[top] = arithmetic.negate(stack[top]);
+                case Program.ADD -> {
+                    T second = stack[top--];
+                    stack[top] = arithmetic.add(stack[top], second);
+                }
+                case Program.MULTIPLY -> {
+                    T second = stack[top--];
+                    stack[top] = arithmetic.multiply(stack[top], second);
+                }
+                case Program.DIVIDE -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    T second = stack[top--];
+                    stack[top] = arithmetic.divide(stack[top], second, scale, roundingMode);
+                }
+                case Program.MULTIPLY_DIVIDE -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    T divisor = stack[top--];
+                    T second = stack[top--];
+                    stack[top] = arithmetic.multiplyDivide(stack[top], second, divisor, scale, roundingMode);
+                }
+                case Program.ROUND -> {
+                    int scale = code[pc++];
+                    stack[top] = arithmetic.round(stack[top], scale, ROUNDING_MODES[code[pc++]]);
+                }
+                default -> throw new IllegalStateException(String.format("invalid instruction (%s)", code[pc - 1]));
+            }
+        }
+        return stack[0];
+    }
+}
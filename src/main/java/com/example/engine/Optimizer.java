@@ -0,0 +1,95 @@
+package com.example.engine;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// rewrites a parsed formula before Program.compile without changing its result:
+// literal only subtrees are folded by running them on the evaluator of the operation implementation,
+// so folding keeps its divide and ROUND rounding, and structurally equal subtrees become one shared instance,
+// which Program evaluates once
+final class Optimizer {
+
+    private final FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation;
+    private final Map<Node, Node> interned = new HashMap<>();
+
+    private Optimizer(FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation) {
+        this.operationImplementation = operationImplementation;
+    }
+
+    static Node optimize(Node root, FormulaCalculator.OPERATION_IMPLEMENTATION operationImplementation) {
+        return new Optimizer(operationImplementation).rewrite(root);
+    }
+
+    private Node rewrite(Node node) {
+        Node rewritten;
+        if (node instanceof Node.Negate negate) {
+            Node operand = rewrite(negate.operand());
+            rewritten = new Node.Negate(operand);
+            if (operand instanceof Node.Literal)
+                rewritten = fold(rewritten);
+        } else if (node instanceof Node.Multiply multiply) {
+            Node left = rewrite(multiply.left());
+            Node right = rewrite(multiply.right());
+            rewritten = new Node.Multiply(left, right);
+            if (left instanceof Node.Literal && right instanceof Node.Literal)
+                rewritten = fold(rewritten);
+        } else if (node instanceof Node.Divide divide) {
+            Node dividend = rewrite(divide.dividend());
+            Node divisor = rewrite(divide.divisor());
+            rewritten = new Node.Divide(dividend, divisor, divide.scale(), divide.roundingMode());
+            if (dividend instanceof Node.Literal && divisor instanceof Node.Literal)
+                rewritten = fold(rewritten);
+        } else if (node instanceof Node.Round round) {
+            Node operand = rewrite(round.operand());
+            rewritten = new Node.Round(operand, round.scale(), round.roundingMode());
+            if (operand instanceof Node.Literal)
+                rewritten = fold(rewritten);
+        } else if (node instanceof Node.Sum sum) {
+            rewritten = rewriteSum(sum);
+        } else {
+            rewritten = node;
+        }
+        Node existing = interned.putIfAbsent(rewritten, rewritten);
+        return existing == null ? rewritten : existing;
+    }
+
+    // terms are added from the last one, only the literals at the end of the list are added before
+    // any other term, folding other literals would reorder additions and may move an overflow
+    private Node rewriteSum(Node.Sum sum) {
+        List<Node> terms = new ArrayList<>(sum.terms().size());
+        for (Node term : sum.terms()) terms.add(rewrite(term));
+        int first = terms.size();
+        while (first > 0 && terms.get(first - 1) instanceof Node.Literal) first--;
+        if (terms.size() - first >= 2) {
+            Node folded = fold(new Node.Sum(terms.subList(first, terms.size())));
+            if (folded instanceof Node.Literal) {
+                terms.subList(first, terms.size()).clear();
+                terms.add(folded);
+            }
+        }
+        return terms.size() == 1 ? terms.get(0) : new Node.Sum(terms);
+    }
+
+    // the node unchanged when evaluation fails, eg, division by zero, so the error surfaces on evaluate
+    private Node fold(Node node) {
+        Program program = Program.compile(node);
+        try {
+            return new Node.Literal(switch (operationImplementation) {
+                case BIGDECIMAL -> new ObjectStackEvaluator<>(program, program.variables(), new Arithmetic.BigDecimalArithmetic()).evaluate(null);
+                // an ADAPTIVE value that folds on MUTABLEDECIMAL is exactly the BIGDECIMAL one
+                case MUTABLEDECIMAL, ADAPTIVE -> {
+                    PrimitiveEvaluator evaluator = new PrimitiveEvaluator(program, program.variables());
+                    PrimitiveEvaluator.OperandStack stack = evaluator.newOperandStack();
+                    evaluator.evaluate(null, stack);
+                    yield BigDecimal.valueOf(stack.resultUnscaledValue(), stack.resultScale());
+                }
+                default -> throw new UnsupportedOperationException("new operation implementation needed");
+            });
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return node;
+        }
+    }
+}
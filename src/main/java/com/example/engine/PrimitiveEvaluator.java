@@ -0,0 +1,167 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.DecimalAccumulator;
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// runs a Program on (unscaled long, scale) pairs with MutableDecimal semantics,
+// every intermediate result stays on a preallocated OperandStack so evaluation produces no garbage
+final class PrimitiveEvaluator {
+
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    private final int[] code;
+    private final long[] constantUnscaledValues;
+    private final int[] constantScales;
+    private final String[] variables;
+    private final int maxStack;
+    private final int frameSize;
+    private final ThreadLocal<OperandStack> operandStack;
+
+    PrimitiveEvaluator(Program program, String[] variables) {
+        this.code = program.code();
+        this.variables = variables;
+        BigDecimal[] constants = program.constants();
+        this.constantUnscaledValues = new long[constants.length];
+        this.constantScales = new int[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            // loaded as (unscaled, scale) pairs, folded constants may have 19 digits and still fit a long
+            BigDecimal constant = constants[i].scale() > 0 ? constants[i].stripTrailingZeros() : constants[i];
+            if (constant.unscaledValue().bitLength() >= Long.SIZE)
+                throw new NumberFormatException(String.format("constant out of long range (%s)", constants[i].toPlainString()));
+            long unscaledValue = constant.unscaledValue().longValue();
+            constantUnscaledValues[i] = MutableDecimal.normalizedUnscaled(unscaledValue, constant.scale());
+            constantScales[i] = MutableDecimal.normalizedScale(unscaledValue, constant.scale());
+        }
+        this.maxStack = program.maxStack();
+        this.frameSize = program.frameSize();
+        this.operandStack = ThreadLocal.withInitial(this::newOperandStack);
+    }
+
+    OperandStack newOperandStack() {
+        return new OperandStack(frameSize);
+    }
+
+    long constantUnscaledValue(int constant) {
+        return constantUnscaledValues[constant];
+    }
+
+    int constantScale(int constant) {
+        return constantScales[constant];
+    }
+
+    // operand stack owned by the calling thread
+    OperandStack operandStack() {
+        return operandStack.get();
+    }
+
+    // leaves the result in stack.unscaledValues[0] and stack.scales[0]
+    void evaluate(Bindings bindings, OperandStack stack) {
+        boolean sameLayout = bindings != null && bindings.hasLayout(variables);
+        long[] unscaledValues = stack.unscaledValues;
+        int[] scales = stack.scales;
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case Program.PUSH -> {
+                    int constant = code[pc++];
+                    unscaledValues[++top] = constantUnscaledValues[constant];
+                    scales[top] = constantScales[constant];
+                }
+                case Program.LOAD -> {
+                    int index = Bindings.requireBound(bindings, sameLayout, variables, code[pc++]);
+                    long unscaledValue = bindings.unscaledValue(index);
+                    int scale = bindings.scale(index);
+                    unscaledValues[++top] = MutableDecimal.normalizedUnscaled(unscaledValue, scale);
+                    scales[top] = MutableDecimal.normalizedScale(unscaledValue, scale);
+                }
+                case Program.STORE -> {
+                    int slot = maxStack + code[pc++];
+                    unscaledValues[slot] = unscaledValues[top];
+                    scales[slot] = scales[top];
+                }
+                case Program.RECALL -> {
+                    int slot = maxStack + code[pc++];
+                    unscaledValues[++top] = unscaledValues[slot];
+                    scales[top] = scales[slot];
+                }
+                case Program.AGGREGATE -> {
+                    int function = code[pc++];
+                    int variable = code[pc++];
+                    int scale = code[pc++];
+                    Aggregates.evaluate(function, bindings, sameLayout, variables, variable, scale, code[pc++], stack, ++top);
+                }
+                case Program.NEGATE -> unscaledValues[top] = Math.negateExact(unscaledValues[top]);
+                case Program.ADD -> {
+                    long y = unscaledValues[top];
+                    int yScale = scales[top--];
+                    long sum = MutableDecimal.addUnscaled(unscaledValues[top], scales[top], y, yScale);
+                    int sumScale = MutableDecimal.addScale(scales[top], yScale);
+                    unscaledValues[top] = MutableDecimal.normalizedUnscaled(sum, sumScale);
+                    scales[top] = MutableDecimal.normalizedScale(sum, sumScale);
+                }
+                case Program.MULTIPLY -> {
+                    long y = unscaledValues[top];
+                    int yScale = scales[top--];
+                    long product = MutableDecimal.multiplyUnscaled(unscaledValues[top], y);
+                    int productScale = MutableDecimal.multiplyScale(scales[top], yScale);
+                    unscaledValues[top] = MutableDecimal.normalizedUnscaled(product, productScale);
+                    scales[top] = MutableDecimal.normalizedScale(product, productScale);
+                }
+                case Program.DIVIDE -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    long y = unscaledValues[top];
+                    int yScale = scales[top--];
+                    long quotient = MutableDecimal.divideUnscaled(unscaledValues[top], scales[top], y, yScale, scale, roundingMode);
+                    unscaledValues[top] = MutableDecimal.normalizedUnscaled(quotient, scale);
+                    scales[top] = MutableDecimal.normalizedScale(quotient, scale);
+                }
+                case Program.MULTIPLY_DIVIDE -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    top -= 2;
+                    long quotient = MutableDecimal.multiplyDivideUnscaled(unscaledValues[top], scales[top],
+                            unscaledValues[top + 1], scales[top + 1], unscaledValues[top + 2], scales[top + 2], scale, roundingMode);
+                    unscaledValues[top] = MutableDecimal.normalizedUnscaled(quotient, scale);
+                    scales[top] = MutableDecimal.normalizedScale(quotient, scale);
+                }
+                case Program.ROUND -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    long rounded = MutableDecimal.roundUnscaled(unscaledValues[top], scales[top], scale, roundingMode);
+                    int roundedScale = Math.min(scales[top], scale);
+                    unscaledValues[top] = MutableDecimal.normalizedUnscaled(rounded, roundedScale);
+                    scales[top] = MutableDecimal.normalizedScale(rounded, roundedScale);
+                }
+                default -> throw new IllegalStateException(String.format("invalid instruction (%s)", code[pc - 1]));
+            }
+        }
+    }
+
+    static final class OperandStack {
+        final long[] unscaledValues;
+        final int[] scales;
+        // scratch of the SUM and AVG aggregates
+        final DecimalAccumulator accumulator = new DecimalAccumulator();
+        final MutableDecimal sum = new MutableDecimal(0, 0);
+        // ArithmeticException of an ADAPTIVE evaluation of this thread that is re-run on BigDecimal next
+        ArithmeticException fallback;
+
+        OperandStack(int size) {
+            this.unscaledValues = new long[size];
+            this.scales = new int[size];
+        }
+
+        long resultUnscaledValue() {
+            return unscaledValues[0];
+        }
+
+        int resultScale() {
+            return scales[0];
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.engine;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// postfix form of a parsed formula, shared by the evaluators
+final class Program {
+
+    static final int PUSH = 0; // followed by constant index
+    static final int NEGATE = 1;
+    static final int ADD = 2;
+    static final int MULTIPLY = 3;
+    static final int DIVIDE = 4; // followed by scale and RoundingMode ordinal
+    static final int LOAD = 5; // followed by variable index
+    static final int STORE = 6; // followed by slot index, copies the top of the stack into the slot
+    static final int RECALL = 7; // followed by slot index
+    static final int AGGREGATE = 8; // followed by Aggregates.Function ordinal, variable index, scale and RoundingMode ordinal
+    static final int MULTIPLY_DIVIDE = 9; // followed by scale and RoundingMode ordinal, a * b / c of the top three values rounded once
+    static final int ROUND = 10; // followed by scale and RoundingMode ordinal
+
+    // slots follow the operand stack, slot i lives at index maxStack() + i
+
+    private final int[] code;
+    private final BigDecimal[] constants;
+    private final String[] variables;
+    private final int maxStack;
+    private final int slotCount;
+    private final boolean hasAggregates;
+
+    private Program(int[] code, BigDecimal[] constants, String[] variables, int maxStack, int slotCount, boolean hasAggregates) {
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStack = maxStack;
+        this.slotCount = slotCount;
+        this.hasAggregates = hasAggregates;
+    }
+
+    // a Sum, Multiply, Divide, Round or Aggregate instance reached more than once, see Optimizer, is computed once and recalled afterwards
+    static Program compile(Node root) {
+        Builder builder = new Builder();
+        builder.collectVariables(root);
+        builder.countReferences(root);
+        builder.emit(root);
+        return new Program(builder.code(), builder.constants.toArray(new BigDecimal[0]),
+                builder.variables.toArray(new String[0]), builder.maxDepth, builder.slots.size(), !builder.arrays.isEmpty());
+    }
+
+    int[] code() {
+        return code.clone();
+    }
+
+    BigDecimal[] constants() {
+        return constants.clone();
+    }
+
+    // variable names in order of first appearance, indexed by LOAD
+    String[] variables() {
+        return variables.clone();
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    // operand stack plus slots
+    int frameSize() {
+        return maxStack + slotCount;
+    }
+
+    // true when some variables are read as arrays
+    boolean hasAggregates() {
+        return hasAggregates;
+    }
+
+    private static final class Builder {
+        private int[] code = new int[16];
+        private int length;
+        private final List<BigDecimal> constants = new ArrayList<>();
+        private final List<String> variables = new ArrayList<>();
+        private final Set<String> arrays = new HashSet<>();
+        private final Map<Node, Integer> references = new IdentityHashMap<>();
+        private final Map<Node, Integer> slots = new IdentityHashMap<>();
+        private int depth;
+        private int maxDepth;
+
+        private void emit(Node node) {
+            if (references.getOrDefault(node, 0) > 1) {
+                Integer slot = slots.get(node);
+                if (slot != null) {
+                    append(RECALL, slot);
+                    grow(1);
+                    return;
+                }
+                emitTree(node);
+                slot = slots.size();
+                slots.put(node, slot);
+                append(STORE, slot);
+            } else {
+                emitTree(node);
+            }
+        }
+
+        private void emitTree(Node node) {
+            if (node instanceof Node.Literal literal) {
+                constants.add(literal.value());
+                append(PUSH, constants.size() - 1);
+                grow(1);
+            } else if (node instanceof Node.Variable variable) {
+                append(LOAD, variables.indexOf(variable.name()));
+                grow(1);
+            } else if (node instanceof Node.Aggregate aggregate) {
+                append(AGGREGATE, aggregate.function().ordinal(), variables.indexOf(aggregate.array()), aggregate.scale(), aggregate.roundingMode().ordinal());
+                grow(1);
+            } else if (node instanceof Node.Negate negate) {
+                emit(negate.operand());
+                append(NEGATE);
+            } else if (node instanceof Node.Sum sum) {
+                // same order as popping the stack in calculate(): last term first
+                List<Node> terms = sum.terms();
+                emit(terms.get(terms.size() - 1));
+                for (int i = terms.size() - 2; i >= 0; i--) {
+                    emit(terms.get(i));
+                    append(ADD);
+                    grow(-1);
+                }
+            } else if (node instanceof Node.Multiply multiply) {
+                emit(multiply.left());
+                emit(multiply.right());
+                append(MULTIPLY);
+                grow(-1);
+            } else if (node instanceof Node.Divide divide && isMultiplyDivide(divide)) {
+                Node.Multiply product = (Node.Multiply) divide.dividend();
+                emit(product.left());
+                emit(product.right());
+                emit(divide.divisor());
+                append(MULTIPLY_DIVIDE, divide.scale(), divide.roundingMode().ordinal());
+                grow(-2);
+            } else if (node instanceof Node.Divide divide) {
+                emit(divide.dividend());
+                emit(divide.divisor());
+                append(DIVIDE, divide.scale(), divide.roundingMode().ordinal());
+                grow(-1);
+            } else if (node instanceof Node.Round round) {
+                emit(round.operand());
+                append(ROUND, round.scale(), round.roundingMode().ordinal());
+            } else {
+                throw new IllegalArgumentException(String.format("unsupported node (%s)", node));
+            }
+        }
+
+        // a product divided right away, unless the product is shared and has to be stored on its own
+        private boolean isMultiplyDivide(Node.Divide divide) {
+            return divide.dividend() instanceof Node.Multiply product && references.getOrDefault(product, 0) <= 1;
+        }
+
+        // in order of appearance in the formula, emit() visits sums backwards
+        private void collectVariables(Node node) {
+            if (node instanceof Node.Variable variable) {
+                if (arrays.contains(variable.name()))
+                    throw new IllegalArgumentException(String.format("variable (%s) used as both value and array", variable.name()));
+                if (!variables.contains(variable.name())) variables.add(variable.name());
+            } else if (node instanceof Node.Aggregate aggregate) {
+                if (variables.contains(aggregate.array()) && !arrays.contains(aggregate.array()))
+                    throw new IllegalArgumentException(String.format("variable (%s) used as both value and array", aggregate.array()));
+                if (arrays.add(aggregate.array())) variables.add(aggregate.array());
+            } else if (node instanceof Node.Negate negate) {
+                collectVariables(negate.operand());
+            } else if (node instanceof Node.Sum sum) {
+                sum.terms().forEach(this::collectVariables);
+            } else if (node instanceof Node.Multiply multiply) {
+                collectVariables(multiply.left());
+                collectVariables(multiply.right());
+            } else if (node instanceof Node.Divide divide) {
+                collectVariables(divide.dividend());
+                collectVariables(divide.divisor());
+            } else if (node instanceof Node.Round round) {
+                collectVariables(round.operand());
+            }
+        }
+
+        // a shared node is counted once per reference, its children only once
+        private void countReferences(Node node) {
+            if (node instanceof Node.Aggregate) {
+                references.merge(node, 1, Integer::sum);
+                return;
+            }
+            if (!(node instanceof Node.Sum) && !(node instanceof Node.Multiply) && !(node instanceof Node.Divide) && !(node instanceof Node.Round)) {
+                if (node instanceof Node.Negate negate) countReferences(negate.operand());
+                return;
+            }
+            if (references.merge(node, 1, Integer::sum) > 1)
+                return;
+            if (node instanceof Node.Sum sum) {
+                sum.terms().forEach(this::countReferences);
+            } else if (node instanceof Node.Divide divide) {
+                countReferences(divide.dividend());
+                countReferences(divide.divisor());
+            } else if (node instanceof Node.Round round) {
+                countReferences(round.operand());
+            } else {
+                Node.Multiply multiply = (Node.Multiply) node;
+                countReferences(multiply.left());
+                countReferences(multiply.right());
+            }
+        }
+
+        private void append(int... instruction) {
+            if (length + instruction.length > code.length)
+                code = Arrays.copyOf(code, Math.max(code.length * 2, length + instruction.length));
+            for (int i : instruction) code[length++] = i;
+        }
+
+        private void grow(int delta) {
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private int[] code() {
+            return Arrays.copyOf(code, length);
+        }
+    }
+}
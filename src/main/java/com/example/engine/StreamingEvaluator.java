@@ -0,0 +1,339 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+// evaluates a CompiledFormula for every line of a CSV or fixed width file without creating per row objects.
+// the input is memory mapped window by window, numeric columns are parsed in place from the mapped bytes and
+// results are written as ASCII through a reusable direct buffer, so memory use does not grow with the file.
+// a window is unmapped as soon as its lines are done, see unmap, so at most one is mapped at a time.
+// lines failing to parse or evaluate go to the ErrorSink. this implementation is not synchronized
+public final class StreamingEvaluator {
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    // sun.misc.Unsafe.invokeCleaner bound to the Unsafe instance, null where jdk.unsupported is missing
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final CompiledFormula formula;
+    private final String[] variables;
+    // per variable, csv field index or -1 for a fixed width column
+    private final int[] fields;
+    private final int[] offsets;
+    private final int[] lengths;
+    private byte delimiter = ',';
+    private int skipLines;
+    private boolean includeInputRow;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private ErrorSink errorSink = ErrorSink.FAIL;
+
+    public StreamingEvaluator(CompiledFormula formula) {
+        this.formula = Objects.requireNonNull(formula, "formula");
+        this.variables = formula.getVariables().toArray(new String[0]);
+        this.fields = new int[variables.length];
+        this.offsets = new int[variables.length];
+        this.lengths = new int[variables.length];
+        // -2 marks a variable without column
+        Arrays.fill(fields, -2);
+    }
+
+    @FunctionalInterface
+    public interface ErrorSink {
+        // rethrows the error, stopping the evaluation
+        ErrorSink FAIL = (lineNumber, line, error) -> {
+            throw error;
+        };
+
+        // lineNumber counts from 1 and includes skipped lines
+        void rowFailed(long lineNumber, String line, RuntimeException error);
+    }
+
+    public record Stats(long rowCount, long failedRowCount) {
+
+        public long writtenRowCount() {
+            return rowCount - failedRowCount;
+        }
+    }
+
+    // separates csv fields, also written between the input row and the result when includeInputRow is set
+    public StreamingEvaluator delimiter(char delimiter) {
+        if (delimiter > 0x7F || delimiter == '\n')
+            throw new IllegalArgumentException(String.format("invalid delimiter (%s)", delimiter));
+        this.delimiter = (byte) delimiter;
+        return this;
+    }
+
+    // zero based index of the csv field holding the variable
+    public StreamingEvaluator csvColumn(String variable, int field) {
+        if (field < 0)
+            throw new IllegalArgumentException(String.format("negative field (%s)", field));
+        int index = requireVariable(variable);
+        fields[index] = field;
+        return this;
+    }
+
+    // zero based byte offset and length of the variable within the line
+    public StreamingEvaluator fixedWidthColumn(String variable, int offset, int length) {
+        if (offset < 0 || length <= 0)
+            throw new IllegalArgumentException(String.format("invalid column (%s, %s)", offset, length));
+        int index = requireVariable(variable);
+        fields[index] = -1;
+        offsets[index] = offset;
+        lengths[index] = length;
+        return this;
+    }
+
+    // eg, 1 to skip a header line
+    public StreamingEvaluator skipLines(int skipLines) {
+        if (skipLines < 0)
+            throw new IllegalArgumentException(String.format("negative skip lines (%s)", skipLines));
+        this.skipLines = skipLines;
+        return this;
+    }
+
+    // writes "input row, delimiter, result" instead of the result alone
+    public StreamingEvaluator includeInputRow(boolean includeInputRow) {
+        this.includeInputRow = includeInputRow;
+        return this;
+    }
+
+    // bytes mapped at a time, bounds the longest line
+    public StreamingEvaluator windowSize(int windowSize) {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException(String.format("non-positive window size (%s)", windowSize));
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public StreamingEvaluator errorSink(ErrorSink errorSink) {
+        this.errorSink = Objects.requireNonNull(errorSink, "errorSink");
+        return this;
+    }
+
+    public Stats evaluate(Path input, Path output) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return evaluate(in, out);
+        }
+    }
+
+    // one result line per input row, empty and skipped lines produce no output
+    public Stats evaluate(FileChannel input, WritableByteChannel output) throws IOException {
+        for (int i = 0; i < variables.length; i++) {
+            if (fields[i] == -2)
+                throw new IllegalStateException(String.format("variable (%s) has no column", variables[i]));
+        }
+        Run run = new Run(output);
+        long size = input.size();
+        long position = 0;
+        while (position < size) {
+            int length = (int) Math.min(windowSize, size - position);
+            boolean last = position + length == size;
+            MappedByteBuffer window = input.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int lineStart = 0;
+            try {
+                while (lineStart < length) {
+                    int lineEnd = indexOf(window, lineStart, length);
+                    if (lineEnd < 0) {
+                        // the line continues in the next window, unless the file ends without newline
+                        if (!last) break;
+                        lineEnd = length;
+                    }
+                    run.line(window, lineStart, lineEnd);
+                    lineStart = lineEnd + 1;
+                }
+            } finally {
+                unmap(window);
+            }
+            if (lineStart == 0)
+                throw new IllegalArgumentException(String.format("line (%s) longer than window size (%s)", run.lineNumber + 1, windowSize));
+            position += Math.min(lineStart, length);
+        }
+        run.flush();
+        return new Stats(run.rowCount, run.failedRowCount);
+    }
+
+    private int requireVariable(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) return i;
+        }
+        throw new IllegalArgumentException(String.format("unknown variable (%s)", variable));
+    }
+
+    // releases the mapping now instead of when the garbage collector finds the buffer, which for a multi GB file
+    // could leave many windows mapped. no view of the window may be used afterwards, rows only copy from it.
+    // without jdk.unsupported the mapping is left to the garbage collector
+    private static void unmap(MappedByteBuffer window) {
+        if (INVOKE_CLEANER == null)
+            return;
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) window);
+        } catch (Throwable e) {
+            // left to the garbage collector
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    // scratch state of one evaluate call
+    private final class Run {
+        private final WritableByteChannel output;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        private final Bindings bindings = formula.newBindings();
+        private final MutableDecimal value = new MutableDecimal(0, 0);
+        private final MutableDecimal result = new MutableDecimal(0, 0);
+        // BIGDECIMAL results are written like BigDecimal.toString, eg, 1.50, and ADAPTIVE ones like toPlainString.
+        // both are written from their unscaled long and scale when they fit and read plain, only the others as text
+        private final boolean plainText = formula.getOperationImplementation() == FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE;
+        // the row result, as text only when it does not fit the unscaled long and scale pair
+        private long resultUnscaledValue;
+        private int resultScale;
+        private String text;
+        private final int[] fieldStarts;
+        private final int[] fieldEnds;
+        private long lineNumber;
+        private long rowCount;
+        private long failedRowCount;
+
+        Run(WritableByteChannel output) {
+            this.output = output;
+            int fieldCount = 0;
+            for (int field : fields) fieldCount = Math.max(fieldCount, field + 1);
+            this.fieldStarts = new int[fieldCount];
+            this.fieldEnds = new int[fieldCount];
+        }
+
+        void line(ByteBuffer window, int start, int end) throws IOException {
+            lineNumber++;
+            if (end > start && window.get(end - 1) == '\r') end--;
+            if (lineNumber <= skipLines || end == start)
+                return;
+            rowCount++;
+            try {
+                parse(window, start, end);
+                BigDecimal bigDecimal = formula.evaluateOrBigDecimal(bindings, result);
+                text = null;
+                if (bigDecimal == null) {
+                    resultUnscaledValue = result.getUnscaledValue();
+                    resultScale = result.getScale();
+                } else if (!fitsLong(bigDecimal)) {
+                    text = plainText ? bigDecimal.toPlainString() : bigDecimal.toString();
+                }
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                failedRowCount++;
+                byte[] line = new byte[end - start];
+                window.get(start, line);
+                errorSink.rowFailed(lineNumber, new String(line, StandardCharsets.ISO_8859_1), e);
+                return;
+            }
+            write(window, start, end);
+        }
+
+        private void parse(ByteBuffer window, int start, int end) {
+            if (fieldStarts.length > 0) split(window, start, end);
+            for (int i = 0; i < variables.length; i++) {
+                int field = fields[i];
+                if (field >= 0) {
+                    value.reset(window, fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+                } else {
+                    if (offsets[i] + lengths[i] > end - start)
+                        throw new IllegalArgumentException(String.format("line shorter than column (%s)", variables[i]));
+                    value.reset(window, start + offsets[i], lengths[i]);
+                }
+                bindings.set(i, value);
+            }
+        }
+
+        // bounds of the fields up to the last one read, the rest of the line is not scanned
+        private void split(ByteBuffer window, int start, int end) {
+            int field = 0;
+            fieldStarts[0] = start;
+            for (int i = start; i < end; i++) {
+                if (window.get(i) == delimiter) {
+                    fieldEnds[field++] = i;
+                    if (field == fieldStarts.length)
+                        return;
+                    fieldStarts[field] = i + 1;
+                }
+            }
+            fieldEnds[field++] = end;
+            if (field < fieldStarts.length)
+                throw new IllegalArgumentException(String.format("expected (%s) fields, found (%s)", fieldStarts.length, field));
+        }
+
+        // takes a BigDecimal result whose text writeAscii reproduces, its scale unchanged so 1.50 stays 1.50
+        private boolean fitsLong(BigDecimal value) {
+            if (value.precision() > 18)
+                return false;
+            // BigDecimal.toString turns to exponent notation for negative scales and below 1E-6
+            if (!plainText && (value.scale() < 0 || value.precision() - value.scale() < -5))
+                return false;
+            resultUnscaledValue = value.unscaledValue().longValue();
+            resultScale = value.scale();
+            return true;
+        }
+
+        private void write(ByteBuffer window, int start, int end) throws IOException {
+            int resultLength = text != null ? text.length() : MutableDecimal.asciiLength(resultUnscaledValue, resultScale);
+            int rowLength = includeInputRow ? end - start + 1 : 0;
+            if (out.remaining() < rowLength + resultLength + 1)
+                flush();
+            if (includeInputRow) {
+                if (rowLength + resultLength + 1 > out.capacity()) {
+                    // longer than the output buffer, written straight from the mapped window
+                    ByteBuffer row = window.slice(start, end - start);
+                    while (row.hasRemaining()) output.write(row);
+                } else {
+                    out.put(out.position(), window, start, end - start);
+                    out.position(out.position() + end - start);
+                }
+                out.put(delimiter);
+            }
+            if (text != null) {
+                for (int i = 0; i < text.length(); i++) out.put((byte) text.charAt(i));
+            } else {
+                out.position(MutableDecimal.writeAscii(resultUnscaledValue, resultScale, out, out.position()));
+            }
+            out.put((byte) '\n');
+        }
+
+        void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) output.write(out);
+            out.clear();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.DecimalVector;
+
+import java.math.RoundingMode;
+
+// runs a Program column at a time over DecimalVector blocks with MutableDecimal semantics:
+// every instruction is one bulk kernel over a block of rows instead of one interpreted step per row.
+// owns its scratch vectors, one instance per thread
+final class VectorEvaluator {
+
+    static final int BLOCK_SIZE = 4096;
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    private final int[] code;
+    private final long[] constantUnscaledValues;
+    private final int[] constantScales;
+    private final int maxStack;
+    // one scratch block per operand stack position and slot
+    private final DecimalVector[] frame;
+    private final DecimalVector[] stack;
+
+    VectorEvaluator(Program program, PrimitiveEvaluator evaluator) {
+        this.code = program.code();
+        int constants = program.constants().length;
+        this.constantUnscaledValues = new long[constants];
+        this.constantScales = new int[constants];
+        for (int i = 0; i < constants; i++) {
+            constantUnscaledValues[i] = evaluator.constantUnscaledValue(i);
+            constantScales[i] = evaluator.constantScale(i);
+        }
+        this.maxStack = program.maxStack();
+        this.frame = new DecimalVector[program.frameSize()];
+        for (int i = 0; i < frame.length; i++) frame[i] = new DecimalVector(BLOCK_SIZE);
+        this.stack = new DecimalVector[maxStack];
+    }
+
+    // inputs[v] holds program variable v, all vectors are as long as output
+    void evaluate(DecimalVector[] inputs, DecimalVector output) {
+        DecimalVector[] blockInputs = new DecimalVector[inputs.length];
+        DecimalVector[] blockFrame = frame.clone();
+        for (int from = 0; from < output.length(); from += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, output.length() - from);
+            for (int v = 0; v < inputs.length; v++) blockInputs[v] = inputs[v].slice(from, length);
+            if (length < BLOCK_SIZE) {
+                for (int i = 0; i < frame.length; i++) blockFrame[i] = frame[i].slice(0, length);
+            }
+            evaluateBlock(blockInputs, blockFrame).copyTo(output.slice(from, length));
+        }
+    }
+
+    // a stack position holds its own scratch block, an input, or a slot. results always go to scratch blocks
+    private DecimalVector evaluateBlock(DecimalVector[] inputs, DecimalVector[] frame) {
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case Program.PUSH -> {
+                    int constant = code[pc++];
+                    top++;
+                    stack[top] = frame[top].fill(constantUnscaledValues[constant], constantScales[constant]);
+                }
+                case Program.LOAD -> stack[++top] = inputs[code[pc++]];
+                case Program.NEGATE -> stack[top] = stack[top].negate(frame[top]);
+                case Program.ADD -> {
+                    DecimalVector y = stack[top--];
+                    stack[top] = stack[top].add(y, frame[top]);
+                }
+                case Program.MULTIPLY -> {
+                    DecimalVector y = stack[top--];
+                    stack[top] = stack[top].multiply(y, frame[top]);
+                }
+                case Program.DIVIDE -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    DecimalVector y = stack[top--];
+                    stack[top] = stack[top].divide(y, scale, roundingMode, frame[top]);
+                }
+                case Program.MULTIPLY_DIVIDE -> {
+                    int scale = code[pc++];
+                    RoundingMode roundingMode = ROUNDING_MODES[code[pc++]];
+                    DecimalVector divisor = stack[top--];
+                    DecimalVector y = stack[top--];
+                    stack[top] = stack[top].multiplyDivide(y, divisor, scale, roundingMode, frame[top]);
+                }
+                case Program.ROUND -> {
+                    int scale = code[pc++];
+                    stack[top] = stack[top].round(scale, ROUNDING_MODES[code[pc++]], frame[top]);
+                }
+                case Program.STORE -> stack[top].copyTo(frame[maxStack + code[pc++]]);
+                case Program.RECALL -> stack[++top] = frame[maxStack + code[pc++]];
+                default -> throw new IllegalStateException(String.format("invalid instruction (%s)", code[pc - 1]));
+            }
+        }
+        return stack[0];
+    }
+}
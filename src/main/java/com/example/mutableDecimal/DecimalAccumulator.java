@@ -0,0 +1,199 @@
+package com.example.mutableDecimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.stream.Collector;
+
+// exact running sum of decimals of any scale. the total is kept as a 128 bit unscaled value, two longs,
+// at the largest scale added so far, so a running total far beyond the 18 digits of a MutableDecimal never
+// fails. only a total that leaves even 128 bits is promoted to BigDecimal. accumulators of parts of the
+// input merge into the sum of the whole, whatever the order. this implementation is not synchronized
+public final class DecimalAccumulator {
+
+    private static final long[] LONG_TEN_POWERS_TABLE = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    private static final BigInteger LONG_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    // two's complement high * 2^64 + unsigned low, at scale
+    private long high;
+    private long low;
+    private int scale;
+    // the total once it left 128 bits, null before
+    private BigDecimal promoted;
+    private long count;
+    // result of multiply(high, low, n), fields rather than an array so that scaling does not allocate
+    private long scaledHigh;
+    private long scaledLow;
+
+    public DecimalAccumulator add(long unscaledValue, int scale) {
+        count++;
+        if (promoted == null) {
+            try {
+                if (scale > this.scale) {
+                    multiply(scale - this.scale);
+                    this.scale = scale;
+                }
+                addScaled(unscaledValue, this.scale - scale);
+                return this;
+            } catch (ArithmeticException e) {
+                // fields are only written by steps that fit, the total is still exact
+                promote();
+            }
+        }
+        promoted = promoted.add(BigDecimal.valueOf(unscaledValue, scale));
+        return this;
+    }
+
+    public DecimalAccumulator add(MutableDecimal value) {
+        return add(value.getUnscaledValue(), value.getScale());
+    }
+
+    public DecimalAccumulator add(BigDecimal value) {
+        if (value.unscaledValue().bitLength() < Long.SIZE)
+            return add(value.unscaledValue().longValue(), value.scale());
+        count++;
+        if (promoted == null) promote();
+        promoted = promoted.add(value);
+        return this;
+    }
+
+    // adds the values and count of other, other is left unchanged
+    public DecimalAccumulator merge(DecimalAccumulator other) {
+        if (promoted == null && other.promoted == null) {
+            long savedHigh = high;
+            long savedLow = low;
+            int savedScale = scale;
+            try {
+                if (other.scale > scale) {
+                    multiply(other.scale - scale);
+                    scale = other.scale;
+                }
+                long otherHigh = other.high;
+                long otherLow = other.low;
+                if (other.scale < scale) {
+                    multiply(otherHigh, otherLow, scale - other.scale);
+                    otherHigh = scaledHigh;
+                    otherLow = scaledLow;
+                }
+                add(otherHigh, otherLow);
+                count += other.count;
+                return this;
+            } catch (ArithmeticException e) {
+                high = savedHigh;
+                low = savedLow;
+                scale = savedScale;
+            }
+        }
+        if (promoted == null) promote();
+        promoted = promoted.add(other.toBigDecimal());
+        count += other.count;
+        return this;
+    }
+
+    // number of values added, including those of merged accumulators
+    public long getCount() {
+        return count;
+    }
+
+    // scale is the largest scale added, or 0
+    public BigDecimal toBigDecimal() {
+        if (promoted != null)
+            return promoted;
+        if (high == (low >> 63))
+            return BigDecimal.valueOf(low, scale);
+        return new BigDecimal(BigInteger.valueOf(high).shiftLeft(64).or(BigInteger.valueOf(low).and(LONG_MASK)), scale);
+    }
+
+    // the total in the given instance, throws ArithmeticException if it does not fit a MutableDecimal
+    public MutableDecimal get(MutableDecimal target) {
+        if (promoted == null && high == (low >> 63)) {
+            target.reset(low, scale);
+            return target;
+        }
+        BigDecimal total = toBigDecimal().stripTrailingZeros();
+        long unscaledValue = total.unscaledValue().longValueExact();
+        if (total.scale() < 0)
+            target.reset(MutableDecimal.scaleUp(unscaledValue, -total.scale()), 0);
+        else
+            target.reset(unscaledValue, total.scale());
+        return target;
+    }
+
+    // true once the total needed more than 128 bits
+    public boolean isPromoted() {
+        return promoted != null;
+    }
+
+    public void reset() {
+        high = 0;
+        low = 0;
+        scale = 0;
+        promoted = null;
+        count = 0;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+    // exact sum of a stream, correct for parallel streams
+    public static Collector<MutableDecimal, ?, DecimalAccumulator> summing() {
+        return Collector.of(DecimalAccumulator::new, DecimalAccumulator::add, DecimalAccumulator::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    public static Collector<BigDecimal, ?, DecimalAccumulator> summingBigDecimal() {
+        return Collector.of(DecimalAccumulator::new, DecimalAccumulator::add, DecimalAccumulator::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    private void promote() {
+        promoted = toBigDecimal();
+    }
+
+    // adds x * 10^n to the total
+    private void addScaled(long x, int n) {
+        if (n < LONG_TEN_POWERS_TABLE.length) {
+            // the 128 bit product of a long and a positive long
+            long factor = LONG_TEN_POWERS_TABLE[n];
+            add(Math.multiplyHigh(x, factor), x * factor);
+            return;
+        }
+        multiply(x >> 63, x, n);
+        add(scaledHigh, scaledLow);
+    }
+
+    private void add(long otherHigh, long otherLow) {
+        long sum = low + otherLow;
+        long carry = Long.compareUnsigned(sum, low) < 0 ? 1 : 0;
+        high = Math.addExact(Math.addExact(high, otherHigh), carry);
+        low = sum;
+    }
+
+    // total times 10^n
+    private void multiply(int n) {
+        multiply(high, low, n);
+        high = scaledHigh;
+        low = scaledLow;
+    }
+
+    // (high, low) * 10^n into (scaledHigh, scaledLow), throws ArithmeticException past 128 bits
+    private void multiply(long high, long low, int n) {
+        while (n > 0) {
+            int step = Math.min(n, LONG_TEN_POWERS_TABLE.length - 1);
+            long factor = LONG_TEN_POWERS_TABLE[step];
+            // unsigned high half of low * factor, factor is positive
+            long carry = Math.multiplyHigh(low, factor) + ((low >> 63) & factor);
+            high = Math.addExact(Math.multiplyExact(high, factor), carry);
+            low = low * factor;
+            n -= step;
+        }
+        scaledHigh = high;
+        scaledLow = low;
+    }
+}
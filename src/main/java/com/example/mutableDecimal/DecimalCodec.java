@@ -0,0 +1,341 @@
+package com.example.mutableDecimal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// compact binary form of decimals, for the wire and for storage, instead of toString and parsing.
+// a single value is its unscaled value as a zig-zag varint, 1 byte up to +-63, followed by its scale as one unsigned byte.
+// a block of values is its value count as a varint, then its scales, then the unscaled values as zig-zag varints.
+// scales are either SHARED_SCALE and one scale byte, or RUN_LENGTH_SCALES, a varint run count and per run
+// a scale byte and a varint length. writing and reading allocate nothing
+public final class DecimalCodec {
+
+    public static final int MAX_SCALE = 0xFF;
+    // a zig-zag varint of a long takes at most 10 bytes
+    public static final int MAX_VALUE_LENGTH = 11;
+
+    private static final byte SHARED_SCALE = 0;
+    private static final byte RUN_LENGTH_SCALES = 1;
+    private static final int MAX_VARINT_LENGTH = 10;
+
+    private DecimalCodec() {
+    }
+
+    // bytes written by write(unscaledValue, scale, ...)
+    public static int encodedLength(long unscaledValue, int scale) {
+        checkScale(scale);
+        return varintLength(zigZag(unscaledValue)) + 1;
+    }
+
+    public static ByteBuffer write(long unscaledValue, int scale, ByteBuffer buffer) {
+        checkScale(scale);
+        putVarint(zigZag(unscaledValue), buffer);
+        return buffer.put((byte) scale);
+    }
+
+    public static ByteBuffer write(MutableDecimal value, ByteBuffer buffer) {
+        return write(value.getUnscaledValue(), value.getScale(), buffer);
+    }
+
+    public static void write(long unscaledValue, int scale, DataOutput output) throws IOException {
+        checkScale(scale);
+        writeVarint(zigZag(unscaledValue), output);
+        output.writeByte(scale);
+    }
+
+    public static void write(MutableDecimal value, DataOutput output) throws IOException {
+        write(value.getUnscaledValue(), value.getScale(), output);
+    }
+
+    // the next value of the buffer in the given instance, normalized
+    public static MutableDecimal read(ByteBuffer buffer, MutableDecimal target) {
+        long unscaledValue = unZigZag(getVarint(buffer));
+        target.reset(unscaledValue, Byte.toUnsignedInt(buffer.get()));
+        return target;
+    }
+
+    public static MutableDecimal read(DataInput input, MutableDecimal target) throws IOException {
+        long unscaledValue = unZigZag(readVarint(input));
+        target.reset(unscaledValue, input.readUnsignedByte());
+        return target;
+    }
+
+    // bytes written by writeBlock for the given values
+    public static int encodedBlockLength(long[] unscaledValues, int[] scales, int offset, int length) {
+        checkBlock(unscaledValues, scales, offset, length);
+        int runCount = runCount(scales, offset, length);
+        int encodedLength = varintLength(length) + 1 + (runCount == 1 ? 1 : varintLength(runCount));
+        if (runCount > 1) {
+            for (int i = offset; i < offset + length; ) {
+                int end = runEnd(scales, i, offset + length);
+                encodedLength += 1 + varintLength(end - i);
+                i = end;
+            }
+        }
+        for (int i = offset; i < offset + length; i++) encodedLength += varintLength(zigZag(unscaledValues[i]));
+        return encodedLength;
+    }
+
+    // values [offset, offset + length) of a (unscaled value, scale) column, the scales shared when they are all equal
+    public static ByteBuffer writeBlock(long[] unscaledValues, int[] scales, int offset, int length, ByteBuffer buffer) {
+        checkBlock(unscaledValues, scales, offset, length);
+        int end = offset + length;
+        int runCount = runCount(scales, offset, length);
+        putVarint(length, buffer);
+        if (runCount == 1) {
+            buffer.put(SHARED_SCALE).put((byte) (length == 0 ? 0 : scales[offset]));
+        } else {
+            buffer.put(RUN_LENGTH_SCALES);
+            putVarint(runCount, buffer);
+            for (int i = offset; i < end; ) {
+                int runEnd = runEnd(scales, i, end);
+                buffer.put((byte) scales[i]);
+                putVarint(runEnd - i, buffer);
+                i = runEnd;
+            }
+        }
+        for (int i = offset; i < end; i++) putVarint(zigZag(unscaledValues[i]), buffer);
+        return buffer;
+    }
+
+    public static void writeBlock(long[] unscaledValues, int[] scales, int offset, int length, DataOutput output) throws IOException {
+        checkBlock(unscaledValues, scales, offset, length);
+        int end = offset + length;
+        int runCount = runCount(scales, offset, length);
+        writeVarint(length, output);
+        if (runCount == 1) {
+            output.writeByte(SHARED_SCALE);
+            output.writeByte(length == 0 ? 0 : scales[offset]);
+        } else {
+            output.writeByte(RUN_LENGTH_SCALES);
+            writeVarint(runCount, output);
+            for (int i = offset; i < end; ) {
+                int runEnd = runEnd(scales, i, end);
+                output.writeByte(scales[i]);
+                writeVarint(runEnd - i, output);
+                i = runEnd;
+            }
+        }
+        for (int i = offset; i < end; i++) writeVarint(zigZag(unscaledValues[i]), output);
+    }
+
+    // value count of the block at the buffer position, the position does not move
+    public static int blockSize(ByteBuffer buffer) {
+        return checkBlockSize(getVarint(buffer, buffer.position()));
+    }
+
+    // decodes the next block into [offset, offset + value count) of the arrays and returns the value count.
+    // values are stored as written, without normalizing
+    public static int readBlock(ByteBuffer buffer, long[] unscaledValues, int[] scales, int offset) {
+        int length = checkBlockSize(getVarint(buffer));
+        checkCapacity(length, unscaledValues.length, offset);
+        checkCapacity(length, scales.length, offset);
+        int end = offset + length;
+        byte encoding = buffer.get();
+        if (encoding == SHARED_SCALE) {
+            int scale = Byte.toUnsignedInt(buffer.get());
+            for (int i = offset; i < end; i++) scales[i] = scale;
+        } else if (encoding == RUN_LENGTH_SCALES) {
+            long runCount = getVarint(buffer);
+            int i = offset;
+            for (long run = 0; run < runCount; run++) {
+                int scale = Byte.toUnsignedInt(buffer.get());
+                long runLength = getVarint(buffer);
+                if (runLength > end - i)
+                    throw new IllegalArgumentException(String.format("scale runs longer than the block (%s)", length));
+                for (int runEnd = i + (int) runLength; i < runEnd; i++) scales[i] = scale;
+            }
+            if (i != end)
+                throw new IllegalArgumentException(String.format("scale runs shorter than the block (%s)", length));
+        } else {
+            throw new IllegalArgumentException(String.format("unknown scale encoding (%s)", encoding));
+        }
+        for (int i = offset; i < end; i++) unscaledValues[i] = unZigZag(getVarint(buffer));
+        return length;
+    }
+
+    // decodes the next block into targets[offset, offset + value count), normalized, and returns the value count
+    public static int readBlock(ByteBuffer buffer, MutableDecimal[] targets, int offset) {
+        int length = checkBlockSize(getVarint(buffer));
+        checkCapacity(length, targets.length, offset);
+        int end = offset + length;
+        // scales first, then the values they apply to
+        int scalesStart = buffer.position();
+        skipScales(buffer, length);
+        int valuesStart = buffer.position();
+        buffer.position(scalesStart);
+        byte encoding = buffer.get();
+        int i = offset;
+        if (encoding == SHARED_SCALE) {
+            int scale = Byte.toUnsignedInt(buffer.get());
+            buffer.position(valuesStart);
+            for (; i < end; i++) targets[i].reset(unZigZag(getVarint(buffer)), scale);
+            return length;
+        }
+        long runCount = getVarint(buffer);
+        int runPosition = buffer.position();
+        buffer.position(valuesStart);
+        for (long run = 0; run < runCount; run++) {
+            int scale = Byte.toUnsignedInt(buffer.get(runPosition++));
+            long runLength = getVarint(buffer, runPosition);
+            runPosition = varintEnd(buffer, runPosition);
+            for (long runEnd = i + runLength; i < runEnd; i++) targets[i].reset(unZigZag(getVarint(buffer)), scale);
+        }
+        return length;
+    }
+
+    public static int readBlock(DataInput input, long[] unscaledValues, int[] scales, int offset) throws IOException {
+        int length = checkBlockSize(readVarint(input));
+        checkCapacity(length, unscaledValues.length, offset);
+        checkCapacity(length, scales.length, offset);
+        int end = offset + length;
+        byte encoding = input.readByte();
+        if (encoding == SHARED_SCALE) {
+            int scale = input.readUnsignedByte();
+            for (int i = offset; i < end; i++) scales[i] = scale;
+        } else if (encoding == RUN_LENGTH_SCALES) {
+            long runCount = readVarint(input);
+            int i = offset;
+            for (long run = 0; run < runCount; run++) {
+                int scale = input.readUnsignedByte();
+                long runLength = readVarint(input);
+                if (runLength > end - i)
+                    throw new IllegalArgumentException(String.format("scale runs longer than the block (%s)", length));
+                for (int runEnd = i + (int) runLength; i < runEnd; i++) scales[i] = scale;
+            }
+            if (i != end)
+                throw new IllegalArgumentException(String.format("scale runs shorter than the block (%s)", length));
+        } else {
+            throw new IllegalArgumentException(String.format("unknown scale encoding (%s)", encoding));
+        }
+        for (int i = offset; i < end; i++) unscaledValues[i] = unZigZag(readVarint(input));
+        return length;
+    }
+
+    // moves the buffer past the scales of a block of length values, checking that the runs add up
+    private static void skipScales(ByteBuffer buffer, int length) {
+        byte encoding = buffer.get();
+        if (encoding == SHARED_SCALE) {
+            buffer.get();
+            return;
+        }
+        if (encoding != RUN_LENGTH_SCALES)
+            throw new IllegalArgumentException(String.format("unknown scale encoding (%s)", encoding));
+        long runCount = getVarint(buffer);
+        long total = 0;
+        for (long run = 0; run < runCount; run++) {
+            buffer.get();
+            total += getVarint(buffer);
+            if (total > length)
+                throw new IllegalArgumentException(String.format("scale runs longer than the block (%s)", length));
+        }
+        if (total != length)
+            throw new IllegalArgumentException(String.format("scale runs shorter than the block (%s)", length));
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varintLength(long value) {
+        // 7 bits per byte, at least one byte
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    private static void putVarint(long value, ByteBuffer buffer) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void writeVarint(long value, DataOutput output) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int i = 0; i < MAX_VARINT_LENGTH; i++) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException(String.format("malformed varint at (%s)", buffer.position()));
+    }
+
+    // the varint at the given index, the position does not move
+    private static long getVarint(ByteBuffer buffer, int index) {
+        long value = 0;
+        for (int i = 0; i < MAX_VARINT_LENGTH; i++) {
+            byte b = buffer.get(index + i);
+            value |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException(String.format("malformed varint at (%s)", index));
+    }
+
+    private static int varintEnd(ByteBuffer buffer, int index) {
+        while (buffer.get(index) < 0) index++;
+        return index + 1;
+    }
+
+    private static long readVarint(DataInput input) throws IOException {
+        long value = 0;
+        for (int i = 0; i < MAX_VARINT_LENGTH; i++) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    // 1 for an empty block, written with a shared scale of 0
+    private static int runCount(int[] scales, int offset, int length) {
+        int runCount = 0;
+        for (int i = offset; i < offset + length; i = runEnd(scales, i, offset + length)) runCount++;
+        return Math.max(1, runCount);
+    }
+
+    private static int runEnd(int[] scales, int from, int end) {
+        int i = from + 1;
+        while (i < end && scales[i] == scales[from]) i++;
+        return i;
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE)
+            throw new IllegalArgumentException(String.format("scale out of range (%s)", scale));
+    }
+
+    private static void checkBlock(long[] unscaledValues, int[] scales, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > unscaledValues.length || offset + length > scales.length)
+            throw new IndexOutOfBoundsException(String.format("block (%s, %s) out of length (%s)", offset, length,
+                    Math.min(unscaledValues.length, scales.length)));
+        for (int i = offset; i < offset + length; i++) checkScale(scales[i]);
+    }
+
+    private static int checkBlockSize(long length) {
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(String.format("block size out of range (%s)", length));
+        return (int) length;
+    }
+
+    private static void checkCapacity(int length, int capacity, int offset) {
+        if (offset < 0 || offset > capacity || length > capacity - offset)
+            throw new IndexOutOfBoundsException(String.format("block of (%s) values out of length (%s) at offset (%s)", length, capacity, offset));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.mutableDecimal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// an operation leaving the long and 128 bit paths for BigInteger or BigDecimal arithmetic
+@Name("com.example.mutableDecimal.DecimalFallback")
+@Label("Decimal Fallback")
+@Category("Formula Engine")
+@Description("Decimal operation run on BigInteger or BigDecimal because its operands or result left the primitive range")
+final class DecimalFallbackEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("From Tier")
+    @Description("Widest primitive representation of the operands, LONG or INT128")
+    String fromTier;
+
+    static void commit(String operation, String fromTier) {
+        DecimalFallbackEvent event = new DecimalFallbackEvent();
+        if (!event.isEnabled())
+            return;
+        event.operation = operation;
+        event.fromTier = fromTier;
+        event.commit();
+    }
+}
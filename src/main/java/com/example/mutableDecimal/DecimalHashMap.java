@@ -0,0 +1,206 @@
+package com.example.mutableDecimal;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+// open addressing hash map keyed by the numeral value of (unscaled long, scale) pairs, no key objects are created
+// keys with different scales but equal value, eg, 0.5 & 0.500, are the same key
+// this implementation is not synchronized
+public class DecimalHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] unscaledKeys;
+    private int[] scaleKeys;
+    private boolean[] occupied;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    public DecimalHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DecimalHashMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException(String.format("negative expected size (%s)", expectedSize));
+        allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long unscaledValue, int scale, V value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long unscaledValue, int scale) {
+        return indexOf(MutableDecimal.normalizedUnscaled(unscaledValue, scale), MutableDecimal.normalizedScale(unscaledValue, scale)) >= 0;
+    }
+
+    public boolean containsKey(MutableDecimal key) {
+        return containsKey(key.getUnscaledValue(), key.getScale());
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long unscaledValue, int scale) {
+        int index = indexOf(MutableDecimal.normalizedUnscaled(unscaledValue, scale), MutableDecimal.normalizedScale(unscaledValue, scale));
+        return index < 0 ? null : (V) values[index];
+    }
+
+    public V get(MutableDecimal key) {
+        return get(key.getUnscaledValue(), key.getScale());
+    }
+
+    // returns the previous value, null if absent
+    @SuppressWarnings("unchecked")
+    public V put(long unscaledValue, int scale, V value) {
+        long unscaledKey = MutableDecimal.normalizedUnscaled(unscaledValue, scale);
+        int scaleKey = MutableDecimal.normalizedScale(unscaledValue, scale);
+        int index = slotOf(unscaledKey, scaleKey);
+        if (occupied[index]) {
+            V previous = (V) values[index];
+            values[index] = value;
+            return previous;
+        }
+        insertAt(index, unscaledKey, scaleKey, value);
+        return null;
+    }
+
+    public V put(MutableDecimal key, V value) {
+        return put(key.getUnscaledValue(), key.getScale(), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long unscaledValue, int scale, Supplier<? extends V> supplier) {
+        long unscaledKey = MutableDecimal.normalizedUnscaled(unscaledValue, scale);
+        int scaleKey = MutableDecimal.normalizedScale(unscaledValue, scale);
+        int index = slotOf(unscaledKey, scaleKey);
+        if (occupied[index])
+            return (V) values[index];
+        V value = supplier.get();
+        insertAt(index, unscaledKey, scaleKey, value);
+        return value;
+    }
+
+    // returns the removed value, null if absent
+    @SuppressWarnings("unchecked")
+    public V remove(long unscaledValue, int scale) {
+        int index = indexOf(MutableDecimal.normalizedUnscaled(unscaledValue, scale), MutableDecimal.normalizedScale(unscaledValue, scale));
+        if (index < 0)
+            return null;
+        V previous = (V) values[index];
+        deleteAt(index);
+        return previous;
+    }
+
+    public V remove(MutableDecimal key) {
+        return remove(key.getUnscaledValue(), key.getScale());
+    }
+
+    public void clear() {
+        Arrays.fill(occupied, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // keys are passed in normalized form
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int i = 0; i < occupied.length; i++) {
+            if (occupied[i]) consumer.accept(unscaledKeys[i], scaleKeys[i], (V) values[i]);
+        }
+    }
+
+    private int indexOf(long unscaledKey, int scaleKey) {
+        int index = slotOf(unscaledKey, scaleKey);
+        return occupied[index] ? index : -1;
+    }
+
+    // slot holding the key, or the empty slot where it belongs
+    private int slotOf(long unscaledKey, int scaleKey) {
+        int mask = occupied.length - 1;
+        int index = mix(unscaledKey, scaleKey) & mask;
+        while (occupied[index] && (unscaledKeys[index] != unscaledKey || scaleKeys[index] != scaleKey)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void insertAt(int index, long unscaledKey, int scaleKey, Object value) {
+        unscaledKeys[index] = unscaledKey;
+        scaleKeys[index] = scaleKey;
+        values[index] = value;
+        occupied[index] = true;
+        if (++size > threshold)
+            rehash(occupied.length * 2);
+    }
+
+    // backward shift deletion keeps linear probing chains intact without tombstones
+    private void deleteAt(int index) {
+        int mask = occupied.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (occupied[next]) {
+            int home = mix(unscaledKeys[next], scaleKeys[next]) & mask;
+            // move the entry back if its home slot is not within (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                unscaledKeys[hole] = unscaledKeys[next];
+                scaleKeys[hole] = scaleKeys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        occupied[hole] = false;
+        values[hole] = null;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldUnscaledKeys = unscaledKeys;
+        int[] oldScaleKeys = scaleKeys;
+        boolean[] oldOccupied = occupied;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldOccupied.length; i++) {
+            if (!oldOccupied[i]) continue;
+            int index = slotOf(oldUnscaledKeys[i], oldScaleKeys[i]);
+            unscaledKeys[index] = oldUnscaledKeys[i];
+            scaleKeys[index] = oldScaleKeys[i];
+            values[index] = oldValues[i];
+            occupied[index] = true;
+        }
+    }
+
+    private void allocate(int capacity) {
+        unscaledKeys = new long[capacity];
+        scaleKeys = new int[capacity];
+        occupied = new boolean[capacity];
+        values = new Object[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long unscaledKey, int scaleKey) {
+        // murmur3 finalizer, spreads the low decimal digits over the table index bits
+        long h = unscaledKey * 31 + scaleKey;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        if (n <= 0)
+            throw new IllegalArgumentException(String.format("capacity too large (%s)", capacity));
+        return n;
+    }
+}
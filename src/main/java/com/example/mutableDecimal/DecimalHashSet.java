@@ -0,0 +1,65 @@
+package com.example.mutableDecimal;
+
+// open addressing hash set of numeral values given as (unscaled long, scale) pairs, see DecimalHashMap
+// this implementation is not synchronized
+public class DecimalHashSet {
+
+    private static final Object PRESENT = Boolean.TRUE;
+
+    private final DecimalHashMap<Object> map;
+
+    public DecimalHashSet() {
+        map = new DecimalHashMap<>();
+    }
+
+    public DecimalHashSet(int expectedSize) {
+        map = new DecimalHashMap<>(expectedSize);
+    }
+
+    @FunctionalInterface
+    public interface ValueConsumer {
+        void accept(long unscaledValue, int scale);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    // returns false if an equal value is present already
+    public boolean add(long unscaledValue, int scale) {
+        return map.put(unscaledValue, scale, PRESENT) == null;
+    }
+
+    public boolean add(MutableDecimal value) {
+        return add(value.getUnscaledValue(), value.getScale());
+    }
+
+    public boolean contains(long unscaledValue, int scale) {
+        return map.containsKey(unscaledValue, scale);
+    }
+
+    public boolean contains(MutableDecimal value) {
+        return map.containsKey(value);
+    }
+
+    public boolean remove(long unscaledValue, int scale) {
+        return map.remove(unscaledValue, scale) != null;
+    }
+
+    public boolean remove(MutableDecimal value) {
+        return map.remove(value) != null;
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    // values are passed in normalized form
+    public void forEach(ValueConsumer consumer) {
+        map.forEach((unscaledValue, scale, present) -> consumer.accept(unscaledValue, scale));
+    }
+}
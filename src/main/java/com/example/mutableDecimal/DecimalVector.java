@@ -0,0 +1,186 @@
+package com.example.mutableDecimal;
+
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// column of decimals kept off heap as (unscaled long, scale) pairs, 12 bytes per value and no object per value.
+// values are normalized like MutableDecimal and the bulk kernels follow its overflow and rounding rules.
+// a kernel target may be this vector or an operand, when a kernel throws the target is partially written.
+// this implementation is not synchronized
+public final class DecimalVector {
+
+    private static final int MAX_LENGTH = Integer.MAX_VALUE >> 3;
+
+    private final ByteBuffer unscaledValues;
+    private final ByteBuffer scales;
+    private final int length;
+
+    public DecimalVector(int length) {
+        this(allocate(length, Long.BYTES), allocate(length, Integer.BYTES), length);
+    }
+
+    private DecimalVector(ByteBuffer unscaledValues, ByteBuffer scales, int length) {
+        this.unscaledValues = unscaledValues;
+        this.scales = scales;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // view of [from, from + length) sharing the memory of this vector
+    public DecimalVector slice(int from, int length) {
+        if (from < 0 || length < 0 || from + length > this.length)
+            throw new IndexOutOfBoundsException(String.format("slice (%s, %s) out of length (%s)", from, length, this.length));
+        return new DecimalVector(unscaledValues.slice(from * Long.BYTES, length * Long.BYTES).order(ByteOrder.nativeOrder()),
+                scales.slice(from * Integer.BYTES, length * Integer.BYTES).order(ByteOrder.nativeOrder()), length);
+    }
+
+    public long getUnscaledValue(int index) {
+        return unscaledValues.getLong(index * Long.BYTES);
+    }
+
+    public int getScale(int index) {
+        return scales.getInt(index * Integer.BYTES);
+    }
+
+    public MutableDecimal get(int index, MutableDecimal target) {
+        target.reset(getUnscaledValue(index), getScale(index));
+        return target;
+    }
+
+    public DecimalVector set(int index, long unscaledValue, int scale) {
+        put(index, MutableDecimal.normalizedUnscaled(unscaledValue, scale), MutableDecimal.normalizedScale(unscaledValue, scale));
+        return this;
+    }
+
+    public DecimalVector set(int index, MutableDecimal value) {
+        return set(index, value.getUnscaledValue(), value.getScale());
+    }
+
+    public DecimalVector fill(long unscaledValue, int scale) {
+        long normalizedUnscaled = MutableDecimal.normalizedUnscaled(unscaledValue, scale);
+        int normalizedScale = MutableDecimal.normalizedScale(unscaledValue, scale);
+        for (int i = 0; i < length; i++) put(i, normalizedUnscaled, normalizedScale);
+        return this;
+    }
+
+    public DecimalVector copyTo(DecimalVector target) {
+        checkLength(target);
+        target.unscaledValues.put(0, unscaledValues, 0, length * Long.BYTES);
+        target.scales.put(0, scales, 0, length * Integer.BYTES);
+        return target;
+    }
+
+    public DecimalVector add(DecimalVector augend, DecimalVector target) {
+        checkLength(augend);
+        checkLength(target);
+        for (int i = 0; i < length; i++) {
+            long x = getUnscaledValue(i);
+            int xScale = getScale(i);
+            long y = augend.getUnscaledValue(i);
+            int yScale = augend.getScale(i);
+            long sum = MutableDecimal.addUnscaled(x, xScale, y, yScale);
+            int sumScale = MutableDecimal.addScale(xScale, yScale);
+            target.put(i, MutableDecimal.normalizedUnscaled(sum, sumScale), MutableDecimal.normalizedScale(sum, sumScale));
+        }
+        return target;
+    }
+
+    public DecimalVector multiply(DecimalVector multiplicand, DecimalVector target) {
+        checkLength(multiplicand);
+        checkLength(target);
+        for (int i = 0; i < length; i++) {
+            long product = MutableDecimal.multiplyUnscaled(getUnscaledValue(i), multiplicand.getUnscaledValue(i));
+            int productScale = MutableDecimal.multiplyScale(getScale(i), multiplicand.getScale(i));
+            target.put(i, MutableDecimal.normalizedUnscaled(product, productScale), MutableDecimal.normalizedScale(product, productScale));
+        }
+        return target;
+    }
+
+    // same rounding as MutableDecimal.divide(divisor, scale, target)
+    public DecimalVector divide(DecimalVector divisor, int scale, DecimalVector target) {
+        return divide(divisor, scale, RoundingMode.HALF_UP, target);
+    }
+
+    public DecimalVector divide(DecimalVector divisor, int scale, RoundingMode roundingMode, DecimalVector target) {
+        checkLength(divisor);
+        checkLength(target);
+        for (int i = 0; i < length; i++) {
+            long quotient = MutableDecimal.divideUnscaled(getUnscaledValue(i), getScale(i), divisor.getUnscaledValue(i), divisor.getScale(i),
+                    scale, roundingMode);
+            target.put(i, MutableDecimal.normalizedUnscaled(quotient, scale), MutableDecimal.normalizedScale(quotient, scale));
+        }
+        return target;
+    }
+
+    // same rounding as MutableDecimal.multiplyDivide(multiplicand, divisor, scale, target)
+    public DecimalVector multiplyDivide(DecimalVector multiplicand, DecimalVector divisor, int scale, DecimalVector target) {
+        return multiplyDivide(multiplicand, divisor, scale, RoundingMode.HALF_UP, target);
+    }
+
+    public DecimalVector multiplyDivide(DecimalVector multiplicand, DecimalVector divisor, int scale, RoundingMode roundingMode,
+                                       DecimalVector target) {
+        checkLength(multiplicand);
+        checkLength(divisor);
+        checkLength(target);
+        for (int i = 0; i < length; i++) {
+            long quotient = MutableDecimal.multiplyDivideUnscaled(getUnscaledValue(i), getScale(i), multiplicand.getUnscaledValue(i),
+                    multiplicand.getScale(i), divisor.getUnscaledValue(i), divisor.getScale(i), scale, roundingMode);
+            target.put(i, MutableDecimal.normalizedUnscaled(quotient, scale), MutableDecimal.normalizedScale(quotient, scale));
+        }
+        return target;
+    }
+
+    // same as MutableDecimal.round(newScale, roundingMode, target)
+    public DecimalVector round(int newScale, RoundingMode roundingMode, DecimalVector target) {
+        checkLength(target);
+        for (int i = 0; i < length; i++) {
+            int scale = getScale(i);
+            long rounded = MutableDecimal.roundUnscaled(getUnscaledValue(i), scale, newScale, roundingMode);
+            int roundedScale = Math.min(scale, newScale);
+            target.put(i, MutableDecimal.normalizedUnscaled(rounded, roundedScale), MutableDecimal.normalizedScale(rounded, roundedScale));
+        }
+        return target;
+    }
+
+    public DecimalVector negate(DecimalVector target) {
+        checkLength(target);
+        for (int i = 0; i < length; i++) {
+            target.put(i, Math.negateExact(getUnscaledValue(i)), getScale(i));
+        }
+        return target;
+    }
+
+    // added from the first value to the last, throws ArithmeticException on overflow
+    public MutableDecimal sum(MutableDecimal target) {
+        long sum = 0;
+        int sumScale = 0;
+        for (int i = 0; i < length; i++) {
+            long x = MutableDecimal.addUnscaled(sum, sumScale, getUnscaledValue(i), getScale(i));
+            int xScale = MutableDecimal.addScale(sumScale, getScale(i));
+            sum = MutableDecimal.normalizedUnscaled(x, xScale);
+            sumScale = MutableDecimal.normalizedScale(x, xScale);
+        }
+        target.reset(sum, sumScale);
+        return target;
+    }
+
+    private void put(int index, long unscaledValue, int scale) {
+        unscaledValues.putLong(index * Long.BYTES, unscaledValue);
+        scales.putInt(index * Integer.BYTES, scale);
+    }
+
+    private void checkLength(DecimalVector other) {
+        if (other.length != length)
+            throw new IllegalArgumentException(String.format("vector lengths differ (%s, %s)", length, other.length));
+    }
+
+    private static ByteBuffer allocate(int length, int bytes) {
+        if (length < 0 || length > MAX_LENGTH)
+            throw new IllegalArgumentException(String.format("invalid length (%s)", length));
+        return ByteBuffer.allocateDirect(length * bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -1,18 +1,27 @@
 package com.example.mutableDecimal;
 
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 
 public class MutableDecimal implements Comparable<MutableDecimal> {
 
-    private static final long HALF_LONG_MAX_VALUE = Long.MAX_VALUE / 2;
-    private static final long HALF_LONG_MIN_VALUE = Long.MIN_VALUE / 2;
     private static final int MAX_DIGITS = 18;
+    private static final BigInteger LONG_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    private static final long[] LONG_TEN_POWERS_TABLE = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
 
     public static final MutableDecimal ZERO = new MutableDecimal("0");
     private long intCompact;
@@ -32,9 +41,9 @@ public class MutableDecimal implements Comparable<MutableDecimal> {
 
     // reset to other numeral value
     public void reset(String val) {
-        validateStringInput(val);
-        initializeReset();
-        initializeByString(val);
+        if (val == null)
+            throw new NumberFormatException("No digits found.");
+        reset(val, 0, val.length());
     }
 
     // reset to other numeral value
@@ -45,177 +54,390 @@ public class MutableDecimal implements Comparable<MutableDecimal> {
 
     private void initializeByIntAndScale(long intCompact, int scale) {
         // adjust to smallest scale
+        this.intCompact = normalizedUnscaled(intCompact, scale);
+        this.scale = normalizedScale(intCompact, scale);
+    }
+
+    // smallest scale that represents the same numeral value. a negative scale is raised toward 0
+    // as far as the unscaled value stays in long range, so equal values share one form
+    public static int normalizedScale(long unscaledVal, int scale) {
+        if (unscaledVal == 0) return 0;
+        while (scale < 0) {
+            if (unscaledVal > Long.MAX_VALUE / 10 || unscaledVal < Long.MIN_VALUE / 10) break;
+            unscaledVal *= 10;
+            scale++;
+        }
         while (scale > 0) {
-            if (intCompact % 10 != 0) break;
-            intCompact /= 10;
+            if (unscaledVal % 10 != 0) break;
+            unscaledVal /= 10;
             scale--;
         }
-        this.intCompact = intCompact;
-        this.scale = scale;
+        return scale;
     }
 
-    private String removeTrailingZero(String inputString) {
-        int trailingZeroStartIdx = inputString.length() - 1;
-        for (; trailingZeroStartIdx >= 0; trailingZeroStartIdx--) {
-            if (inputString.charAt(trailingZeroStartIdx) != '0') break;
-        }
-        return inputString.substring(0, trailingZeroStartIdx + 1);
+    // unscaled value at normalizedScale(unscaledVal, scale)
+    public static long normalizedUnscaled(long unscaledVal, int scale) {
+        if (unscaledVal == 0) return 0;
+        int normalizedScale = normalizedScale(unscaledVal, scale);
+        if (normalizedScale > scale)
+            return unscaledVal * LONG_TEN_POWERS_TABLE[normalizedScale - scale];
+        return unscaledVal / LONG_TEN_POWERS_TABLE[scale - normalizedScale];
+    }
+
+    public MutableDecimal(String val) {
+        if (val == null)
+            throw new NumberFormatException("No digits found.");
+        parse(val, null, null, 0, val.length());
+    }
+
+    // reset to the numeral value of val.subSequence(start, end)
+    public void reset(CharSequence val, int start, int end) {
+        checkRange(start, end, val.length());
+        initializeReset();
+        parse(val, null, null, start, end);
+    }
+
+    // reset to the numeral value of ASCII bytes[offset, offset + length)
+    public void reset(byte[] bytes, int offset, int length) {
+        checkRange(offset, offset + length, bytes.length);
+        initializeReset();
+        parse(null, bytes, null, offset, offset + length);
+    }
+
+    // reset to the numeral value of ASCII bytes at absolute buffer positions [offset, offset + length), position is not changed
+    public void reset(ByteBuffer buffer, int offset, int length) {
+        checkRange(offset, offset + length, buffer.limit());
+        initializeReset();
+        parse(null, null, buffer, offset, offset + length);
+    }
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end < start || end > length)
+            throw new IndexOutOfBoundsException(String.format("range [%s, %s) out of bounds for length %s", start, end, length));
     }
 
-    private String removeLeadingZero(String inputString) {
-        if ("0".equals(inputString)) return inputString;
-        int leadingZeroIdx = 0;
-        for (; leadingZeroIdx < inputString.length(); leadingZeroIdx++) {
-            if (inputString.charAt(leadingZeroIdx) != '0') break;
+    private static int charAt(CharSequence chars, byte[] bytes, ByteBuffer buffer, int index) {
+        if (chars != null) return chars.charAt(index);
+        if (bytes != null) return bytes[index];
+        return buffer.get(index);
+    }
+
+    // single pass over one of the sources, no allocation unless the input is invalid
+    // accepts surrounding whitespace, an optional sign and at most MAX_DIGITS significant digits
+    private void parse(CharSequence chars, byte[] bytes, ByteBuffer buffer, int start, int end) {
+        while (start < end && charAt(chars, bytes, buffer, start) <= ' ') start++;
+        while (end > start && charAt(chars, bytes, buffer, end - 1) <= ' ') end--;
+        int i = start;
+        boolean isNegative = false;
+        if (i < end) {
+            int c = charAt(chars, bytes, buffer, i);
+            if (c == '-' || c == '+') {
+                isNegative = c == '-';
+                i++;
+            }
+        }
+        long result = 0;
+        int digits = 0;
+        int fractionScale = 0;
+        int pendingZeros = 0; // fractional zeros not yet known to be significant
+        boolean hasDot = false;
+        boolean hasDigit = false;
+        for (; i < end; i++) {
+            int c = charAt(chars, bytes, buffer, i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                int digit = c - '0';
+                if (hasDot && digit == 0) {
+                    pendingZeros++;
+                    continue;
+                }
+                int shift = hasDot ? pendingZeros + 1 : 1;
+                if (result != 0) {
+                    digits += shift;
+                    if (digits > MAX_DIGITS)
+                        throw invalidNumber(chars, bytes, buffer, start, end);
+                    result = result * LONG_TEN_POWERS_TABLE[shift] + digit;
+                } else if (digit != 0) {
+                    digits = 1;
+                    result = digit;
+                }
+                if (hasDot) {
+                    fractionScale += shift;
+                    pendingZeros = 0;
+                }
+            } else if (c == '.' && !hasDot) {
+                hasDot = true;
+            } else {
+                throw invalidNumber(chars, bytes, buffer, start, end);
+            }
         }
-        return inputString.substring(leadingZeroIdx);
+        if (!hasDigit)
+            throw invalidNumber(chars, bytes, buffer, start, end);
+        this.intCompact = isNegative ? -result : result;
+        this.scale = fractionScale;
     }
 
-    public MutableDecimal(String val) {
-        validateStringInput(val);
-        initializeByString(val);
+    private static NumberFormatException invalidNumber(CharSequence chars, byte[] bytes, ByteBuffer buffer, int start, int end) {
+        String input;
+        if (chars != null) {
+            input = chars.subSequence(start, end).toString();
+        } else {
+            byte[] copy = new byte[end - start];
+            for (int i = start; i < end; i++) copy[i - start] = (byte) charAt(null, bytes, buffer, i);
+            input = new String(copy, StandardCharsets.ISO_8859_1);
+        }
+        return new NumberFormatException(invalidNumberMessage(input));
     }
 
-    private void validateStringInput(String input) {
-        if (input == null)
-            throw new NumberFormatException("No digits found.");
-        input = input.trim();
+    // detailed description of what is wrong with a trimmed input, built only after parsing failed
+    private static String invalidNumberMessage(String input) {
         if (input.isEmpty())
-            throw new NumberFormatException("No digits found.");
+            return "No digits found.";
         StringBuilder sb = new StringBuilder("Invalid number. ");
-        char[] inputCharArray = input.toCharArray();
         boolean hasDot = false;
-        boolean isInputValid = true;
-        List<Integer> invalidCharPositionList = new LinkedList<>();
-        List<Integer> multipleDotPositionList = new LinkedList<>();
-
-        for (int i = 0; i < inputCharArray.length; i++) {
-            if (i > 0 && inputCharArray[i] == '-') {
-                sb.append("\ninvalid negative sign at index: ").append(i);
-                isInputValid = false;
+        boolean hasDigit = false;
+        List<Integer> invalidCharPositionList = new ArrayList<>();
+        List<Integer> multipleDotPositionList = new ArrayList<>();
+
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (i > 0 && (c == '-' || c == '+')) {
+                sb.append("\ninvalid sign at index: ").append(i);
                 continue;
             }
-            if (!Character.isDigit(inputCharArray[i]) && inputCharArray[i] != '.') {
-                invalidCharPositionList.add(i);
-            }
-            if (inputCharArray[i] == '.') {
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c == '.') {
                 if (!hasDot) hasDot = true;
                 else multipleDotPositionList.add(i);
+            } else if (i > 0 || (c != '-' && c != '+')) {
+                invalidCharPositionList.add(i);
             }
         }
 
-        isInputValid &= invalidCharPositionList.isEmpty();
-        isInputValid &= multipleDotPositionList.isEmpty();
-        if (!isInputValid) {
-            if (!invalidCharPositionList.isEmpty()) {
-                sb.append("\ninvalid character at index: ").append(invalidCharPositionList.stream().map(String::valueOf).collect(Collectors.joining(", ")));
-            }
-
-            if (!multipleDotPositionList.isEmpty()) {
-                sb.append("\nmultiple decimal point at index: ").append(multipleDotPositionList.stream().map(String::valueOf).collect(Collectors.joining(", ")));
-            }
-            throw new NumberFormatException(sb.toString());
+        if (!invalidCharPositionList.isEmpty()) {
+            sb.append("\ninvalid character at index: ").append(invalidCharPositionList.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+        }
+        if (!multipleDotPositionList.isEmpty()) {
+            sb.append("\nmultiple decimal point at index: ").append(multipleDotPositionList.stream().map(String::valueOf).collect(Collectors.joining(", ")));
         }
+        if (!hasDigit) {
+            sb.append("\nno digits found");
+        }
+        if (sb.length() == "Invalid number. ".length()) {
+//            the only remaining failure: more significant digits than intCompact (Java long) can hold
+            return String.format("Max length should not exceed %s. (actual: %s)", MAX_DIGITS, input.length());
+        }
+        return sb.toString();
+    }
 
-//        String input validity check pass here
-//        18 digit string can fit in intCompact (Java long)
-        if (input.length() - (input.indexOf('-') > -1 ? 1 : 0) - (hasDot ? 1 : 0) > MAX_DIGITS)
-            throw new NumberFormatException(String.format("Max length should not exceed %s. (actual: %s)", MAX_DIGITS, input.length()));
+    public MutableDecimal divide(MutableDecimal divisor) {
+        return this.divide(divisor, 2);
     }
 
-    private long parseLong(String val) {
-        long result = 0;
-        var charArray = val.toCharArray();
-        boolean isNegative = false;
-        for (int i = 0; i < charArray.length; i++) {
-            if (charArray[i] == '-') {
-                isNegative = true;
-                continue;
-            } else if (charArray[i] == '+') {
-                continue;
-            }
-            int digit = Character.digit(charArray[i], 10);
-            result = result * 10 + digit;
-        }
-        return isNegative ? -result : result;
+    public MutableDecimal divide(MutableDecimal divisor, int scale) {
+        return divide(divisor, scale, RoundingMode.HALF_UP);
     }
 
-    private void initializeByString(String val) {
-        String[] numSplitByDot = val.split("\\.");
-        switch (numSplitByDot.length) {
-            case 1: {
-                var integerPart = this.removeLeadingZero(numSplitByDot[0]);
-                this.scale = 0;
-                this.intCompact = parseLong(integerPart);
-                break;
-            }
-            case 2: {
-                var integerPart = this.removeLeadingZero(numSplitByDot[0]);
-                var fractionalPart = this.removeTrailingZero(numSplitByDot[1]);
-                this.intCompact = parseLong(integerPart + fractionalPart);
-                this.scale = fractionalPart.length();
-                break;
-            }
-            default: {
-                throw new IllegalArgumentException(String.format("invalid input (multiple dot): %s", val));
+    // same quotient as BigDecimal.divide(divisor, scale, roundingMode), normalized
+    public MutableDecimal divide(MutableDecimal divisor, int scale, RoundingMode roundingMode) {
+        return valueOf(divideUnscaled(this.intCompact, this.scale, divisor.intCompact, divisor.scale, scale, roundingMode), scale);
+    }
+
+    // unscaled value of the quotient at the given scale rounded HALF_UP, not normalized
+    public static long divideUnscaled(long dividend, int dividendScale, long divisor, int divisorScale, int scale) {
+        return divideUnscaled(dividend, dividendScale, divisor, divisorScale, scale, RoundingMode.HALF_UP);
+    }
+
+    // unscaled value of the quotient at the given scale, not normalized. a dividend raised out of long range
+    // is divided in 128 bits, so only a quotient out of long range throws
+    public static long divideUnscaled(long dividend, int dividendScale, long divisor, int divisorScale, int scale, RoundingMode roundingMode) {
+        int raise = scale + divisorScale - dividendScale;
+        if (raise > 0) {
+            if (raise < LONG_TEN_POWERS_TABLE.length) {
+                long factor = LONG_TEN_POWERS_TABLE[raise];
+                long xs = dividend * factor;
+                if (Math.multiplyHigh(dividend, factor) == (xs >> 63))
+                    return divideAndRound(xs, divisor, roundingMode);
             }
+        } else if (-raise < LONG_TEN_POWERS_TABLE.length) {
+            long factor = LONG_TEN_POWERS_TABLE[-raise];
+            long ys = divisor * factor;
+            if (Math.multiplyHigh(divisor, factor) == (ys >> 63))
+                return divideAndRound(dividend, ys, roundingMode);
         }
+        return divideWide(dividend >> 63, dividend, dividendScale, divisor, divisorScale, scale, roundingMode);
     }
 
-    public MutableDecimal divide(MutableDecimal divisor) {
-        return this.divide(divisor, 2);
+    // this * multiplicand / divisor rounded once, like divide, to scale 2
+    public MutableDecimal multiplyDivide(MutableDecimal multiplicand, MutableDecimal divisor) {
+        return multiplyDivide(multiplicand, divisor, 2);
     }
 
-    public MutableDecimal divide(MutableDecimal divisor, int scale) {
-        return divide(this.intCompact, this.scale, divisor.intCompact, divisor.scale, scale);
+    public MutableDecimal multiplyDivide(MutableDecimal multiplicand, MutableDecimal divisor, int scale) {
+        return multiplyDivide(multiplicand, divisor, scale, RoundingMode.HALF_UP);
     }
 
-    private MutableDecimal divide(long dividend, int dividendScale, long divisor, int divisorScale, int scale) {
-        if (scale + divisorScale > dividendScale) {
-            int newScale = scale + divisorScale;
-            int raise = newScale - dividendScale;
-            long xs = Math.multiplyExact(dividend, (long)Math.pow(10, raise));
-            return divideAndRound(xs, divisor, scale, scale);
-        } else {
-            int newScale = dividendScale - scale;
-            int raise = newScale - divisorScale;
-            long ys = Math.multiplyExact(divisor, (long)Math.pow(10, raise));
-            return divideAndRound(dividend, ys, scale, scale);
+    public MutableDecimal multiplyDivide(MutableDecimal multiplicand, MutableDecimal divisor, int scale, RoundingMode roundingMode) {
+        return valueOf(multiplyDivideUnscaled(this.intCompact, this.scale, multiplicand.intCompact, multiplicand.scale,
+                divisor.intCompact, divisor.scale, scale, roundingMode), scale);
+    }
+
+    public static long multiplyDivideUnscaled(long x, int xScale, long y, int yScale, long divisor, int divisorScale, int scale) {
+        return multiplyDivideUnscaled(x, xScale, y, yScale, divisor, divisorScale, scale, RoundingMode.HALF_UP);
+    }
+
+    // unscaled value of x * y / divisor at the given scale, not normalized. the product is kept in 128 bits,
+    // so only a quotient out of long range throws, and it is rounded once like divideUnscaled
+    public static long multiplyDivideUnscaled(long x, int xScale, long y, int yScale, long divisor, int divisorScale, int scale,
+                                              RoundingMode roundingMode) {
+        long high = Math.multiplyHigh(x, y);
+        long product = x * y;
+        int productScale = multiplyScale(xScale, yScale);
+        if (high == (product >> 63)) {
+            // same as multiply then divide
+            return divideUnscaled(normalizedUnscaled(product, productScale), normalizedScale(product, productScale),
+                    divisor, divisorScale, scale, roundingMode);
+        }
+        return divideWide(high, product, productScale, divisor, divisorScale, scale, roundingMode);
+    }
+
+    // unscaled value at min(scale, newScale) of the value rounded to newScale, same digits as BigDecimal.setScale
+    public static long roundUnscaled(long unscaledVal, int scale, int newScale, RoundingMode roundingMode) {
+        if (newScale >= scale)
+            return unscaledVal;
+        int drop = scale - newScale;
+        if (drop < LONG_TEN_POWERS_TABLE.length)
+            return divideAndRound(unscaledVal, LONG_TEN_POWERS_TABLE[drop], roundingMode);
+        DecimalFallbackEvent.commit("round", "LONG");
+        return divideAndRound(BigInteger.valueOf(unscaledVal), BigInteger.TEN.pow(drop), roundingMode);
+    }
+
+    // the value rounded to at most newScale digits after the point, normalized
+    public MutableDecimal round(int newScale, RoundingMode roundingMode) {
+        return valueOf(roundUnscaled(this.intCompact, this.scale, newScale, roundingMode), Math.min(this.scale, newScale));
+    }
+
+    // (high * 2^64 + low) at dividendScale / divisor at divisorScale, all two's complement
+    private static long divideWide(long high, long low, int dividendScale, long divisor, int divisorScale, int scale,
+                                   RoundingMode roundingMode) {
+        int raise = scale + divisorScale - dividendScale;
+        if (raise > 0) {
+            // past 128 bits the quotient is at least 2^127 / 2^63 and out of range anyway
+            while (raise > 0) {
+                int step = Math.min(raise, LONG_TEN_POWERS_TABLE.length - 1);
+                long factor = LONG_TEN_POWERS_TABLE[step];
+                // unsigned high half of low * factor, factor is positive
+                long carry = Math.multiplyHigh(low, factor) + ((low >> 63) & factor);
+                high = Math.addExact(Math.multiplyExact(high, factor), carry);
+                low = low * factor;
+                raise -= step;
+            }
+            return divideAndRound(high, low, divisor, roundingMode);
+        }
+        if (-raise < LONG_TEN_POWERS_TABLE.length) {
+            long factor = LONG_TEN_POWERS_TABLE[-raise];
+            long scaledDivisor = divisor * factor;
+            if (Math.multiplyHigh(divisor, factor) == (scaledDivisor >> 63))
+                return divideAndRound(high, low, scaledDivisor, roundingMode);
+        }
+        // the rescaled divisor leaves the long range, rare enough for BigInteger
+        DecimalFallbackEvent.commit("divide", high == (low >> 63) ? "LONG" : "INT128");
+        BigInteger dividend = BigInteger.valueOf(high).shiftLeft(64).or(BigInteger.valueOf(low).and(LONG_MASK));
+        return divideAndRound(dividend, BigInteger.valueOf(divisor).multiply(BigInteger.TEN.pow(-raise)), roundingMode);
+    }
+
+    private static long divideAndRound(BigInteger dividend, BigInteger divisor, RoundingMode roundingMode) {
+        if (divisor.signum() == 0)
+            throw new ArithmeticException("/ by zero");
+        BigInteger[] quotientAndRemainder = dividend.divideAndRemainder(divisor);
+        BigInteger q = quotientAndRemainder[0];
+        BigInteger r = quotientAndRemainder[1];
+        int qsign = dividend.signum() == divisor.signum() ? 1 : -1;
+        if (r.signum() != 0 && commonNeedIncrement(roundingMode, qsign, r.abs().shiftLeft(1).compareTo(divisor.abs()), q.testBit(0)))
+            q = q.add(BigInteger.valueOf(qsign));
+        return q.longValueExact();
+    }
+
+    // (high * 2^64 + low) / divisor rounded like divideAndRound(long, long, RoundingMode), all two's complement
+    private static long divideAndRound(long high, long low, long divisor, RoundingMode roundingMode) {
+        if (divisor == 0)
+            throw new ArithmeticException("/ by zero");
+        int qsign = ((high < 0) == (divisor < 0)) ? 1 : -1;
+        if (high < 0) {
+            high = ~high + (low == 0 ? 1 : 0);
+            low = -low;
         }
+        // unsigned magnitude, Long.MIN_VALUE stands for 2^63
+        long d = Math.abs(divisor);
+        if (Long.compareUnsigned(high, d) >= 0)
+            throw new ArithmeticException("Overflow");
+        long q = divideUnsigned(high, low, d);
+        long r = low - q * d;
+        if (r != 0 && commonNeedIncrement(roundingMode, qsign, Long.compareUnsigned(r, d - r), (q & 1L) != 0L))
+            q++;
+        // a magnitude of 2^63 or more
+        if (q < 0)
+            throw new ArithmeticException("Overflow");
+        return qsign * q;
+    }
+
+    // unsigned (high * 2^64 + low) / divisor for high < divisor, two 64 by 32 bit steps after normalizing the divisor,
+    // see Hacker's Delight, divlu
+    private static long divideUnsigned(long high, long low, long divisor) {
+        final long base = 1L << 32;
+        int shift = Long.numberOfLeadingZeros(divisor);
+        divisor <<= shift;
+        long divisorHigh = divisor >>> 32;
+        long divisorLow = divisor & 0xFFFF_FFFFL;
+        long dividendHigh = shift == 0 ? high : (high << shift) | (low >>> (64 - shift));
+        long dividendLow = low << shift;
+        long digit1 = dividendLow >>> 32;
+        long digit0 = dividendLow & 0xFFFF_FFFFL;
+
+        long q1 = Long.divideUnsigned(dividendHigh, divisorHigh);
+        long rhat = dividendHigh - q1 * divisorHigh;
+        while (q1 >= base || Long.compareUnsigned(q1 * divisorLow, base * rhat + digit1) > 0) {
+            q1--;
+            rhat += divisorHigh;
+            if (rhat >= base) break;
+        }
+        long remainder = dividendHigh * base + digit1 - q1 * divisor;
+        long q0 = Long.divideUnsigned(remainder, divisorHigh);
+        rhat = remainder - q0 * divisorHigh;
+        while (q0 >= base || Long.compareUnsigned(q0 * divisorLow, base * rhat + digit0) > 0) {
+            q0--;
+            rhat += divisorHigh;
+            if (rhat >= base) break;
+        }
+        return q1 * base + q0;
+    }
+
+    // multiply by 10^n, throws ArithmeticException on overflow
+    public static long scaleUp(long val, int n) {
+        if (val == 0 || n == 0) return val;
+        if (n >= LONG_TEN_POWERS_TABLE.length) throw new ArithmeticException("Overflow");
+        return Math.multiplyExact(val, LONG_TEN_POWERS_TABLE[n]);
     }
 
     public static MutableDecimal valueOf(long unscaledVal, int scale) {
         return new MutableDecimal(unscaledVal, scale);
     }
 
-    private MutableDecimal divideAndRound(long ldividend, long ldivisor, int scale,
-                                          int preferredScale) {
+    private static long divideAndRound(long ldividend, long ldivisor, RoundingMode roundingMode) {
+        // the only quotient of two longs out of long range
+        if (ldividend == Long.MIN_VALUE && ldivisor == -1)
+            throw new ArithmeticException("Overflow");
         int qsign;
         long q = ldividend / ldivisor;
         long r = ldividend % ldivisor;
         qsign = ((ldividend < 0) == (ldivisor < 0)) ? 1 : -1;
         if (r != 0) {
-            boolean increment = needIncrement(ldivisor, qsign, q, r);
-            return valueOf((increment ? q + qsign : q), scale);
+            boolean increment = needIncrement(ldivisor, roundingMode, qsign, q, r);
+            return increment ? q + qsign : q;
         } else {
-            if (preferredScale != scale)
-                return createAndStripZerosToMatchScale(q, scale, preferredScale);
-            else
-                return valueOf(q, scale);
-        }
-    }
-
-    private static MutableDecimal createAndStripZerosToMatchScale(long compactVal, int scale, long preferredScale) {
-        while (Math.abs(compactVal) >= 10L && scale > preferredScale) {
-            if ((compactVal & 1L) != 0L)
-                break; // odd number cannot end in 0
-            long r = compactVal % 10L;
-            if (r != 0L)
-                break;
-            compactVal /= 10;
-            scale = checkScale(compactVal, (long) scale - 1); // could Overflow
+            return q;
         }
-        return valueOf(compactVal, scale);
     }
 
     private static int checkScale(long intCompact, long val) {
@@ -228,40 +450,49 @@ public class MutableDecimal implements Comparable<MutableDecimal> {
         return asInt;
     }
 
-    private static int longCompareMagnitude(long x, long y) {
-        if (x < 0)
-            x = -x;
-        if (y < 0)
-            y = -y;
-        return Long.compare(x, y);
-    }
-
-    private static boolean commonNeedIncrement(int qsign,
+    // whether the truncated quotient moves one away from zero, the same decision as BigDecimal's.
+    // cmpFracHalf compares the discarded fraction with one half
+    private static boolean commonNeedIncrement(RoundingMode roundingMode, int qsign,
                                                int cmpFracHalf, boolean oddQuot) {
-        if (cmpFracHalf < 0) // We're closer to higher digit
-            return false;
-        else if (cmpFracHalf > 0) // We're closer to lower digit
-            return true;
-        else { // half-way
-            return false;
+        switch (roundingMode) {
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            case UP: // Away from zero
+                return true;
+            case DOWN: // Towards zero
+                return false;
+            case CEILING: // Towards +infinity
+                return qsign > 0;
+            case FLOOR: // Towards -infinity
+                return qsign < 0;
+            default: // Some kind of half-way rounding
+                if (cmpFracHalf < 0) // We're closer to higher digit
+                    return false;
+                else if (cmpFracHalf > 0) // We're closer to lower digit
+                    return true;
+                else { // half-way
+                    return switch (roundingMode) {
+                        case HALF_DOWN -> false;
+                        case HALF_UP -> true;
+                        case HALF_EVEN -> oddQuot;
+                        default -> throw new AssertionError("Unexpected rounding mode " + roundingMode);
+                    };
+                }
         }
     }
 
-    private static boolean needIncrement(long ldivisor,
+    private static boolean needIncrement(long ldivisor, RoundingMode roundingMode,
                                          int qsign, long q, long r) {
         assert r != 0L;
 
-        int cmpFracHalf;
-        if (r <= HALF_LONG_MIN_VALUE || r > HALF_LONG_MAX_VALUE) {
-            cmpFracHalf = 1; // 2 * r can't fit into long
-        } else {
-            cmpFracHalf = longCompareMagnitude(2 * r, ldivisor);
-        }
-
-        return commonNeedIncrement(qsign, cmpFracHalf, (q & 1L) != 0L);
+        // |r| against |divisor| - |r|, unsigned magnitudes as Long.MIN_VALUE stands for 2^63
+        long absR = Math.abs(r);
+        long absDivisor = Math.abs(ldivisor);
+        int cmpFracHalf = Long.compareUnsigned(absR, absDivisor - absR);
+        return commonNeedIncrement(roundingMode, qsign, cmpFracHalf, (q & 1L) != 0L);
     }
 
-    private int checkScale(long val) {
+    private static int checkScale(long val) {
         int asInt = (int) val;
         if (asInt != val) {
             asInt = val > Integer.MAX_VALUE ? Integer.MAX_VALUE : Integer.MIN_VALUE;
@@ -271,10 +502,20 @@ public class MutableDecimal implements Comparable<MutableDecimal> {
     }
 
     public MutableDecimal multiply(MutableDecimal multiplicand) {
-        int productScale = checkScale((long) scale + multiplicand.scale);
+        int productScale = multiplyScale(scale, multiplicand.scale);
         return multiply(this.intCompact, multiplicand.intCompact, productScale);
     }
 
+    // scale of the product, not normalized
+    public static int multiplyScale(int scale1, int scale2) {
+        return checkScale((long) scale1 + scale2);
+    }
+
+    // unscaled value of the product at multiplyScale, not normalized
+    public static long multiplyUnscaled(long x, long y) {
+        return multiply(x, y);
+    }
+
     private static MutableDecimal multiply(long x, long y, int scale) {
         long product = multiply(x, y);
         return valueOf(product, scale);
@@ -293,41 +534,221 @@ public class MutableDecimal implements Comparable<MutableDecimal> {
     }
 
     private static MutableDecimal add(final long xs, int scale1, final long ys, int scale2) {
+        return valueOf(addUnscaled(xs, scale1, ys, scale2), addScale(scale1, scale2));
+    }
+
+    // scale of the sum, not normalized
+    public static int addScale(int scale1, int scale2) {
+        return Math.max(scale1, scale2);
+    }
+
+    // unscaled value of the sum at addScale, not normalized
+    public static long addUnscaled(final long xs, int scale1, final long ys, int scale2) {
         long sdiff = (long) scale1 - scale2;
         if (sdiff == 0) {
-            return add(xs, ys, scale1);
+            return add(xs, ys);
         } else if (sdiff < 0) {
             int raise = checkScale(xs, -sdiff);
-            long scaledX = (long) (xs * Math.pow(10, raise));
-            return add(scaledX, ys, scale2);
+            return add(scaleUp(xs, raise), ys);
         } else {
             int raise = checkScale(ys, sdiff);
-            long scaledY = (long) (ys * Math.pow(10, raise));
-            return add(xs, scaledY, scale1);
+            return add(xs, scaleUp(ys, raise));
         }
     }
 
-    private static MutableDecimal add(long xs, long ys, int scale) {
-        long sum = add(xs, ys);
-        return valueOf(sum, scale);
-    }
-
     private static long add(long xs, long ys) {
         return Math.addExact(xs, ys);
     }
 
+    public MutableDecimal negate() {
+        return valueOf(Math.negateExact(this.intCompact), this.scale);
+    }
+
+    // in-place arithmetic, the receiver is overwritten with the result and returned
+    public MutableDecimal addInPlace(MutableDecimal augend) {
+        return add(augend, this);
+    }
+
+    public MutableDecimal subtractInPlace(MutableDecimal subtrahend) {
+        return subtract(subtrahend, this);
+    }
+
+    public MutableDecimal multiplyInPlace(MutableDecimal multiplicand) {
+        return multiply(multiplicand, this);
+    }
+
+    public MutableDecimal divideInPlace(MutableDecimal divisor) {
+        return divide(divisor, 2, this);
+    }
+
+    public MutableDecimal divideInPlace(MutableDecimal divisor, int scale) {
+        return divide(divisor, scale, this);
+    }
+
+    public MutableDecimal negateInPlace() {
+        return negate(this);
+    }
+
+    // arithmetic into a caller supplied target, which may be this or the argument
+    public MutableDecimal add(MutableDecimal augend, MutableDecimal target) {
+        long sum = addUnscaled(this.intCompact, this.scale, augend.intCompact, augend.scale);
+        target.reset(sum, addScale(this.scale, augend.scale));
+        return target;
+    }
+
+    public MutableDecimal subtract(MutableDecimal subtrahend, MutableDecimal target) {
+        long difference = addUnscaled(this.intCompact, this.scale, Math.negateExact(subtrahend.intCompact), subtrahend.scale);
+        target.reset(difference, addScale(this.scale, subtrahend.scale));
+        return target;
+    }
+
+    public MutableDecimal multiply(MutableDecimal multiplicand, MutableDecimal target) {
+        int productScale = multiplyScale(this.scale, multiplicand.scale);
+        target.reset(multiplyUnscaled(this.intCompact, multiplicand.intCompact), productScale);
+        return target;
+    }
+
+    public MutableDecimal divide(MutableDecimal divisor, int scale, MutableDecimal target) {
+        return divide(divisor, scale, RoundingMode.HALF_UP, target);
+    }
+
+    public MutableDecimal divide(MutableDecimal divisor, int scale, RoundingMode roundingMode, MutableDecimal target) {
+        target.reset(divideUnscaled(this.intCompact, this.scale, divisor.intCompact, divisor.scale, scale, roundingMode), scale);
+        return target;
+    }
+
+    public MutableDecimal multiplyDivide(MutableDecimal multiplicand, MutableDecimal divisor, int scale, MutableDecimal target) {
+        return multiplyDivide(multiplicand, divisor, scale, RoundingMode.HALF_UP, target);
+    }
+
+    public MutableDecimal multiplyDivide(MutableDecimal multiplicand, MutableDecimal divisor, int scale, RoundingMode roundingMode,
+                                         MutableDecimal target) {
+        target.reset(multiplyDivideUnscaled(this.intCompact, this.scale, multiplicand.intCompact, multiplicand.scale,
+                divisor.intCompact, divisor.scale, scale, roundingMode), scale);
+        return target;
+    }
+
+    public MutableDecimal round(int newScale, RoundingMode roundingMode, MutableDecimal target) {
+        target.reset(roundUnscaled(this.intCompact, this.scale, newScale, roundingMode), Math.min(this.scale, newScale));
+        return target;
+    }
+
+    public MutableDecimal negate(MutableDecimal target) {
+        target.reset(Math.negateExact(this.intCompact), this.scale);
+        return target;
+    }
+
     @Override
     public String toString() {
         if (stringCache == null) {
-            if (this.scale == 0) return Long.toString(this.intCompact);
-            StringBuilder s = new StringBuilder(Long.toString(this.intCompact));
-            s.insert(s.length() - this.scale, ".");
-            if (s.charAt(0) == '.') s.insert(0, "0");
-            stringCache = String.format("%s", s);
+            stringCache = toString(this.intCompact, this.scale);
         }
         return stringCache;
     }
 
+    public static String toString(long unscaledVal, int scale) {
+        return appendTo(unscaledVal, scale, new StringBuilder(asciiLength(unscaledVal, scale))).toString();
+    }
+
+    // plain notation digits written straight from intCompact and scale, no intermediate objects
+    public StringBuilder appendTo(StringBuilder sb) {
+        return appendTo(this.intCompact, this.scale, sb);
+    }
+
+    public Appendable appendTo(Appendable appendable) throws IOException {
+        write(this.intCompact, this.scale, null, null, appendable, 0);
+        return appendable;
+    }
+
+    // returns the offset after the last written byte
+    public int writeAscii(byte[] bytes, int offset) {
+        return writeAscii(this.intCompact, this.scale, bytes, offset);
+    }
+
+    // writes at absolute buffer positions, position is not changed. returns the offset after the last written byte
+    public int writeAscii(ByteBuffer buffer, int offset) {
+        return writeAscii(this.intCompact, this.scale, buffer, offset);
+    }
+
+    public static StringBuilder appendTo(long unscaledVal, int scale, StringBuilder sb) {
+        try {
+            write(unscaledVal, scale, null, null, sb, 0);
+        } catch (IOException e) {
+            throw new AssertionError("StringBuilder does not throw IOException", e);
+        }
+        return sb;
+    }
+
+    public static int writeAscii(long unscaledVal, int scale, byte[] bytes, int offset) {
+        int length = asciiLength(unscaledVal, scale);
+        checkRange(offset, offset + length, bytes.length);
+        try {
+            return write(unscaledVal, scale, bytes, null, null, offset);
+        } catch (IOException e) {
+            throw new AssertionError("byte array does not throw IOException", e);
+        }
+    }
+
+    public static int writeAscii(long unscaledVal, int scale, ByteBuffer buffer, int offset) {
+        int length = asciiLength(unscaledVal, scale);
+        checkRange(offset, offset + length, buffer.limit());
+        try {
+            return write(unscaledVal, scale, null, buffer, null, offset);
+        } catch (IOException e) {
+            throw new AssertionError("ByteBuffer does not throw IOException", e);
+        }
+    }
+
+    // number of characters written by toString, appendTo and writeAscii
+    public static int asciiLength(long unscaledVal, int scale) {
+        int digits = digitCount(unscaledVal);
+        int sign = unscaledVal < 0 ? 1 : 0;
+        if (scale <= 0)
+            return sign + (unscaledVal == 0 ? 1 : digits - scale);
+        if (digits <= scale)
+            return sign + 2 + scale; // 0.000ddd
+        return sign + digits + 1;
+    }
+
+    private static int digitCount(long unscaledVal) {
+        // negative magnitude so that Long.MIN_VALUE needs no special case
+        long negative = unscaledVal > 0 ? -unscaledVal : unscaledVal;
+        int digits = 1;
+        while (digits < LONG_TEN_POWERS_TABLE.length && negative <= -LONG_TEN_POWERS_TABLE[digits]) digits++;
+        return digits;
+    }
+
+    private static int write(long unscaledVal, int scale, byte[] bytes, ByteBuffer buffer, Appendable appendable, int offset) throws IOException {
+        long negative = unscaledVal > 0 ? -unscaledVal : unscaledVal;
+        int digits = digitCount(unscaledVal);
+        if (unscaledVal < 0) put(bytes, buffer, appendable, offset++, '-');
+        if (scale > 0 && digits <= scale) {
+            put(bytes, buffer, appendable, offset++, '0');
+            put(bytes, buffer, appendable, offset++, '.');
+            for (int i = digits; i < scale; i++) put(bytes, buffer, appendable, offset++, '0');
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            if (i == scale - 1 && digits > scale) put(bytes, buffer, appendable, offset++, '.');
+            put(bytes, buffer, appendable, offset++, digitAt(negative, i));
+        }
+        if (unscaledVal != 0) {
+            for (int i = scale; i < 0; i++) put(bytes, buffer, appendable, offset++, '0');
+        }
+        return offset;
+    }
+
+    // i-th decimal digit, counted from the least significant one, of a non-positive value
+    private static char digitAt(long negative, int i) {
+        long shifted = i < LONG_TEN_POWERS_TABLE.length ? negative / LONG_TEN_POWERS_TABLE[i] : 0;
+        return (char) ('0' - shifted % 10);
+    }
+
+    private static void put(byte[] bytes, ByteBuffer buffer, Appendable appendable, int index, char c) throws IOException {
+        if (bytes != null) bytes[index] = (byte) c;
+        else if (buffer != null) buffer.put(index, (byte) c);
+        else appendable.append(c);
+    }
+
     public BigDecimal toBigDecimal() {
         if (bigDecimalCache == null) {
             bigDecimalCache = BigDecimal.valueOf(this.intCompact, this.scale).stripTrailingZeros();
@@ -344,24 +765,55 @@ public class MutableDecimal implements Comparable<MutableDecimal> {
         if (x == this)
             return true;
         if (x instanceof MutableDecimal xMutableDecimal) {
-            return this.toBigDecimal().compareTo(xMutableDecimal.toBigDecimal()) == 0;
+            return compare(this.intCompact, this.scale, xMutableDecimal.intCompact, xMutableDecimal.scale) == 0;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        int result = Long.hashCode(intCompact);
-        result = 31 * result + scale;
-        return result;
+        return hash(intCompact, scale);
     }
 
     @Override
     public int compareTo(MutableDecimal o) {
-        return this.toBigDecimal().compareTo(o.toBigDecimal());
+        return compare(this.intCompact, this.scale, o.intCompact, o.scale);
+    }
+
+    // numeral value comparison of two (unscaled, scale) pairs, exact across scales
+    public static int compare(long x, int xScale, long y, int yScale) {
+        if (xScale == yScale)
+            return Long.compare(x, y);
+        if ((x < 0) != (y < 0) || x == 0 || y == 0)
+            return Long.compare(Long.signum(x), Long.signum(y));
+        if (xScale < yScale)
+            return compareScaled(x, (long) yScale - xScale, y);
+        return -compareScaled(y, (long) xScale - yScale, x);
+    }
+
+    // compares x * 10^n with y, a product out of long range is larger in magnitude than any long
+    private static int compareScaled(long x, long n, long y) {
+        if (n < LONG_TEN_POWERS_TABLE.length) {
+            long high = Math.multiplyHigh(x, LONG_TEN_POWERS_TABLE[(int) n]);
+            long low = x * LONG_TEN_POWERS_TABLE[(int) n];
+            if (high == (low >> 63))
+                return Long.compare(low, y);
+        }
+        return x > 0 ? 1 : -1;
+    }
+
+    // hash of the numeral value, equal for (15, 1) and (150, 2)
+    public static int hash(long unscaledVal, int scale) {
+        int result = Long.hashCode(normalizedUnscaled(unscaledVal, scale));
+        result = 31 * result + normalizedScale(unscaledVal, scale);
+        return result;
     }
 
     public int getScale() {
         return scale;
     }
+
+    public long getUnscaledValue() {
+        return intCompact;
+    }
 }
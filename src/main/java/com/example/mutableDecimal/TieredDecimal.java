@@ -0,0 +1,368 @@
+package com.example.mutableDecimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.LongAdder;
+
+// mutable decimal that widens instead of overflowing. a value is kept on the narrowest tier that holds it:
+// an unscaled long like MutableDecimal, a 128 bit unscaled value, two longs, or a BigDecimal past that.
+// results are exact and move back down as soon as they fit, normalized to the smallest scale like
+// MutableDecimal. operations are counted by the tier they ran on, see stats().
+// this implementation is not synchronized
+public final class TieredDecimal implements Comparable<TieredDecimal> {
+
+    public enum Tier {
+        LONG,
+        INT128,
+        BIG_DECIMAL
+    }
+
+    // operations run on each tier since the last resetStats(), over all instances
+    public record Stats(long longOperations, long int128Operations, long bigDecimalOperations) {
+        public long operations() {
+            return longOperations + int128Operations + bigDecimalOperations;
+        }
+    }
+
+    private static final long[] LONG_TEN_POWERS_TABLE = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    private static final BigInteger LONG_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    private static final LongAdder LONG_OPERATIONS = new LongAdder();
+    private static final LongAdder INT128_OPERATIONS = new LongAdder();
+    private static final LongAdder BIG_DECIMAL_OPERATIONS = new LongAdder();
+
+    // two's complement high * 2^64 + unsigned low, at scale. high is the sign of low on the LONG tier
+    private long high;
+    private long low;
+    private int scale;
+    // the value on the BIG_DECIMAL tier, null on the others
+    private BigDecimal big;
+
+    public TieredDecimal() {
+    }
+
+    public TieredDecimal(long unscaledVal, int scale) {
+        reset(unscaledVal, scale);
+    }
+
+    // no limit on the number of digits
+    public TieredDecimal(String val) {
+        reset(new BigDecimal(val));
+    }
+
+    public TieredDecimal(BigDecimal val) {
+        reset(val);
+    }
+
+    // reset to other numeral value
+    public TieredDecimal reset(long unscaledVal, int scale) {
+        int normalizedScale = MutableDecimal.normalizedScale(unscaledVal, scale);
+        // a negative scale left when the value does not fit a long at scale 0 is widened to scale 0
+        if (normalizedScale < 0)
+            return reset(BigDecimal.valueOf(unscaledVal, scale));
+        this.low = MutableDecimal.normalizedUnscaled(unscaledVal, scale);
+        this.scale = normalizedScale;
+        this.high = this.low >> 63;
+        this.big = null;
+        return this;
+    }
+
+    public TieredDecimal reset(MutableDecimal val) {
+        return reset(val.getUnscaledValue(), val.getScale());
+    }
+
+    public TieredDecimal reset(TieredDecimal val) {
+        this.high = val.high;
+        this.low = val.low;
+        this.scale = val.scale;
+        this.big = val.big;
+        return this;
+    }
+
+    public TieredDecimal reset(BigDecimal val) {
+        // same normalization as MutableDecimal, trailing zeros are only stripped down to scale 0
+        // and negative scales are raised to 0, so every value has a single representation
+        if (val.scale() > 0)
+            val = val.stripTrailingZeros();
+        if (val.scale() < 0)
+            val = val.setScale(0);
+        BigInteger unscaledValue = val.unscaledValue();
+        if (unscaledValue.bitLength() < Long.SIZE)
+            return reset(unscaledValue.longValue(), val.scale());
+        if (unscaledValue.bitLength() < 2 * Long.SIZE) {
+            high = unscaledValue.shiftRight(Long.SIZE).longValue();
+            low = unscaledValue.longValue();
+            scale = val.scale();
+            big = null;
+            return this;
+        }
+        big = val;
+        return this;
+    }
+
+    public Tier getTier() {
+        if (big != null) return Tier.BIG_DECIMAL;
+        return high == (low >> 63) ? Tier.LONG : Tier.INT128;
+    }
+
+    public TieredDecimal add(TieredDecimal augend, TieredDecimal target) {
+        return add(augend, false, target);
+    }
+
+    public TieredDecimal subtract(TieredDecimal subtrahend, TieredDecimal target) {
+        return add(subtrahend, true, target);
+    }
+
+    public TieredDecimal negate(TieredDecimal target) {
+        if (big == null) {
+            if (high == (low >> 63) && low != Long.MIN_VALUE) {
+                LONG_OPERATIONS.increment();
+                return target.reset(-low, scale);
+            }
+            if (high != Long.MIN_VALUE || low != 0) {
+                INT128_OPERATIONS.increment();
+                return target.setWide(~high + (low == 0 ? 1 : 0), -low, scale);
+            }
+        }
+        bigDecimalOperation("negate", this, this);
+        return target.reset(toBigDecimal().negate());
+    }
+
+    public TieredDecimal multiply(TieredDecimal multiplicand, TieredDecimal target) {
+        if (big == null && multiplicand.big == null) {
+            long xh = high, xl = low, yh = multiplicand.high, yl = multiplicand.low;
+            int productScale = MutableDecimal.multiplyScale(scale, multiplicand.scale);
+            boolean xLong = xh == (xl >> 63);
+            boolean yLong = yh == (yl >> 63);
+            if (xLong && yLong) {
+                long productHigh = Math.multiplyHigh(xl, yl);
+                long product = xl * yl;
+                if (productHigh == (product >> 63)) {
+                    LONG_OPERATIONS.increment();
+                    return target.reset(product, productScale);
+                }
+                INT128_OPERATIONS.increment();
+                return target.setWide(productHigh, product, productScale);
+            }
+            if (xLong || yLong) {
+                // magnitude of the 128 bit operand times the magnitude of the long one
+                long ah = xLong ? yh : xh, al = xLong ? yl : xl, b = xLong ? xl : yl;
+                boolean negative = (ah < 0) != (b < 0);
+                if (ah < 0) {
+                    ah = ~ah + (al == 0 ? 1 : 0);
+                    al = -al;
+                }
+                // unsigned, Long.MIN_VALUE stands for 2^63
+                long mb = Math.abs(b);
+                long carry = unsignedMultiplyHigh(al, mb);
+                long partial = ah * mb;
+                long productHigh = partial + carry;
+                // fits if ah * mb is below 2^64, the carry does not wrap and the sign bit stays clear
+                if (unsignedMultiplyHigh(ah, mb) == 0 && Long.compareUnsigned(productHigh, carry) >= 0 && productHigh >= 0) {
+                    long productLow = al * mb;
+                    INT128_OPERATIONS.increment();
+                    if (negative)
+                        return target.setWide(~productHigh + (productLow == 0 ? 1 : 0), -productLow, productScale);
+                    return target.setWide(productHigh, productLow, productScale);
+                }
+            }
+        }
+        bigDecimalOperation("multiply", this, multiplicand);
+        return target.reset(toBigDecimal().multiply(multiplicand.toBigDecimal()));
+    }
+
+    // quotient at the given scale rounded HALF_UP, same as MutableDecimal.divide. throws ArithmeticException on a zero divisor
+    public TieredDecimal divide(TieredDecimal divisor, int scale, TieredDecimal target) {
+        return divide(divisor, scale, RoundingMode.HALF_UP, target);
+    }
+
+    public TieredDecimal divide(TieredDecimal divisor, int scale, RoundingMode roundingMode, TieredDecimal target) {
+        if (getTier() == Tier.LONG && divisor.getTier() == Tier.LONG) {
+            if (divisor.low == 0)
+                throw new ArithmeticException("Division by zero");
+            try {
+                long quotient = MutableDecimal.divideUnscaled(low, this.scale, divisor.low, divisor.scale, scale, roundingMode);
+                LONG_OPERATIONS.increment();
+                return target.reset(quotient, scale);
+            } catch (ArithmeticException e) {
+                // the quotient left the long range, or UNNECESSARY rounding failed and fails again below
+            }
+        } else if (divisor.signum() == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        bigDecimalOperation("divide", this, divisor);
+        return target.reset(toBigDecimal().divide(divisor.toBigDecimal(), scale, roundingMode));
+    }
+
+    public int signum() {
+        if (big != null) return big.signum();
+        return high < 0 ? -1 : high == 0 && low == 0 ? 0 : 1;
+    }
+
+    public BigDecimal toBigDecimal() {
+        if (big != null)
+            return big;
+        if (high == (low >> 63))
+            return BigDecimal.valueOf(low, scale);
+        return new BigDecimal(BigInteger.valueOf(high).shiftLeft(Long.SIZE).or(BigInteger.valueOf(low).and(LONG_MASK)), scale);
+    }
+
+    // the value in the given instance, throws ArithmeticException if it is not on the LONG tier
+    public MutableDecimal get(MutableDecimal target) {
+        if (getTier() != Tier.LONG)
+            throw new ArithmeticException(String.format("value does not fit a MutableDecimal (%s)", this));
+        target.reset(low, scale);
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        if (getTier() == Tier.LONG)
+            return MutableDecimal.toString(low, scale);
+        return toBigDecimal().toPlainString();
+    }
+
+    @Override
+    public boolean equals(Object x) {
+        if (x == this)
+            return true;
+        return x instanceof TieredDecimal xTieredDecimal && compareTo(xTieredDecimal) == 0;
+    }
+
+    // equal values are normalized to the same tier and representation
+    @Override
+    public int hashCode() {
+        return switch (getTier()) {
+            case LONG -> MutableDecimal.hash(low, scale);
+            case INT128 -> 31 * (31 * Long.hashCode(high) + Long.hashCode(low)) + scale;
+            case BIG_DECIMAL -> big.hashCode();
+        };
+    }
+
+    @Override
+    public int compareTo(TieredDecimal o) {
+        if (getTier() == Tier.LONG && o.getTier() == Tier.LONG)
+            return MutableDecimal.compare(low, scale, o.low, o.scale);
+        return toBigDecimal().compareTo(o.toBigDecimal());
+    }
+
+    public static Stats stats() {
+        return new Stats(LONG_OPERATIONS.sum(), INT128_OPERATIONS.sum(), BIG_DECIMAL_OPERATIONS.sum());
+    }
+
+    public static void resetStats() {
+        LONG_OPERATIONS.reset();
+        INT128_OPERATIONS.reset();
+        BIG_DECIMAL_OPERATIONS.reset();
+    }
+
+    private TieredDecimal add(TieredDecimal augend, boolean subtract, TieredDecimal target) {
+        if (big == null && augend.big == null) {
+            long xh = high, xl = low, yh = augend.high, yl = augend.low;
+            int xs = scale, ys = augend.scale;
+            boolean longOperands = xh == (xl >> 63) && yh == (yl >> 63);
+            if (longOperands && xs == ys && (!subtract || yl != Long.MIN_VALUE)) {
+                long y = subtract ? -yl : yl;
+                long sum = xl + y;
+                if (((xl ^ sum) & (y ^ sum)) >= 0) {
+                    LONG_OPERATIONS.increment();
+                    return target.reset(sum, xs);
+                }
+            }
+            try {
+                if (subtract) {
+                    if (yh == Long.MIN_VALUE && yl == 0) throw new ArithmeticException("Overflow");
+                    yh = ~yh + (yl == 0 ? 1 : 0);
+                    yl = -yl;
+                }
+                int sumScale = MutableDecimal.addScale(xs, ys);
+                if (xs < sumScale) {
+                    xh = scaledHigh(xh, xl, sumScale - xs);
+                    xl = scaledLow(xl, sumScale - xs);
+                }
+                if (ys < sumScale) {
+                    yh = scaledHigh(yh, yl, sumScale - ys);
+                    yl = scaledLow(yl, sumScale - ys);
+                }
+                long sum = xl + yl;
+                long carry = Long.compareUnsigned(sum, xl) < 0 ? 1 : 0;
+                long sumHigh = Math.addExact(Math.addExact(xh, yh), carry);
+                target.setWide(sumHigh, sum, sumScale);
+                (longOperands && target.getTier() == Tier.LONG ? LONG_OPERATIONS : INT128_OPERATIONS).increment();
+                return target;
+            } catch (ArithmeticException e) {
+                // past 128 bits
+            }
+        }
+        bigDecimalOperation(subtract ? "subtract" : "add", this, augend);
+        BigDecimal y = augend.toBigDecimal();
+        return target.reset(subtract ? toBigDecimal().subtract(y) : toBigDecimal().add(y));
+    }
+
+    // counts an operation run on BigDecimal, reported to JFR when the operands were on narrower tiers
+    private static void bigDecimalOperation(String operation, TieredDecimal x, TieredDecimal y) {
+        BIG_DECIMAL_OPERATIONS.increment();
+        if (x.big == null && y.big == null)
+            DecimalFallbackEvent.commit(operation, x.getTier() == Tier.INT128 || y.getTier() == Tier.INT128 ? "INT128" : "LONG");
+    }
+
+    // sets a 128 bit value, normalized and moved to the LONG tier if it fits
+    private TieredDecimal setWide(long high, long low, int scale) {
+        big = null;
+        while (true) {
+            if (high == (low >> 63))
+                return reset(low, scale);
+            this.high = high;
+            this.low = low;
+            this.scale = scale;
+            if (scale <= 0)
+                return this;
+            // divide the magnitude by 10 as three unsigned steps of 64, 32 and 32 bits
+            boolean negative = high < 0;
+            long h = negative ? ~high + (low == 0 ? 1 : 0) : high;
+            long l = negative ? -low : low;
+            long quotientHigh = Long.divideUnsigned(h, 10);
+            long middle = (Long.remainderUnsigned(h, 10) << 32) | (l >>> 32);
+            long last = ((middle % 10) << 32) | (l & 0xFFFF_FFFFL);
+            if (last % 10 != 0)
+                return this;
+            long quotientLow = ((middle / 10) << 32) | (last / 10);
+            high = negative ? ~quotientHigh + (quotientLow == 0 ? 1 : 0) : quotientHigh;
+            low = negative ? -quotientLow : quotientLow;
+            scale--;
+        }
+    }
+
+    // high half of (high, low) * 10^n, throws ArithmeticException past 128 bits
+    private static long scaledHigh(long high, long low, int n) {
+        while (n > 0) {
+            int step = Math.min(n, LONG_TEN_POWERS_TABLE.length - 1);
+            long factor = LONG_TEN_POWERS_TABLE[step];
+            // unsigned high half of low * factor, factor is positive
+            long carry = Math.multiplyHigh(low, factor) + ((low >> 63) & factor);
+            high = Math.addExact(Math.multiplyExact(high, factor), carry);
+            low = low * factor;
+            n -= step;
+        }
+        return high;
+    }
+
+    // low half of (high, low) * 10^n, does not depend on high
+    private static long scaledLow(long low, int n) {
+        while (n > 0) {
+            int step = Math.min(n, LONG_TEN_POWERS_TABLE.length - 1);
+            low = low * LONG_TEN_POWERS_TABLE[step];
+            n -= step;
+        }
+        return low;
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+}
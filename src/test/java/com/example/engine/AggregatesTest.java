@@ -0,0 +1,171 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.AllocationAssertions;
+import com.example.mutableDecimal.MutableDecimal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class AggregatesTest {
+
+	@Test
+	public void aggregateFunctionsTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			for (CompiledFormula formula : new CompiledFormula[]{
+					calculator.compile("SUM(amounts) + MIN(amounts) * 10 + MAX(amounts) * 100 + COUNT(amounts) * 1000 + AVG(amounts) * 10000"),
+					calculator.compileToBytecode("SUM(amounts) + MIN(amounts) * 10 + MAX(amounts) * 100 + COUNT(amounts) * 1000 + AVG(amounts) * 10000")}) {
+				Bindings bindings = formula.newBindings()
+						.setArray("amounts", new MutableDecimal("1.5"), new MutableDecimal("-2.25"), new MutableDecimal("4"));
+				// 3.25 + -22.5 + 400 + 3000 + 10800
+				Assertions.assertEquals(0, new BigDecimal("14180.75").compareTo(new BigDecimal(formula.evaluate(bindings))), implementation.toString());
+			}
+		}
+	}
+
+	@Test
+	public void averageRoundingTest() {
+		Random random = new Random(21);
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation, 0, 6, RoundingMode.HALF_EVEN);
+			// AVG divides with the scale and rounding of the calculator, like '/'
+			List<CompiledFormula> formulas = List.of(calculator.compile("AVG(x) - SUM(x) / COUNT(x)"), calculator.compileToBytecode("AVG(x) - SUM(x) / COUNT(x)"));
+			for (int i = 0; i < 1_000; i++) {
+				long[] unscaledValues = new long[random.nextInt(20) + 1];
+				int[] scales = new int[unscaledValues.length];
+				for (int j = 0; j < unscaledValues.length; j++) {
+					unscaledValues[j] = random.nextInt(2_000_000) - 1_000_000;
+					scales[j] = random.nextInt(8);
+				}
+				for (CompiledFormula formula : formulas)
+					Assertions.assertEquals(0, new BigDecimal(formula.evaluate(formula.newBindings().setArray("x", unscaledValues, scales))).signum(), implementation.toString());
+			}
+			CompiledFormula average = calculator.compile("AVG(x)");
+			Assertions.assertEquals(0, new BigDecimal("0.666667").compareTo(new BigDecimal(average.evaluate(average.newBindings().setArray("x", new long[]{1, 1, 0}, new int[]{0, 0, 0})))));
+			// a halfway average rounds to even
+			Assertions.assertEquals(0, new BigDecimal("0.000002").compareTo(new BigDecimal(average.evaluate(average.newBindings().setArray("x", new long[]{5, 0}, new int[]{6, 0})))),
+					implementation.toString());
+		}
+	}
+
+	@Test
+	public void aggregateAllocationTest() {
+		long[] unscaledValues = new long[1_000];
+		int[] scales = new int[unscaledValues.length];
+		for (int i = 0; i < unscaledValues.length; i++) {
+			unscaledValues[i] = i * 101L;
+			scales[i] = i % 3;
+		}
+		for (CompiledFormula formula : List.of(new FormulaCalculator().compile("SUM(x) + AVG(x)"), new FormulaCalculator().compileToBytecode("SUM(x) + AVG(x)"))) {
+			Bindings bindings = formula.newBindings().setArray("x", unscaledValues, scales);
+			MutableDecimal result = new MutableDecimal(0, 0);
+			AllocationAssertions.assertAllocationFree(20_000, i -> formula.evaluate(bindings, result));
+		}
+	}
+
+	@Test
+	public void functionNamesTest() {
+		CompiledFormula formula = new FormulaCalculator().compile("sum(x) / Count( x ) - rate");
+		Assertions.assertEquals(List.of("x", "rate"), formula.getVariables());
+		Bindings bindings = formula.newBindings().setArray("x", new long[]{10, 20, 30}, new int[]{0, 0, 0}).set("rate", 5, 1);
+		Assertions.assertEquals("19.5", formula.evaluate(bindings));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator().compile("MEDIAN(x)"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator().compile("SUM(1)"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator().compile("SUM(x"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator().compile("SUM(x) + x"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator().compile("x * COUNT(x)"));
+	}
+
+	@Test
+	public void bindingErrorsTest() {
+		CompiledFormula formula = new FormulaCalculator().compile("AVG(x)");
+		Bindings bindings = formula.newBindings();
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formula.evaluate(bindings));
+		bindings.set("x", 1, 0);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formula.evaluate(bindings));
+		bindings.setArray("x", new long[0], new int[0]);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formula.evaluate(bindings));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> bindings.setArray("x", new long[2], new int[1]));
+		Assertions.assertEquals("0", new FormulaCalculator().compile("SUM(x) + COUNT(x)").evaluate(new Bindings("x").setArray("x", new long[0], new int[0])));
+	}
+
+	@Test
+	public void overflowSafeSumTest() {
+		long[] unscaledValues = {Long.MAX_VALUE, Long.MAX_VALUE, -Long.MAX_VALUE, -1};
+		int[] scales = {0, 0, 0, 0};
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula formula = new FormulaCalculator(implementation).compile("SUM(x) + 1");
+			Bindings bindings = formula.newBindings().setArray("x", unscaledValues, scales);
+			// partial sums leave the long range, the total does not
+			Assertions.assertEquals(String.valueOf(Long.MAX_VALUE), formula.evaluate(bindings), implementation.toString());
+		}
+		CompiledFormula sum = new FormulaCalculator().compile("SUM(x)");
+		Assertions.assertThrows(ArithmeticException.class,
+				() -> sum.evaluate(new Bindings("x").setArray("x", new long[]{Long.MAX_VALUE, 1}, new int[]{0, 0})));
+		Assertions.assertEquals(new BigDecimal(Long.MAX_VALUE).add(BigDecimal.ONE).toString(),
+				new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL).compile("SUM(x)")
+						.evaluate(new Bindings("x").setArray("x", new long[]{Long.MAX_VALUE, 1}, new int[]{0, 0})));
+	}
+
+	@Test
+	public void parallelMatchesBigDecimalTest() {
+		Random random = new Random(17);
+		int length = 1_000_003;
+		long[] unscaledValues = new long[length];
+		int[] scales = new int[length];
+		BigDecimal sum = BigDecimal.ZERO;
+		BigDecimal min = null;
+		BigDecimal max = null;
+		for (int i = 0; i < length; i++) {
+			unscaledValues[i] = random.nextLong() >> 4;
+			// a few scales so ranges fall back to BigDecimal when aligned values leave the long range
+			scales[i] = i % 1000 == 0 ? 3 : 2;
+			BigDecimal value = BigDecimal.valueOf(unscaledValues[i], scales[i]);
+			sum = sum.add(value);
+			min = min == null || value.compareTo(min) < 0 ? value : min;
+			max = max == null || value.compareTo(max) > 0 ? value : max;
+		}
+		CompiledFormula formula = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL).compile("SUM(x)");
+		Bindings bindings = formula.newBindings().setArray("x", unscaledValues, scales);
+		Assertions.assertEquals(0, sum.compareTo(new BigDecimal(formula.evaluate(bindings))));
+		FormulaCalculator calculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL);
+		Assertions.assertEquals(0, min.compareTo(new BigDecimal(calculator.compile("MIN(x)").evaluate(new Bindings("x").setArray("x", unscaledValues, scales)))));
+		Assertions.assertEquals(0, max.compareTo(new BigDecimal(calculator.compile("MAX(x)").evaluate(new Bindings("x").setArray("x", unscaledValues, scales)))));
+		Assertions.assertEquals(sum.divide(BigDecimal.valueOf(length), 2, RoundingMode.HALF_UP).toString(),
+				calculator.compile("AVG(x)").evaluate(new Bindings("x").setArray("x", unscaledValues, scales)));
+
+		// same scale values small enough to stay in a long
+		long[] cents = new long[length];
+		int[] centScales = new int[length];
+		Arrays.fill(centScales, 2);
+		long total = 0;
+		for (int i = 0; i < length; i++) {
+			cents[i] = random.nextInt(2_000_000) - 1_000_000;
+			total += cents[i];
+		}
+		CompiledFormula mutableDecimalSum = new FormulaCalculator().compile("SUM(x)");
+		Assertions.assertEquals(0, BigDecimal.valueOf(total, 2).compareTo(new BigDecimal(mutableDecimalSum.evaluate(new Bindings("x").setArray("x", cents, centScales)))));
+	}
+
+	@Test
+	public void sharedAggregateTest() {
+		Program program = Program.compile(Optimizer.optimize(FormulaParser.parse("SUM(x) / COUNT(x) + SUM(x)"), FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL));
+		int aggregates = 0;
+		int[] code = program.code();
+		for (int pc = 0; pc < code.length; pc++) {
+			if (code[pc] == Program.AGGREGATE) {
+				aggregates++;
+				pc += 4;
+			} else if (code[pc] == Program.PUSH || code[pc] == Program.LOAD || code[pc] == Program.STORE || code[pc] == Program.RECALL) {
+				pc++;
+			}
+		}
+		Assertions.assertEquals(2, aggregates);
+		Assertions.assertTrue(program.hasAggregates());
+	}
+}
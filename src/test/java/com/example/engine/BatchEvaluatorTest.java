@@ -0,0 +1,165 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.DecimalVector;
+import com.example.mutableDecimal.MutableDecimal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+public class BatchEvaluatorTest {
+
+	private static final int ROWS = 200_000;
+
+	@Test
+	public void deterministicOutputTest() {
+		Random random = new Random(3);
+		long[][] unscaledValues = new long[3][ROWS];
+		int[][] scales = new int[3][ROWS];
+		for (int row = 0; row < ROWS; row++) {
+			unscaledValues[0][row] = random.nextInt(10_000_000);
+			scales[0][row] = 2;
+			unscaledValues[1][row] = random.nextInt(100_000) - 50_000;
+			scales[1][row] = random.nextInt(4);
+			unscaledValues[2][row] = random.nextInt(300) + 1;
+			scales[2][row] = 1;
+		}
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula formula = new FormulaCalculator(implementation).compile("(principal + fee) * rate / 100 - fee / 3");
+			long[] expectedUnscaledValues = new long[ROWS];
+			int[] expectedScales = new int[ROWS];
+			Bindings bindings = formula.newBindings();
+			MutableDecimal result = new MutableDecimal(0, 0);
+			for (int row = 0; row < ROWS; row++) {
+				for (int v = 0; v < 3; v++) bindings.set(v, unscaledValues[v][row], scales[v][row]);
+				formula.evaluate(bindings, result);
+				expectedUnscaledValues[row] = result.getUnscaledValue();
+				expectedScales[row] = result.getScale();
+			}
+			for (int parallelism : new int[]{1, 4}) {
+				try (BatchEvaluator evaluator = new BatchEvaluator(parallelism)) {
+					long[] outputUnscaledValues = new long[ROWS];
+					int[] outputScales = new int[ROWS];
+					evaluator.evaluateBatch(formula, unscaledValues, scales, outputUnscaledValues, outputScales);
+					Assertions.assertArrayEquals(expectedUnscaledValues, outputUnscaledValues, implementation + " " + parallelism);
+					Assertions.assertArrayEquals(expectedScales, outputScales, implementation + " " + parallelism);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void invalidColumnsTest() {
+		CompiledFormula formula = new FormulaCalculator().compile("x * y");
+		try (BatchEvaluator evaluator = new BatchEvaluator(2)) {
+			Assertions.assertThrows(IllegalArgumentException.class,
+					() -> evaluator.evaluateBatch(formula, new long[1][10], new int[1][10], new long[10], new int[10]));
+			Assertions.assertThrows(IllegalArgumentException.class,
+					() -> evaluator.evaluateBatch(formula, new long[2][10], new int[2][9], new long[10], new int[10]));
+			Assertions.assertThrows(IllegalArgumentException.class,
+					() -> evaluator.evaluateBatch(formula, new long[2][10], new int[2][10], new long[10], new int[11]));
+		}
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchEvaluator(0));
+	}
+
+	@Test
+	public void failingRowTest() {
+		CompiledFormula formula = new FormulaCalculator().compile("x / y");
+		long[][] unscaledValues = new long[2][ROWS];
+		int[][] scales = new int[2][ROWS];
+		Arrays.fill(unscaledValues[1], 1);
+		unscaledValues[1][ROWS - 7] = 0;
+		try (BatchEvaluator evaluator = new BatchEvaluator(4)) {
+			Assertions.assertThrows(ArithmeticException.class,
+					() -> evaluator.evaluateBatch(formula, unscaledValues, scales, new long[ROWS], new int[ROWS]));
+		}
+	}
+
+	@Test
+	public void vectorOutputTest() {
+		Random random = new Random(15);
+		// not a multiple of the block size, the last block is short
+		int rows = 3 * VectorEvaluator.BLOCK_SIZE * 4 + 123;
+		DecimalVector[] inputs = {new DecimalVector(rows), new DecimalVector(rows), new DecimalVector(rows)};
+		for (int row = 0; row < rows; row++) {
+			inputs[0].set(row, random.nextInt(10_000_000), 2);
+			inputs[1].set(row, random.nextInt(100_000) - 50_000, random.nextInt(4));
+			inputs[2].set(row, random.nextInt(300) + 1, 1);
+		}
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			// fee / 3 and principal + fee are shared, exercising STORE and RECALL
+			CompiledFormula formula = new FormulaCalculator(implementation).compile("(principal + fee) * rate / 100 - fee / 3 + (principal + fee) * (fee / 3)");
+			Bindings bindings = formula.newBindings();
+			MutableDecimal expected = new MutableDecimal(0, 0);
+			for (int parallelism : new int[]{1, 4}) {
+				try (BatchEvaluator evaluator = new BatchEvaluator(parallelism)) {
+					DecimalVector output = new DecimalVector(rows);
+					evaluator.evaluateBatch(formula, inputs, output);
+					for (int row = 0; row < rows; row++) {
+						for (int v = 0; v < 3; v++) bindings.set(v, inputs[v].getUnscaledValue(row), inputs[v].getScale(row));
+						formula.evaluate(bindings, expected);
+						Assertions.assertEquals(expected.getUnscaledValue(), output.getUnscaledValue(row), implementation + " " + parallelism + " " + row);
+						Assertions.assertEquals(expected.getScale(), output.getScale(row), implementation + " " + parallelism + " " + row);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void vectorEvaluatorReuseTest() throws Exception {
+		CompiledFormula formula = new FormulaCalculator().compile("x * y + x / 3");
+		// one evaluator per thread, kept for the next batch
+		VectorEvaluator own = formula.vectorEvaluator();
+		Assertions.assertSame(own, formula.vectorEvaluator());
+		VectorEvaluator[] other = new VectorEvaluator[1];
+		Thread thread = new Thread(() -> other[0] = formula.vectorEvaluator());
+		thread.start();
+		thread.join();
+		Assertions.assertNotSame(own, other[0]);
+		Assertions.assertNull(new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL).compile("x * y").vectorEvaluator());
+
+		int rows = 64 * VectorEvaluator.BLOCK_SIZE;
+		DecimalVector[] inputs = {new DecimalVector(rows).fill(12345, 2), new DecimalVector(rows).fill(7, 1)};
+		DecimalVector output = new DecimalVector(rows);
+		BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+				.filter(pool -> pool.getName().equals("direct")).findFirst().orElseThrow();
+		try (BatchEvaluator evaluator = new BatchEvaluator(4)) {
+			evaluator.evaluateBatch(formula, inputs, output);
+			long buffersBefore = direct.getCount();
+			// 16 ranges per batch, scratch blocks are only allocated by workers that had none yet
+			for (int i = 0; i < 20; i++) evaluator.evaluateBatch(formula, inputs, output);
+			Assertions.assertTrue(direct.getCount() - buffersBefore < 64, "direct buffers: " + (direct.getCount() - buffersBefore));
+		}
+		Assertions.assertEquals(new MutableDecimal("127.565"), output.get(rows - 1, new MutableDecimal(0, 0)));
+	}
+
+	@Test
+	public void vectorFailingRowTest() {
+		CompiledFormula formula = new FormulaCalculator().compile("x / y");
+		DecimalVector[] inputs = {new DecimalVector(ROWS), new DecimalVector(ROWS).fill(1, 0)};
+		inputs[1].set(ROWS - 7, 0, 0);
+		try (BatchEvaluator evaluator = new BatchEvaluator(4)) {
+			Assertions.assertThrows(ArithmeticException.class, () -> evaluator.evaluateBatch(formula, inputs, new DecimalVector(ROWS)));
+			Assertions.assertThrows(IllegalArgumentException.class, () -> evaluator.evaluateBatch(formula, inputs, new DecimalVector(ROWS - 1)));
+		}
+	}
+
+	@Test
+	public void adaptiveVectorTest() {
+		// x * x overflows in one row, the result still fits
+		CompiledFormula formula = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE).compile("x * x / x");
+		DecimalVector[] inputs = {new DecimalVector(ROWS).fill(3, 0)};
+		inputs[0].set(ROWS - 7, Long.MAX_VALUE, 0);
+		DecimalVector output = new DecimalVector(ROWS);
+		try (BatchEvaluator evaluator = new BatchEvaluator(4)) {
+			evaluator.evaluateBatch(formula, inputs, output);
+		}
+		Assertions.assertEquals(Long.MAX_VALUE, output.getUnscaledValue(ROWS - 7));
+		Assertions.assertEquals(3, output.getUnscaledValue(0));
+		Assertions.assertEquals(3, output.getUnscaledValue(ROWS - 1));
+	}
+}
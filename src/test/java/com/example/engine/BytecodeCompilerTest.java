@@ -0,0 +1,130 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.AllocationAssertions;
+import com.example.mutableDecimal.MutableDecimal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+public class BytecodeCompilerTest {
+
+	private static final List<String> FORMULA_LIST = List.of(
+			"2*(5+5*2)/3.3+(6/2+8.2)",
+			"(100+950.45)*12/100",
+			"((1+2)*(3+4))/7",
+			"100/3*3",
+			"1.50+2.25",
+			"12345.678*(1+1)/(4.5+0.5)",
+			"1+2*3-4/5",
+			"10-2*3*4+7/3",
+			"2.5*4-0.5",
+			"(8-3)*(2-7)",
+			"12345.678*(3-1)/(4.5+0.5)-7",
+			"1-1.5",
+			"1/20",
+			"0.001*3"
+	);
+
+	private static final List<String> VARIABLE_FORMULA_LIST = List.of(
+			"(principal+fee)*rate/100",
+			"(principal+fee)*rate/100-fee/3",
+			"principal-(fee+rate)*2+(fee+rate)*3",
+			"principal/rate/7*(fee-principal)",
+			"fee*0.5-principal-(rate)"
+	);
+
+	@Test
+	public void calculateTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			for (String formula : FORMULA_LIST) {
+				CompiledFormula compiledFormula = calculator.compileToBytecode(formula);
+				Assertions.assertTrue(compiledFormula.isBytecodeCompiled(), formula);
+				Assertions.assertEquals(calculator.calculate(formula), compiledFormula.evaluate(), implementation + ": " + formula);
+			}
+		}
+	}
+
+	@Test
+	public void interpreterTest() {
+		Random random = new Random(7);
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			for (String formula : VARIABLE_FORMULA_LIST) {
+				CompiledFormula interpreted = calculator.compile(formula);
+				CompiledFormula generated = calculator.compileToBytecode(formula);
+				Bindings bindings = generated.newBindings();
+				// bindings of another layout are looked up by name
+				Bindings otherBindings = new Bindings("rate", "fee", "principal");
+				for (int i = 0; i < 1000; i++) {
+					long principal = random.nextInt(1_000_000) + 1;
+					long fee = random.nextInt(100_000) - 50_000;
+					long rate = random.nextInt(2_000) + 1;
+					bindings.set("principal", principal, 2).set("fee", fee, 2).set("rate", rate, 1);
+					otherBindings.set("principal", principal, 2).set("fee", fee, 2).set("rate", rate, 1);
+					String expected = interpreted.evaluate(bindings);
+					Assertions.assertEquals(expected, generated.evaluate(bindings), implementation + ": " + formula);
+					Assertions.assertEquals(expected, generated.evaluate(otherBindings), implementation + ": " + formula);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void errorTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula formula = new FormulaCalculator(implementation).compileToBytecode("x/y");
+			Assertions.assertThrows(IllegalArgumentException.class, formula::evaluate);
+			Assertions.assertThrows(IllegalArgumentException.class, () -> formula.evaluate(formula.newBindings().set("x", 1, 0)));
+			Assertions.assertThrows(ArithmeticException.class, () -> formula.evaluate(formula.newBindings().set("x", 1, 0).set("y", 0, 0)));
+		}
+		CompiledFormula overflow = new FormulaCalculator().compileToBytecode("x*x");
+		Assertions.assertThrows(ArithmeticException.class, () -> overflow.evaluate(overflow.newBindings().set("x", Long.MAX_VALUE / 2, 0)));
+	}
+
+	@Test
+	public void multiplyDivideTest() {
+		// amount * days overflows a long, the fused product does not
+		String formula = "amount*days/360";
+		CompiledFormula bigDecimal = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL).compile(formula);
+		FormulaCalculator calculator = new FormulaCalculator();
+		for (CompiledFormula compiledFormula : List.of(calculator.compile(formula), calculator.compileToBytecode(formula))) {
+			Bindings bindings = compiledFormula.newBindings().set("amount", 9_000_000_000_000_000_001L, 2).set("days", 365, 0);
+			Assertions.assertEquals("91250000000000000.01", compiledFormula.evaluate(bindings));
+			Assertions.assertEquals(bigDecimal.evaluate(bindings), compiledFormula.evaluate(bindings));
+			// only a quotient out of long range still throws
+			bindings.set("days", 3650, 0);
+			Assertions.assertThrows(ArithmeticException.class, () -> compiledFormula.evaluate(bindings));
+			bindings.set("amount", -123_456_789_012_345_678L, 4).set("days", 1_000_000, 0);
+			Assertions.assertEquals(0, new BigDecimal(bigDecimal.evaluate(bindings)).compareTo(new BigDecimal(compiledFormula.evaluate(bindings))));
+		}
+	}
+
+	@Test
+	public void largeFormulaFallbackTest() {
+		StringBuilder formula = new StringBuilder("x0");
+		for (int i = 1; i < 5_000; i++) formula.append("+x").append(i);
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula compiledFormula = new FormulaCalculator(implementation).compileToBytecode(formula.toString());
+			Assertions.assertFalse(compiledFormula.isBytecodeCompiled());
+			Bindings bindings = compiledFormula.newBindings();
+			for (int i = 0; i < 5_000; i++) bindings.set(i, i, 0);
+			Assertions.assertEquals(String.valueOf(5_000L * 4_999 / 2), compiledFormula.evaluate(bindings));
+		}
+	}
+
+	@Test
+	public void allocationTest() {
+		CompiledFormula compiledFormula = new FormulaCalculator().compileToBytecode("(principal + fee) * rate / 100 - fee / 3");
+		Bindings bindings = compiledFormula.newBindings();
+		MutableDecimal result = new MutableDecimal(0, 0);
+		AllocationAssertions.assertAllocationFree(100_000, i -> {
+			bindings.set(0, 10_000 + i, 2).set(1, 95045, 2).set(2, 12, 0);
+			compiledFormula.evaluate(bindings, result);
+		});
+		Assertions.assertEquals(new MutableDecimal(-7077, 2), result);
+	}
+}
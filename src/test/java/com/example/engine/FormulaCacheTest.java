@@ -0,0 +1,99 @@
+package com.example.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FormulaCacheTest {
+
+	@Test
+	public void hitMissTest() {
+		FormulaCache cache = new FormulaCache(new FormulaCalculator(), 8);
+		CompiledFormula first = cache.get("(100+950.45)*12/100");
+		Assertions.assertSame(first, cache.get("(100+950.45)*12/100"));
+		Assertions.assertEquals("126.05", cache.get("(100+950.45)*12/100").evaluate());
+		Assertions.assertEquals(new FormulaCache.Stats(2, 1, 0), cache.stats());
+		Assertions.assertEquals(2.0 / 3, cache.stats().hitRate());
+		Assertions.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void lruEvictionTest() {
+		FormulaCache cache = new FormulaCache(new FormulaCalculator(), 3);
+		CompiledFormula one = cache.get("1+1");
+		cache.get("2+2");
+		cache.get("3+3");
+		// touching 1+1 leaves 2+2 as the least recently used
+		cache.get("1+1");
+		cache.get("4+4");
+		Assertions.assertEquals(3, cache.size());
+		Assertions.assertEquals(1, cache.stats().evictionCount());
+		Assertions.assertSame(one, cache.get("1+1"));
+		long misses = cache.stats().missCount();
+		cache.get("2+2");
+		Assertions.assertEquals(misses + 1, cache.stats().missCount());
+	}
+
+	@Test
+	public void boundedSizeTest() {
+		FormulaCache cache = new FormulaCache(new FormulaCalculator(), 100);
+		for (int i = 0; i < 1000; i++) {
+			cache.get(i + "*2");
+		}
+		Assertions.assertEquals(100, cache.size());
+		Assertions.assertEquals(900, cache.stats().evictionCount());
+		cache.invalidateAll();
+		Assertions.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void invalidFormulaTest() {
+		FormulaCache cache = new FormulaCache(new FormulaCalculator(), 4);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> cache.get("1+"));
+		Assertions.assertEquals(0, cache.size());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCache(new FormulaCalculator(), 0));
+	}
+
+	@Test
+	public void cachedCalculateTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			FormulaCalculator cachedCalculator = new FormulaCalculator(implementation, 16);
+			for (int i = 0; i < 3; i++) {
+				Assertions.assertEquals(calculator.calculate("2*(5+5*2)/3.3+(6/2+8.2)"), cachedCalculator.calculate("2*(5+5*2)/3.3+(6/2+8.2)"));
+				Assertions.assertEquals(calculator.calculate("10-2*3*4+7/3"), cachedCalculator.calculate("10-2*3*4+7/3"));
+			}
+			Assertions.assertEquals(new FormulaCache.Stats(4, 2, 0), cachedCalculator.getFormulaCache().stats());
+			Assertions.assertNull(calculator.getFormulaCache());
+		}
+	}
+
+	@Test
+	public void concurrentAccessTest() throws Exception {
+		FormulaCache cache = new FormulaCache(new FormulaCalculator(), 64);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 10_000; i++) {
+						int n = i % 128;
+						Assertions.assertEquals(String.valueOf(n * 2), cache.get(n + "*2").evaluate());
+					}
+				}));
+			}
+			for (Future<?> future : futures) future.get();
+		} finally {
+			executor.shutdown();
+		}
+		FormulaCache.Stats stats = cache.stats();
+		Assertions.assertEquals(80_000, stats.requestCount());
+		Assertions.assertTrue(cache.size() <= 64);
+		Assertions.assertTrue(stats.evictionCount() <= stats.missCount());
+	}
+}
@@ -1,8 +1,17 @@
 package com.example.engine;
 
+import com.example.mutableDecimal.AllocationAssertions;
+import com.example.mutableDecimal.MutableDecimal;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
 public class FormulaCalculatorTest {
 
 	FormulaCalculator formulaCalculator = new FormulaCalculator();
@@ -14,6 +23,125 @@ public class FormulaCalculatorTest {
 		System.out.println(answer);
 	}
 
+	private static final List<String> FORMULA_LIST = List.of(
+			"2*(5+5*2)/3.3+(6/2+8.2)",
+			"(100+950.45)*12/100",
+			"((1+2)*(3+4))/7",
+			"100/3*3",
+			"1.50+2.25",
+			"12345.678*(1+1)/(4.5+0.5)",
+			"1+2*3-4/5",
+			"10-2*3*4+7/3",
+			"2.5*4-0.5",
+			"(8-3)*(2-7)",
+			"12345.678*(3-1)/(4.5+0.5)-7",
+			"1-1.5",
+			"1/20",
+			"0.001*3"
+	);
+
+	@Test
+	public void compiledFormulaTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			for (String formula : FORMULA_LIST) {
+				CompiledFormula compiledFormula = calculator.compile(formula);
+				String expected = calculator.calculate(formula);
+				Assertions.assertEquals(expected, compiledFormula.evaluate(), implementation + ": " + formula);
+				Assertions.assertEquals(expected, compiledFormula.evaluate(), implementation + ": " + formula);
+			}
+		}
+	}
+
+	@Test
+	public void compiledFormulaImplementationTest() {
+		FormulaCalculator bigDecimalCalculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL);
+		FormulaCalculator mutableDecimalCalculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL);
+		for (String formula : FORMULA_LIST) {
+			String expected = bigDecimalCalculator.calculate(formula);
+			Assertions.assertEquals(0, new BigDecimal(expected).compareTo(new BigDecimal(mutableDecimalCalculator.compile(formula).evaluate())), formula);
+		}
+	}
+
+	@Test
+	public void compiledFormulaSyntaxTest() {
+		Assertions.assertEquals("1050.45", formulaCalculator.compile(" ( 100 + 950.45 ) ").evaluate());
+		Assertions.assertEquals("15", formulaCalculator.compile("10-(2-7)").evaluate());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("2+"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("(2+3"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("2)"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("1.2.3"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("2(3)"));
+	}
+
+	@Test
+	public void bindingsTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			CompiledFormula compiledFormula = calculator.compile("(principal + fee) * rate / 100");
+			Assertions.assertEquals(List.of("principal", "fee", "rate"), compiledFormula.getVariables());
+
+			Bindings bindings = compiledFormula.newBindings();
+			bindings.set("principal", 100, 0).set("fee", new MutableDecimal("950.45")).set("rate", 12, 0);
+			Assertions.assertEquals(calculator.calculate("(100+950.45)*12/100"), compiledFormula.evaluate(bindings), implementation.name());
+
+			bindings.set(bindings.indexOf("principal"), 25050, 2);
+			Assertions.assertEquals(calculator.calculate("(250.50+950.45)*12/100"), compiledFormula.evaluate(bindings), implementation.name());
+
+			// bindings not created by the formula are looked up by name
+			Bindings otherBindings = new Bindings("rate", "fee", "principal", "unused")
+					.set("rate", 12, 0).set("fee", new BigDecimal("950.45")).set("principal", 100, 0);
+			Assertions.assertEquals(calculator.calculate("(100+950.45)*12/100"), compiledFormula.evaluate(otherBindings), implementation.name());
+
+			bindings.clear();
+			Assertions.assertThrows(IllegalArgumentException.class, () -> compiledFormula.evaluate(bindings));
+			Assertions.assertThrows(IllegalArgumentException.class, compiledFormula::evaluate);
+			Assertions.assertThrows(IllegalArgumentException.class, () -> bindings.set("unknown", 1, 0));
+		}
+	}
+
+	@Test
+	public void mutableDecimalResultTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			MutableDecimal result = new MutableDecimal(0, 0);
+			for (String formula : FORMULA_LIST) {
+				CompiledFormula compiledFormula = calculator.compile(formula);
+				Assertions.assertEquals(new MutableDecimal(calculator.calculate(formula)), compiledFormula.evaluate(null, result), implementation + ": " + formula);
+			}
+		}
+	}
+
+	@Test
+	public void primitiveEvaluationAllocationTest() {
+		CompiledFormula compiledFormula = formulaCalculator.compile("(principal + fee) * rate / 100 - fee / 3");
+		Bindings bindings = compiledFormula.newBindings();
+		MutableDecimal result = new MutableDecimal(0, 0);
+		AllocationAssertions.assertAllocationFree(100_000, i -> {
+			bindings.set(0, 10_000 + i, 2).set(1, 95045, 2).set(2, 12, 0);
+			compiledFormula.evaluate(bindings, result);
+		});
+		Assertions.assertEquals(new MutableDecimal(-7077, 2), result);
+	}
+
+	@Test
+	public void streamingOutputTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			StringBuilder sb = new StringBuilder();
+			ByteBuffer buffer = ByteBuffer.allocate(1024);
+			StringBuilder expected = new StringBuilder();
+			for (String formula : FORMULA_LIST) {
+				CompiledFormula compiledFormula = calculator.compile(formula);
+				compiledFormula.appendTo(null, sb).append('\n');
+				compiledFormula.writeAscii(null, buffer).put((byte) '\n');
+				expected.append(calculator.calculate(formula)).append('\n');
+			}
+			Assertions.assertEquals(expected.toString(), sb.toString(), implementation.name());
+			Assertions.assertEquals(expected.toString(), new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII), implementation.name());
+		}
+	}
+
 	@Test
     public void f2(){
     
@@ -24,6 +152,146 @@ public class FormulaCalculatorTest {
     
     }
 
+	@Test
+	public void exactRunningSumTest() {
+		// the last two terms are added first and leave the long range, the total does not
+		Assertions.assertEquals("999999999999999999", formulaCalculator.calculate("999999999999999999-999999999999999999+999999999999999999"));
+		Assertions.assertEquals("999999999999999999", formulaCalculator.calculate("(999999999999999999-999999999999999999+999999999999999999)"));
+	}
+
+	@Test
+	public void foldedConstantTest() {
+		// literal only subtrees fold to 19 digit values that still fit a long
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			for (String formula : List.of("40584.366-6583+(63898*96135*5*97503)", "20960.161*(28358)*(15119.229)/74556", "1000000000000000000*9+1")) {
+				String expected = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL).compile(formula).evaluate();
+				Assertions.assertEquals(expected, calculator.compile(formula).evaluate(), implementation + ": " + formula);
+				Assertions.assertEquals(expected, calculator.compileToBytecode(formula).evaluate(), implementation + ": " + formula);
+			}
+			Assertions.assertEquals("2994723829672451.366", calculator.calculate("40584.366-6583+(63898*96135*5*97503)"));
+		}
+	}
+
+	@Test
+	public void roundingTest() {
+		Random random = new Random(21);
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation, 0, 2, RoundingMode.HALF_EVEN);
+			FormulaCalculator defaultCalculator = new FormulaCalculator(implementation);
+			// the calculator's scale and rounding apply to every '/', calculated or compiled
+			Assertions.assertEquals(0, new BigDecimal("0.12").compareTo(new BigDecimal(calculator.calculate("0.125/1"))));
+			Assertions.assertEquals(0, new BigDecimal("0.12").compareTo(new BigDecimal(calculator.compile("0.125/1").evaluate())));
+			Assertions.assertEquals(0, new BigDecimal("0.12").compareTo(new BigDecimal(evaluate(calculator.compile("x/1"), 125, 3))));
+			Assertions.assertEquals(0, new BigDecimal("0.12").compareTo(new BigDecimal(evaluate(calculator.compileToBytecode("x/1"), 125, 3))));
+			Assertions.assertEquals(0, new BigDecimal("0.13").compareTo(new BigDecimal(defaultCalculator.calculate("0.125/1"))));
+			Assertions.assertEquals(0, new BigDecimal("0.13").compareTo(new BigDecimal(evaluate(defaultCalculator.compile("x/1"), 125, 3))));
+			// DIV and ROUND choose their own
+			String formula = "DIV(a, b, 6, HALF_EVEN) + ROUND(c, 2, FLOOR) - ROUND(a*c/b)";
+			List<CompiledFormula> compiledFormulas = List.of(defaultCalculator.compile(formula), defaultCalculator.compileToBytecode(formula));
+			for (int i = 0; i < 10_000; i++) {
+				BigDecimal a = BigDecimal.valueOf(random.nextInt(200_000) - 100_000, random.nextInt(7));
+				BigDecimal b = BigDecimal.valueOf((random.nextInt(1_000) + 1) * (random.nextBoolean() ? 1 : -1), random.nextInt(2));
+				BigDecimal c = BigDecimal.valueOf(random.nextInt(200_000) - 100_000, random.nextInt(7));
+				BigDecimal product = a.multiply(c).divide(b, 2, RoundingMode.HALF_UP);
+				BigDecimal expected = a.divide(b, 6, RoundingMode.HALF_EVEN)
+						.add(c.scale() <= 2 ? c : c.setScale(2, RoundingMode.FLOOR))
+						.subtract(product);
+				for (CompiledFormula compiledFormula : compiledFormulas) {
+					Bindings bindings = compiledFormula.newBindings()
+							.set("a", a.unscaledValue().longValue(), a.scale())
+							.set("b", b.unscaledValue().longValue(), b.scale())
+							.set("c", c.unscaledValue().longValue(), c.scale());
+					Assertions.assertEquals(0, expected.compareTo(new BigDecimal(compiledFormula.evaluate(bindings))), implementation + ": " + a + " " + b + " " + c);
+				}
+			}
+			Assertions.assertEquals(0, new BigDecimal("0.33").compareTo(new BigDecimal(defaultCalculator.compile("ROUND(DIV(1, 3, 6), 2, DOWN)").evaluate())));
+		}
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("DIV(1, 3, 2, NEAREST)"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("DIV(1)"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> formulaCalculator.compile("ROUND(1, x)"));
+		Assertions.assertThrows(ArithmeticException.class, () -> evaluate(formulaCalculator.compile("ROUND(x, 1, UNNECESSARY)"), 125, 3));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, 0, -1, RoundingMode.HALF_UP));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, 0, 2, null));
+	}
 
+	@Test
+	public void adaptiveTest() {
+		FormulaCalculator calculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE);
+		// intermediate products out of long range are re-run on BigDecimal
+		Assertions.assertEquals("9999999999999999990", calculator.calculate("999999999999999999*10"));
+		Assertions.assertThrows(ArithmeticException.class, () -> formulaCalculator.calculate("999999999999999999*10"));
+		// so are literals out of long range
+		Assertions.assertEquals("18446744073709551614", calculator.calculate("9223372036854775807*2"));
+		Assertions.assertEquals("1.5", calculator.calculate("3/2"));
+		CompiledFormula formula = calculator.compileToBytecode("x*y-x*y+z/2");
+		Bindings bindings = formula.newBindings().set("x", Long.MAX_VALUE, 0).set("y", 10, 0).set("z", 3, 0);
+		Assertions.assertEquals("1.5", formula.evaluate(bindings));
+		Assertions.assertEquals(new MutableDecimal("1.5"), formula.evaluate(bindings, new MutableDecimal(0, 0)));
+		Assertions.assertEquals("1.5", formula.appendTo(bindings, new StringBuilder()).toString());
+		Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, formula.getActiveImplementation());
+		// errors BigDecimal has as well still fail
+		Assertions.assertThrows(ArithmeticException.class, () -> calculator.compile("x/0").evaluate(formula.newBindings().set("x", 1, 0)));
+		// literals out of long range compile straight to BigDecimal evaluation
+		FormulaCalculator cachedCalculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE, 4);
+		for (CompiledFormula wide : List.of(calculator.compile("12345678901234567890*x"), calculator.compileToBytecode("12345678901234567890*x"))) {
+			Assertions.assertEquals("24691357802469135780", wide.evaluate(wide.newBindings().set("x", 2, 0)));
+			Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL, wide.getActiveImplementation());
+		}
+		Assertions.assertEquals("24691357802469135780", calculator.calculate("12345678901234567890*2"));
+		Assertions.assertEquals("24691357802469135780", cachedCalculator.calculate("12345678901234567890*2"));
+	}
 
-}
\ No newline at end of file
+	@Test
+	public void adaptiveDivisionByZeroTest() {
+		FormulaMetrics metrics = new FormulaMetrics();
+		CompiledFormula formula = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE)
+				.setMetrics(metrics)
+				.setAdaptiveOverflowRate(0)
+				.compile("x/y");
+		Bindings bindings = formula.newBindings().set("x", 1, 0).set("y", 0, 0);
+		// fails on BigDecimal as well, so it is no overflow
+		for (int i = 0; i < 10; i++) Assertions.assertThrows(ArithmeticException.class, () -> formula.evaluate(bindings));
+		Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, formula.getActiveImplementation());
+		FormulaMetrics.Stats stats = metrics.stats("x/y");
+		Assertions.assertEquals(0, stats.bigDecimalFallbackCount());
+		Assertions.assertEquals(10, stats.arithmeticExceptionCount());
+		Assertions.assertEquals("0.5", formula.evaluate(bindings.set("y", 2, 0)));
+		// a real overflow at a rate of 0 moves it
+		Assertions.assertEquals("100000000000000000000", formula.evaluate(bindings.set("x", 10_000_000_000L, 0).set("y", 1, 10)));
+		Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL, formula.getActiveImplementation());
+	}
+
+	@Test
+	public void adaptiveSwitchTest() {
+		FormulaMetrics metrics = new FormulaMetrics();
+		FormulaCalculator calculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.ADAPTIVE)
+				.setMetrics(metrics)
+				.setAdaptiveOverflowRate(0.5);
+		CompiledFormula formula = calculator.compile("x*x");
+		CompiledFormula steady = calculator.setAdaptiveOverflowRate(1).compile("x*x+0");
+		Bindings small = formula.newBindings().set("x", 3, 0);
+		Bindings large = formula.newBindings().set("x", 10_000_000_000L, 0);
+		// half of 1000 evaluations overflowing is not above the rate yet
+		for (int i = 0; i < 500; i++) {
+			Assertions.assertEquals("100000000000000000000", formula.evaluate(large));
+			Assertions.assertEquals("100000000000000000000", steady.evaluate(large));
+			Assertions.assertEquals("9", formula.evaluate(small));
+		}
+		Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, formula.getActiveImplementation());
+		Assertions.assertEquals("100000000000000000000", formula.evaluate(large));
+		Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL, formula.getActiveImplementation());
+		Assertions.assertEquals("9", formula.evaluate(small));
+		Assertions.assertEquals(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, steady.getActiveImplementation());
+		FormulaMetrics.Stats stats = metrics.stats("x*x");
+		Assertions.assertEquals(501, stats.bigDecimalFallbackCount());
+		Assertions.assertEquals(1002, stats.evaluationCount());
+		Assertions.assertEquals(0, stats.failedEvaluationCount());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> calculator.setAdaptiveOverflowRate(1.5));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> calculator.setAdaptiveOverflowRate(Double.NaN));
+	}
+
+	private static String evaluate(CompiledFormula compiledFormula, long unscaledValue, int scale) {
+		return compiledFormula.evaluate(compiledFormula.newBindings().set("x", unscaledValue, scale));
+	}
+}
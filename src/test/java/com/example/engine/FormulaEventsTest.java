@@ -0,0 +1,78 @@
+package com.example.engine;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+public class FormulaEventsTest {
+
+	@Test
+	public void recordedEventsTest() throws Exception {
+		Path file = Files.createTempFile("formula", ".jfr");
+		try (Recording recording = new Recording()) {
+			// no threshold, every compile and evaluation is recorded
+			recording.enable("com.example.engine.FormulaCompile").withThreshold(Duration.ZERO);
+			recording.enable("com.example.engine.FormulaEvaluate").withThreshold(Duration.ZERO);
+			recording.enable("com.example.engine.FormulaOverflow");
+			recording.start();
+			FormulaCalculator calculator = new FormulaCalculator();
+			CompiledFormula formula = calculator.compileToBytecode("x*y+1.5");
+			formula.evaluate(formula.newBindings().set("x", 3, 0).set("y", 2, 0));
+			Assertions.assertThrows(ArithmeticException.class, () -> formula.evaluate(formula.newBindings().set("x", Long.MAX_VALUE, 0).set("y", 2, 0)));
+			calculator.calculate("1+2");
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			RecordedEvent compile = only(events, "com.example.engine.FormulaCompile");
+			Assertions.assertEquals("x*y+1.5", compile.getString("formula"));
+			Assertions.assertEquals("MUTABLEDECIMAL", compile.getString("implementation"));
+			Assertions.assertTrue(compile.getBoolean("bytecodeRequested"));
+			Assertions.assertTrue(compile.getBoolean("bytecodeCompiled"));
+			// the failed evaluation is an overflow, not an evaluation
+			List<RecordedEvent> evaluations = events.stream().filter(e -> e.getEventType().getName().equals("com.example.engine.FormulaEvaluate")).toList();
+			Assertions.assertEquals(2, evaluations.size());
+			Assertions.assertEquals("x*y+1.5", evaluations.get(0).getString("formula"));
+			Assertions.assertEquals(3, evaluations.get(0).getInt("operandCount"));
+			Assertions.assertEquals("1+2", evaluations.get(1).getString("formula"));
+			RecordedEvent overflow = only(events, "com.example.engine.FormulaOverflow");
+			Assertions.assertEquals("x*y+1.5", overflow.getString("formula"));
+			Assertions.assertNotNull(overflow.getStackTrace());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void thresholdTest() throws Exception {
+		Path file = Files.createTempFile("formula", ".jfr");
+		try (Recording recording = new Recording()) {
+			// the default threshold leaves out fast evaluations
+			recording.enable("com.example.engine.FormulaEvaluate");
+			recording.start();
+			CompiledFormula formula = new FormulaCalculator().compile("1+2");
+			for (int i = 0; i < 1_000; i++) formula.evaluate();
+			recording.stop();
+			recording.dump(file);
+			long slow = RecordingFile.readAllEvents(file).stream()
+					.filter(e -> e.getEventType().getName().equals("com.example.engine.FormulaEvaluate"))
+					.filter(e -> e.getDuration().compareTo(Duration.ofNanos(100_000)) < 0)
+					.count();
+			Assertions.assertEquals(0, slow);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static RecordedEvent only(List<RecordedEvent> events, String name) {
+		List<RecordedEvent> matching = events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+		Assertions.assertEquals(1, matching.size(), name);
+		return matching.get(0);
+	}
+}
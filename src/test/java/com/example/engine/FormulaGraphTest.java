@@ -0,0 +1,136 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class FormulaGraphTest {
+
+	@Test
+	public void incrementalTest() {
+		FormulaGraph graph = new FormulaGraph(new FormulaCalculator())
+				.define("net", "gross - tax")
+				.define("tax", "gross * rate / 100")
+				.define("bonus", "base * 0.1")
+				.set("gross", 100_000, 2)
+				.set("rate", 20, 0)
+				.set("base", 5_000, 0);
+		Assertions.assertEquals("800", graph.get("net"));
+		Assertions.assertEquals("200", graph.get("tax"));
+		Assertions.assertEquals("500", graph.get("bonus"));
+		Assertions.assertEquals(Set.of("net", "tax", "bonus"), Set.copyOf(graph.getEvaluationOrder()));
+		Assertions.assertTrue(graph.getEvaluationOrder().indexOf("tax") < graph.getEvaluationOrder().indexOf("net"));
+		Assertions.assertEquals(Set.of("gross", "rate", "base"), graph.getInputs());
+
+		// rate only reaches tax and net
+		graph.set("rate", 25, 0);
+		Assertions.assertEquals(2, graph.recalculate());
+		Assertions.assertEquals("750", graph.get("net"));
+		// unchanged values recompute nothing
+		graph.set("rate", 25, 0);
+		Assertions.assertEquals(0, graph.recalculate());
+		graph.set("base", 6_000, 0);
+		Assertions.assertEquals(1, graph.recalculate());
+		Assertions.assertEquals(new MutableDecimal(600, 0), graph.get("bonus", new MutableDecimal(0, 0)));
+	}
+
+	@Test
+	public void redefineTest() {
+		FormulaGraph graph = new FormulaGraph(new FormulaCalculator())
+				.define("total", "price * quantity")
+				.set("price", 250, 2)
+				.set("quantity", 4, 0);
+		Assertions.assertEquals("10", graph.get("total"));
+		// an input becomes a formula
+		graph.define("price", "cost * 2").set("cost", 150, 2);
+		Assertions.assertEquals("12", graph.get("total"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> graph.set("price", 1, 0));
+	}
+
+	@Test
+	public void cycleTest() {
+		FormulaGraph graph = new FormulaGraph(new FormulaCalculator())
+				.define("a", "b + 1")
+				.define("b", "c * 2");
+		IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> graph.define("c", "a - 1"));
+		Assertions.assertEquals("cycle (c -> a -> b -> c)", e.getMessage());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> graph.define("d", "d + 1"));
+		// the graph is unchanged after a rejected definition
+		graph.set("c", 3, 0);
+		Assertions.assertEquals("7", graph.get("a"));
+	}
+
+	@Test
+	public void unboundInputTest() {
+		FormulaGraph graph = new FormulaGraph(new FormulaCalculator()).define("a", "x + y").set("x", 1, 0);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> graph.get("a"));
+		graph.set("y", 2, 0);
+		Assertions.assertEquals("3", graph.get("a"));
+	}
+
+	@Test
+	public void implementationTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			FormulaGraph graph = new FormulaGraph(calculator)
+					.define("product", "a * b")
+					.define("half", "product / 2")
+					.define("fee", "a * 1.50")
+					.set("a", 5_000_000_000L, 0)
+					.set("b", 5_000_000_000L, 0);
+			// values read like calculate, on BigDecimal beyond long range
+			if (implementation == FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL) {
+				Assertions.assertThrows(ArithmeticException.class, () -> graph.get("half"), implementation.name());
+			} else {
+				Assertions.assertEquals(calculator.calculate("5000000000*5000000000"), graph.get("product"), implementation.name());
+				Assertions.assertEquals(calculator.calculate("5000000000*5000000000/2"), graph.get("half"), implementation.name());
+				graph.set("a", new BigDecimal("50000000000000000000")).set("b", 1, 0);
+				Assertions.assertEquals(calculator.calculate("50000000000000000000/2"), graph.get("half"), implementation.name());
+				graph.set("a", 5_000_000_000L, 0).set("b", 5_000_000_000L, 0);
+			}
+			graph.set("a", 2, 0).set("b", 3, 0);
+			Assertions.assertEquals(calculator.calculate("2*1.50"), graph.get("fee"), implementation.name());
+			Assertions.assertEquals(calculator.calculate("2*3/2"), graph.get("half"), implementation.name());
+		}
+	}
+
+	@Test
+	public void parallelTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			FormulaGraph parallel = new FormulaGraph(calculator, new ForkJoinPool(4));
+			FormulaGraph sequential = new FormulaGraph(calculator, null);
+			// 200 independent branches of 3 levels joined by one total
+			StringBuilder total = new StringBuilder("0");
+			for (int i = 0; i < 200; i++) {
+				for (FormulaGraph graph : List.of(parallel, sequential)) {
+					graph.define("gross" + i, "base" + i + " * 12")
+							.define("tax" + i, "gross" + i + " * rate / 100")
+							.define("net" + i, "gross" + i + " - tax" + i);
+				}
+				total.append("+net").append(i);
+			}
+			parallel.define("total", total.toString());
+			sequential.define("total", total.toString());
+			Random random = new Random(11);
+			for (int round = 0; round < 5; round++) {
+				for (int i = 0; i < 200; i++) {
+					long base = random.nextInt(1_000_000);
+					parallel.set("base" + i, base, 2);
+					sequential.set("base" + i, base, 2);
+				}
+				long rate = random.nextInt(40);
+				parallel.set("rate", rate, 0);
+				sequential.set("rate", rate, 0);
+				Assertions.assertEquals(sequential.get("total"), parallel.get("total"), implementation.name());
+				Assertions.assertEquals(sequential.get("net17"), parallel.get("net17"), implementation.name());
+			}
+		}
+	}
+}
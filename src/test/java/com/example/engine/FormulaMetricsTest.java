@@ -0,0 +1,128 @@
+package com.example.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FormulaMetricsTest {
+
+	@Test
+	public void evaluationCountsTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaMetrics metrics = new FormulaMetrics();
+			FormulaCalculator calculator = new FormulaCalculator(implementation).setMetrics(metrics);
+			for (CompiledFormula formula : List.of(calculator.compile("x*y"), calculator.compileToBytecode("x*y"))) {
+				Bindings bindings = formula.newBindings().set("x", 3, 0).set("y", 5, 1);
+				for (int i = 0; i < 3; i++) Assertions.assertEquals("1.5", formula.evaluate(bindings));
+				// only the MUTABLEDECIMAL implementation overflows
+				bindings.set("x", Long.MAX_VALUE, 0).set("y", 2, 0);
+				if (implementation == FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL)
+					Assertions.assertThrows(ArithmeticException.class, () -> formula.evaluate(bindings));
+				else
+					formula.evaluate(bindings);
+				Assertions.assertThrows(IllegalArgumentException.class, formula::evaluate);
+			}
+			FormulaMetrics.Stats stats = metrics.stats("x*y");
+			boolean overflows = implementation == FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL;
+			Assertions.assertEquals(10, stats.evaluationCount(), implementation.toString());
+			Assertions.assertEquals(overflows ? 2 : 0, stats.arithmeticExceptionCount());
+			Assertions.assertEquals(2, stats.failureCount());
+			Assertions.assertEquals(stats.failedEvaluationCount(), stats.evaluationCount() - stats.evaluationLatency().count());
+			Assertions.assertEquals(2, stats.compileCount());
+			Assertions.assertEquals(0, stats.bytecodeFallbackCount());
+			Assertions.assertEquals(2, stats.compileLatency().count());
+			Assertions.assertNull(metrics.stats("x+y"));
+		}
+	}
+
+	@Test
+	public void calculateTest() {
+		FormulaMetrics metrics = new FormulaMetrics();
+		FormulaCalculator calculator = new FormulaCalculator().setMetrics(metrics);
+		FormulaCalculator cachedCalculator = new FormulaCalculator(FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL, 4).setMetrics(metrics);
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertEquals("126.05", calculator.calculate("(100+950.45)*12/100"));
+			Assertions.assertEquals("126.05", cachedCalculator.calculate("(100+950.45)*12/100"));
+		}
+		FormulaMetrics.Stats stats = metrics.stats("(100+950.45)*12/100");
+		Assertions.assertEquals(6, stats.evaluationCount());
+		// the cached formula is compiled once
+		Assertions.assertEquals(1, stats.compileCount());
+		// formulas failing to parse leave no entry
+		Assertions.assertThrows(IllegalArgumentException.class, () -> calculator.compile("1+"));
+		Assertions.assertEquals(List.of("(100+950.45)*12/100"), List.copyOf(metrics.snapshot().keySet()));
+		metrics.reset();
+		Assertions.assertTrue(metrics.snapshot().isEmpty());
+	}
+
+	@Test
+	public void disabledTest() {
+		FormulaMetrics metrics = new FormulaMetrics();
+		FormulaCalculator calculator = new FormulaCalculator();
+		CompiledFormula before = calculator.compile("1+2");
+		Assertions.assertNull(calculator.getMetrics());
+		calculator.setMetrics(metrics);
+		before.evaluate();
+		calculator.compile("3+4").evaluate();
+		calculator.setMetrics(null);
+		calculator.compile("5+6").evaluate();
+		calculator.calculate("7+8");
+		// only formulas compiled while the metrics were set record
+		Assertions.assertEquals(List.of("3+4"), List.copyOf(metrics.snapshot().keySet()));
+	}
+
+	@Test
+	public void bytecodeFallbackTest() {
+		StringBuilder formula = new StringBuilder("x0");
+		for (int i = 1; i < 5_000; i++) formula.append("+x").append(i);
+		FormulaMetrics metrics = new FormulaMetrics();
+		Assertions.assertFalse(new FormulaCalculator().setMetrics(metrics).compileToBytecode(formula.toString()).isBytecodeCompiled());
+		Assertions.assertEquals(1, metrics.stats(formula.toString()).bytecodeFallbackCount());
+	}
+
+	@Test
+	public void histogramTest() {
+		long[] bucketCounts = new long[FormulaMetrics.BUCKET_COUNT];
+		// 90 values of [64, 128) nanoseconds, 10 of [1024, 2048)
+		bucketCounts[7] = 90;
+		bucketCounts[11] = 10;
+		FormulaMetrics.Histogram histogram = new FormulaMetrics.Histogram(bucketCounts, 100, 20_000, 1_500);
+		Assertions.assertEquals(127, histogram.percentileNanos(50));
+		Assertions.assertEquals(127, histogram.percentileNanos(90));
+		Assertions.assertEquals(1_500, histogram.percentileNanos(99));
+		Assertions.assertEquals(200, histogram.meanNanos());
+		Assertions.assertEquals(0, new FormulaMetrics.Histogram(new long[FormulaMetrics.BUCKET_COUNT], 0, 0, 0).percentileNanos(99));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(101));
+		// snapshots do not share their buckets
+		histogram.bucketCounts()[7] = 0;
+		Assertions.assertEquals(90, histogram.bucketCounts()[7]);
+	}
+
+	@Test
+	public void concurrentRecordingTest() throws Exception {
+		FormulaMetrics metrics = new FormulaMetrics();
+		CompiledFormula formula = new FormulaCalculator().setMetrics(metrics).compile("x*2");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(() -> {
+					Bindings bindings = formula.newBindings();
+					for (int i = 0; i < 10_000; i++) formula.evaluate(bindings.set("x", i, 0));
+				}));
+			}
+			for (Future<?> future : futures) future.get();
+		} finally {
+			executor.shutdown();
+		}
+		FormulaMetrics.Stats stats = metrics.stats("x*2");
+		Assertions.assertEquals(80_000, stats.evaluationCount());
+		Assertions.assertEquals(80_000, stats.evaluationLatency().count());
+		Assertions.assertTrue(stats.evaluationLatency().percentileNanos(99) <= stats.evaluationLatency().maxNanos());
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class OptimizerTest {
+
+	private static final List<String> FORMULA_LIST = List.of(
+			"2*(5+5*2)/3.3+(6/2+8.2)",
+			"(100+950.45)*12/100",
+			"100/3*3",
+			"1+2*3-4/5",
+			"10-2*3*4+7/3",
+			"(8-3)*(2-7)",
+			"1/3+1/3+1/3",
+			"(principal+fee)*rate/100+(principal+fee)*12/100",
+			"principal*(12/100)+fee-2*3+1.50+2.25",
+			"(principal+fee)/(principal+fee)-1/20*(fee+7)",
+			"(principal+1)*(principal+1)-(principal+1)*2"
+	);
+
+	@Test
+	public void optimizedResultTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			FormulaCalculator calculator = new FormulaCalculator(implementation);
+			for (String formula : FORMULA_LIST) {
+				CompiledFormula optimized = calculator.compile(formula);
+				CompiledFormula plain = new CompiledFormula(formula, implementation, Program.compile(FormulaParser.parse(formula)));
+				Bindings bindings = new Bindings("principal", "fee", "rate")
+						.set("principal", 100, 0).set("fee", 95045, 2).set("rate", 7, 1);
+				Assertions.assertEquals(plain.evaluate(bindings), optimized.evaluate(bindings), implementation + ": " + formula);
+			}
+		}
+	}
+
+	@Test
+	public void constantFoldingTest() {
+		Program program = Program.compile(Optimizer.optimize(FormulaParser.parse("rate*(12/100)+(100+950.45)*12/100"), FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL));
+		// 12/100 rounds to 0.12, the rest of the formula folds into 126.05
+		Assertions.assertArrayEquals(new BigDecimal[]{new BigDecimal("126.05"), new BigDecimal("0.12")}, program.constants());
+		// divide rounds to 2 digits before the multiplication, same as evaluation
+		Assertions.assertArrayEquals(new BigDecimal[]{new BigDecimal("2.97")},
+				Program.compile(Optimizer.optimize(FormulaParser.parse("1/3*9"), FormulaCalculator.OPERATION_IMPLEMENTATION.BIGDECIMAL)).constants());
+	}
+
+	@Test
+	public void sumFoldingOrderTest() {
+		// only the literals added first are folded, x is added before 1 and 2 at the start of the list
+		Node node = Optimizer.optimize(FormulaParser.parse("1+2+x+3+4"), FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL);
+		Assertions.assertEquals(new Node.Sum(List.of(new Node.Literal(BigDecimal.ONE), new Node.Literal(new BigDecimal(2)),
+				new Node.Variable("x"), new Node.Literal(BigDecimal.valueOf(7)))), node);
+	}
+
+	@Test
+	public void failedFoldingTest() {
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula formula = new FormulaCalculator(implementation).compile("x+1/0");
+			Bindings bindings = formula.newBindings().set("x", 1, 0);
+			Assertions.assertThrows(ArithmeticException.class, () -> formula.evaluate(bindings), implementation.toString());
+		}
+	}
+
+	@Test
+	public void commonSubexpressionTest() {
+		String formula = "(principal+fee)*rate+(principal+fee)*rate/100-(principal+fee)";
+		Program plain = Program.compile(FormulaParser.parse(formula));
+		Program optimized = Program.compile(Optimizer.optimize(FormulaParser.parse(formula), FormulaCalculator.OPERATION_IMPLEMENTATION.MUTABLEDECIMAL));
+		Assertions.assertEquals(0, plain.slotCount());
+		// (principal+fee) and (principal+fee)*rate are computed once each
+		Assertions.assertEquals(2, optimized.slotCount());
+		Assertions.assertEquals(3, count(optimized.code(), Program.ADD));
+		Assertions.assertEquals(1, count(optimized.code(), Program.MULTIPLY));
+		Assertions.assertEquals(5, count(plain.code(), Program.ADD));
+		// unshared, the second product is fused with its division
+		Assertions.assertEquals(1, count(plain.code(), Program.MULTIPLY));
+		Assertions.assertEquals(1, count(plain.code(), Program.MULTIPLY_DIVIDE));
+		Assertions.assertEquals(0, count(optimized.code(), Program.MULTIPLY_DIVIDE));
+	}
+
+	private static int count(int[] code, int opcode) {
+		int count = 0;
+		for (int pc = 0; pc < code.length; pc++) {
+			if (code[pc] == opcode) count++;
+			// skip the operands of instructions that have some
+			if (code[pc] == Program.PUSH || code[pc] == Program.LOAD || code[pc] == Program.STORE || code[pc] == Program.RECALL) pc++;
+			else if (code[pc] == Program.DIVIDE || code[pc] == Program.MULTIPLY_DIVIDE || code[pc] == Program.ROUND) pc += 2;
+			else if (code[pc] == Program.AGGREGATE) pc += 4;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.engine;
+
+import com.example.mutableDecimal.MutableDecimal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class StreamingEvaluatorTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void csvTest() throws IOException {
+		Path input = directory.resolve("trades.csv");
+		Path output = directory.resolve("results.csv");
+		Files.writeString(input, "id,principal,fee,rate\r\n"
+				+ "1,100,950.45,12\r\n"
+				+ "2,200,0.6,3\r\n"
+				+ "\r\n"
+				+ "3,abc,1,1\r\n"
+				+ "4,1,2,3", StandardCharsets.US_ASCII);
+		List<Long> failedLines = new ArrayList<>();
+		CompiledFormula formula = new FormulaCalculator().compile("(principal + fee) * rate / 100");
+		StreamingEvaluator.Stats stats = new StreamingEvaluator(formula)
+				.csvColumn("principal", 1).csvColumn("fee", 2).csvColumn("rate", 3)
+				.skipLines(1)
+				.includeInputRow(true)
+				.errorSink((lineNumber, line, error) -> failedLines.add(lineNumber))
+				.evaluate(input, output);
+		Assertions.assertEquals(new StreamingEvaluator.Stats(4, 1), stats);
+		Assertions.assertEquals(List.of(5L), failedLines);
+		Assertions.assertEquals("1,100,950.45,12,126.05\n2,200,0.6,3,6.02\n4,1,2,3,0.09\n", Files.readString(output));
+	}
+
+	@Test
+	public void fixedWidthTest() throws IOException {
+		Path input = directory.resolve("trades.txt");
+		Path output = directory.resolve("results.txt");
+		Files.writeString(input, String.format("A%9s%5s\nB%9s%5s\nC%9s\n", "100.00", "12", "50.25", "3", "7"), StandardCharsets.US_ASCII);
+		List<String> failedLines = new ArrayList<>();
+		StreamingEvaluator.Stats stats = new StreamingEvaluator(new FormulaCalculator().compile("amount * rate"))
+				.fixedWidthColumn("amount", 1, 9).fixedWidthColumn("rate", 10, 5)
+				.errorSink((lineNumber, line, error) -> failedLines.add(line))
+				.evaluate(input, output);
+		Assertions.assertEquals(new StreamingEvaluator.Stats(3, 1), stats);
+		Assertions.assertEquals(List.of("C        7"), failedLines);
+		Assertions.assertEquals("1200\n150.75\n", Files.readString(output));
+	}
+
+	@Test
+	public void windowBoundaryTest() throws IOException {
+		Path input = directory.resolve("large.csv");
+		Path output = directory.resolve("large.out");
+		Random random = new Random(5);
+		StringBuilder rows = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula formula = new FormulaCalculator(implementation).compile("x * 3 / y - x");
+			Bindings bindings = formula.newBindings();
+			rows.setLength(0);
+			expected.setLength(0);
+			for (int i = 0; i < 20_000; i++) {
+				long x = random.nextInt(1_000_000);
+				long y = random.nextInt(999) + 1;
+				rows.append(x).append(";").append(y).append('\n');
+				expected.append(formula.evaluate(bindings.set("x", x, 0).set("y", y, 0))).append('\n');
+			}
+			Files.writeString(input, rows, StandardCharsets.US_ASCII);
+			// small windows put many lines across window boundaries
+			StreamingEvaluator.Stats stats = new StreamingEvaluator(formula)
+					.delimiter(';').csvColumn("x", 0).csvColumn("y", 1).windowSize(1000)
+					.evaluate(input, output);
+			Assertions.assertEquals(20_000, stats.writtenRowCount());
+			Assertions.assertEquals(expected.toString(), Files.readString(output), implementation.name());
+		}
+	}
+
+	@Test
+	public void resultTextTest() throws IOException {
+		Path input = directory.resolve("text.csv");
+		Path output = directory.resolve("text.out");
+		// trailing zeros, exponent notation on BigDecimal.toString, negative scales once stripped, beyond long range
+		String[][] rows = {{"1.5", "1.00"}, {"0.001", "0.0001"}, {"0.01", "0.0001"}, {"100", "10"}, {"-0.5", "0.2"},
+				{"0", "0.00"}, {"99999999999", "99999999999"}, {"123456789.123", "1000"}};
+		StringBuilder text = new StringBuilder();
+		for (String[] row : rows) text.append(row[0]).append(',').append(row[1]).append('\n');
+		Files.writeString(input, text, StandardCharsets.US_ASCII);
+		for (FormulaCalculator.OPERATION_IMPLEMENTATION implementation : FormulaCalculator.OPERATION_IMPLEMENTATION.values()) {
+			CompiledFormula formula = new FormulaCalculator(implementation).compile("x * y");
+			Bindings bindings = formula.newBindings();
+			// bound like the parsed columns
+			StringBuilder expected = new StringBuilder();
+			for (String[] row : rows) {
+				try {
+					expected.append(formula.evaluate(bindings.set("x", new MutableDecimal(row[0])).set("y", new MutableDecimal(row[1])))).append('\n');
+				} catch (ArithmeticException e) {
+					// out of long range on MUTABLEDECIMAL, the row fails in both
+				}
+			}
+			new StreamingEvaluator(formula).csvColumn("x", 0).csvColumn("y", 1)
+					.errorSink((lineNumber, line, error) -> { })
+					.evaluate(input, output);
+			Assertions.assertEquals(expected.toString(), Files.readString(output), implementation.name());
+		}
+	}
+
+	@Test
+	public void invalidConfigurationTest() throws IOException {
+		Path input = directory.resolve("in.csv");
+		Files.writeString(input, "1,2\n", StandardCharsets.US_ASCII);
+		CompiledFormula formula = new FormulaCalculator().compile("x + y");
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> new StreamingEvaluator(formula).csvColumn("x", 0).evaluate(input, directory.resolve("out")));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new StreamingEvaluator(formula).csvColumn("z", 0));
+		// the default sink fails on the first bad row
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> new StreamingEvaluator(formula).csvColumn("x", 0).csvColumn("y", 3).evaluate(input, directory.resolve("out")));
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> new StreamingEvaluator(formula).csvColumn("x", 0).csvColumn("y", 1).windowSize(2).evaluate(input, directory.resolve("out")));
+	}
+}
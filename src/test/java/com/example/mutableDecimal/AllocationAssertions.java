@@ -0,0 +1,32 @@
+package com.example.mutableDecimal;
+
+import org.junit.jupiter.api.Assertions;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+// checks that code runs without garbage. the smallest object is 16 bytes, so a call allocating anything shows
+// in every round as at least that per call. one-off allocations, eg, of a cold or deoptimizing JIT or of
+// code compiled without escape analysis, only hit some rounds, so the least allocating round is compared
+// with a tolerance of a byte per call
+public final class AllocationAssertions {
+
+    private static final int ROUNDS = 5;
+
+    private AllocationAssertions() {
+    }
+
+    // calls operation with 0 until calls - 1 for a warm up round, then for up to ROUNDS measured rounds
+    public static void assertAllocationFree(int calls, IntConsumer operation) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < calls; i++) operation.accept(i);
+        long leastAllocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && leastAllocated >= calls; round++) {
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < calls; i++) operation.accept(i);
+            leastAllocated = Math.min(leastAllocated, threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+        }
+        Assertions.assertTrue(leastAllocated < calls, "allocated bytes in " + calls + " calls: " + leastAllocated);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mutableDecimal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DecimalAccumulatorTest {
+
+    @Test
+    public void exactSumTest() {
+        Random random = new Random(18);
+        DecimalAccumulator accumulator = new DecimalAccumulator();
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int i = 0; i < 100_000; i++) {
+            // far beyond the long range once aligned to scale 9
+            long unscaledValue = random.nextLong();
+            int scale = random.nextInt(10);
+            accumulator.add(unscaledValue, scale);
+            expected = expected.add(BigDecimal.valueOf(unscaledValue, scale));
+        }
+        Assertions.assertEquals(expected, accumulator.toBigDecimal());
+        Assertions.assertEquals(100_000, accumulator.getCount());
+        Assertions.assertFalse(accumulator.isPromoted());
+    }
+
+    @Test
+    public void runningTotalOutOfLongRangeTest() {
+        DecimalAccumulator accumulator = new DecimalAccumulator()
+                .add(Long.MAX_VALUE, 2).add(Long.MAX_VALUE, 2).add(new MutableDecimal("-0.01"));
+        Assertions.assertThrows(ArithmeticException.class, () -> accumulator.get(new MutableDecimal(0, 0)));
+        accumulator.add(-Long.MAX_VALUE, 2);
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE - 1, 2), accumulator.toBigDecimal());
+        Assertions.assertEquals(new MutableDecimal(Long.MAX_VALUE - 1, 2), accumulator.get(new MutableDecimal(0, 0)));
+        // trailing zeros of an aligned total are dropped
+        Assertions.assertEquals("20", new DecimalAccumulator().add(5, 20).add(20, 0).add(-5, 20).get(new MutableDecimal(0, 0)).toString());
+    }
+
+    @Test
+    public void promotionTest() {
+        DecimalAccumulator accumulator = new DecimalAccumulator().add(Long.MAX_VALUE, 0).add(1, 40);
+        Assertions.assertTrue(accumulator.isPromoted());
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.valueOf(1, 40));
+        Assertions.assertEquals(0, expected.compareTo(accumulator.toBigDecimal()));
+        BigDecimal huge = new BigDecimal("123456789012345678901234567890123456789012345");
+        accumulator.add(huge);
+        Assertions.assertEquals(0, expected.add(huge).compareTo(accumulator.toBigDecimal()));
+        accumulator.reset();
+        Assertions.assertEquals(BigDecimal.ZERO, accumulator.toBigDecimal());
+        Assertions.assertFalse(accumulator.isPromoted());
+    }
+
+    @Test
+    public void mergeTest() {
+        DecimalAccumulator first = new DecimalAccumulator().add(Long.MAX_VALUE, 1).add(3, 0);
+        DecimalAccumulator second = new DecimalAccumulator().add(Long.MAX_VALUE, 4).add(-7, 2);
+        BigDecimal expected = first.toBigDecimal().add(second.toBigDecimal());
+        Assertions.assertEquals(expected, first.merge(second).toBigDecimal());
+        Assertions.assertEquals(4, first.getCount());
+        DecimalAccumulator promoted = new DecimalAccumulator().add(Long.MAX_VALUE, 0).add(1, 40);
+        Assertions.assertEquals(0, expected.add(promoted.toBigDecimal()).compareTo(first.merge(promoted).toBigDecimal()));
+        Assertions.assertTrue(first.isPromoted());
+    }
+
+    @Test
+    public void parallelCollectorTest() {
+        Random random = new Random(18);
+        List<MutableDecimal> values = new ArrayList<>();
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int i = 0; i < 200_000; i++) {
+            MutableDecimal value = new MutableDecimal(random.nextLong() / 10, random.nextInt(6));
+            values.add(value);
+            expected = expected.add(value.toBigDecimal());
+        }
+        Assertions.assertEquals(0, expected.compareTo(values.parallelStream().collect(DecimalAccumulator.summing()).toBigDecimal()));
+        Assertions.assertEquals(0, expected.compareTo(values.stream().map(MutableDecimal::toBigDecimal)
+                .collect(DecimalAccumulator.summingBigDecimal()).toBigDecimal()));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.mutableDecimal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DecimalCodecTest {
+
+    @Test
+    public void valueRoundTripTest() throws Exception {
+        Random random = new Random(25);
+        ByteBuffer buffer = ByteBuffer.allocate(DecimalCodec.MAX_VALUE_LENGTH);
+        MutableDecimal value = new MutableDecimal(0, 0);
+        for (int i = 0; i < 100_000; i++) {
+            MutableDecimal expected = new MutableDecimal(random.nextLong() >> random.nextInt(64), random.nextInt(19));
+            buffer.clear();
+            DecimalCodec.write(expected, buffer);
+            Assertions.assertEquals(DecimalCodec.encodedLength(expected.getUnscaledValue(), expected.getScale()), buffer.position());
+            buffer.flip();
+            Assertions.assertEquals(expected, DecimalCodec.read(buffer, value));
+            Assertions.assertEquals(expected.getScale(), value.getScale());
+            Assertions.assertFalse(buffer.hasRemaining());
+        }
+        for (long unscaledValue : new long[]{0, 1, -1, 63, -64, 64, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DecimalCodec.write(unscaledValue, 7, new DataOutputStream(bytes));
+            Assertions.assertEquals(DecimalCodec.encodedLength(unscaledValue, 7), bytes.size());
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            Assertions.assertEquals(new MutableDecimal(unscaledValue, 7), DecimalCodec.read(input, value));
+        }
+    }
+
+    @Test
+    public void encodedLengthTest() {
+        // small values of either sign take one byte plus the scale byte
+        Assertions.assertEquals(2, DecimalCodec.encodedLength(0, 0));
+        Assertions.assertEquals(2, DecimalCodec.encodedLength(-64, 2));
+        Assertions.assertEquals(3, DecimalCodec.encodedLength(64, 2));
+        Assertions.assertEquals(5, DecimalCodec.encodedLength(1_234_567, 2));
+        Assertions.assertEquals(DecimalCodec.MAX_VALUE_LENGTH, DecimalCodec.encodedLength(Long.MIN_VALUE, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DecimalCodec.encodedLength(1, 256));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DecimalCodec.write(1, -1, ByteBuffer.allocate(16)));
+    }
+
+    @Test
+    public void blockRoundTripTest() throws Exception {
+        Random random = new Random(25);
+        int length = 10_000;
+        long[] unscaledValues = new long[length];
+        int[] sharedScales = new int[length];
+        int[] runScales = new int[length];
+        Arrays.fill(sharedScales, 2);
+        for (int i = 0; i < length; i++) {
+            unscaledValues[i] = random.nextLong() >> random.nextInt(64);
+            runScales[i] = i / 1_000 % 3;
+        }
+        for (int[] scales : new int[][]{sharedScales, runScales}) {
+            int encodedLength = DecimalCodec.encodedBlockLength(unscaledValues, scales, 0, length);
+            ByteBuffer buffer = DecimalCodec.writeBlock(unscaledValues, scales, 0, length, ByteBuffer.allocate(encodedLength));
+            Assertions.assertFalse(buffer.hasRemaining());
+            buffer.flip();
+            Assertions.assertEquals(length, DecimalCodec.blockSize(buffer));
+            long[] decodedValues = new long[length + 1];
+            int[] decodedScales = new int[length + 1];
+            Assertions.assertEquals(length, DecimalCodec.readBlock(buffer, decodedValues, decodedScales, 1));
+            Assertions.assertArrayEquals(unscaledValues, Arrays.copyOfRange(decodedValues, 1, length + 1));
+            Assertions.assertArrayEquals(scales, Arrays.copyOfRange(decodedScales, 1, length + 1));
+
+            MutableDecimal[] targets = new MutableDecimal[length];
+            for (int i = 0; i < length; i++) targets[i] = new MutableDecimal(0, 0);
+            buffer.rewind();
+            Assertions.assertEquals(length, DecimalCodec.readBlock(buffer, targets, 0));
+            Assertions.assertFalse(buffer.hasRemaining());
+            for (int i = 0; i < length; i++) Assertions.assertEquals(new MutableDecimal(unscaledValues[i], scales[i]), targets[i]);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DecimalCodec.writeBlock(unscaledValues, scales, 0, length, new DataOutputStream(bytes));
+            Assertions.assertArrayEquals(buffer.array(), bytes.toByteArray());
+            Arrays.fill(decodedValues, 0);
+            DecimalCodec.readBlock(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), decodedValues, decodedScales, 0);
+            Assertions.assertArrayEquals(unscaledValues, Arrays.copyOf(decodedValues, length));
+        }
+        // a shared scale is a single byte, 10 runs a run count and a scale byte and a 2 byte length each
+        Assertions.assertEquals(DecimalCodec.encodedBlockLength(unscaledValues, sharedScales, 0, length) - 1 + 1 + 10 * 3,
+                DecimalCodec.encodedBlockLength(unscaledValues, runScales, 0, length));
+    }
+
+    @Test
+    public void emptyBlockTest() {
+        ByteBuffer buffer = DecimalCodec.writeBlock(new long[0], new int[0], 0, 0, ByteBuffer.allocate(8)).flip();
+        Assertions.assertEquals(3, buffer.remaining());
+        Assertions.assertEquals(0, DecimalCodec.readBlock(buffer, new long[0], new int[0], 0));
+    }
+
+    @Test
+    public void malformedBlockTest() {
+        long[] unscaledValues = {1, 2, 3};
+        int[] scales = {0, 1, 1};
+        ByteBuffer buffer = DecimalCodec.writeBlock(unscaledValues, scales, 0, 3, ByteBuffer.allocate(32)).flip();
+        // too small a target
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> DecimalCodec.readBlock(buffer.duplicate(), new long[2], new int[2], 0));
+        // runs not adding up to the block size
+        ByteBuffer shortRuns = copy(buffer);
+        shortRuns.put(0, (byte) 4);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DecimalCodec.readBlock(shortRuns, new long[4], new int[4], 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DecimalCodec.readBlock(shortRuns.rewind(), new MutableDecimal[4], 0));
+        ByteBuffer unknownEncoding = copy(buffer);
+        unknownEncoding.put(1, (byte) 9);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DecimalCodec.readBlock(unknownEncoding, new long[3], new int[3], 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DecimalCodec.read(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0}), new MutableDecimal(0, 0)));
+        Assertions.assertThrows(BufferUnderflowException.class, () -> DecimalCodec.read(ByteBuffer.wrap(new byte[]{-1}), new MutableDecimal(0, 0)));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> DecimalCodec.writeBlock(unscaledValues, scales, 1, 3, ByteBuffer.allocate(32)));
+    }
+
+    @Test
+    public void allocationTest() {
+        int length = 1_000;
+        long[] unscaledValues = new long[length];
+        int[] scales = new int[length];
+        for (int i = 0; i < length; i++) {
+            unscaledValues[i] = i * 1_000_003L;
+            scales[i] = i / 100;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DecimalCodec.encodedBlockLength(unscaledValues, scales, 0, length));
+        MutableDecimal[] targets = new MutableDecimal[length];
+        for (int i = 0; i < length; i++) targets[i] = new MutableDecimal(0, 0);
+        AllocationAssertions.assertAllocationFree(2_000, i -> roundTrip(unscaledValues, scales, buffer, targets));
+        Assertions.assertEquals(new MutableDecimal(999 * 1_000_003L, 9), targets[999]);
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        return ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.limit()));
+    }
+
+    private static void roundTrip(long[] unscaledValues, int[] scales, ByteBuffer buffer, MutableDecimal[] targets) {
+        buffer.clear();
+        DecimalCodec.writeBlock(unscaledValues, scales, 0, unscaledValues.length, buffer);
+        buffer.flip();
+        DecimalCodec.readBlock(buffer, targets, 0);
+        buffer.rewind();
+        DecimalCodec.readBlock(buffer, unscaledValues, scales, 0);
+    }
+}
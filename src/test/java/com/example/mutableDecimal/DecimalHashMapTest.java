@@ -0,0 +1,78 @@
+package com.example.mutableDecimal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class DecimalHashMapTest {
+
+    @Test
+    public void equalValueSameKeyTest() {
+        DecimalHashMap<String> map = new DecimalHashMap<>();
+        Assertions.assertNull(map.put(5, 1, "0.5"));
+        Assertions.assertEquals("0.5", map.put(5000, 4, "0.5000"));
+        Assertions.assertEquals("0.5000", map.get(new MutableDecimal("0.500000")));
+        Assertions.assertEquals(1, map.size());
+        Assertions.assertTrue(map.containsKey(50, 2));
+        Assertions.assertFalse(map.containsKey(5, 2));
+        Assertions.assertEquals("0.5000", map.remove(5, 1));
+        Assertions.assertTrue(map.isEmpty());
+
+        DecimalHashSet set = new DecimalHashSet();
+        Assertions.assertTrue(set.add(new MutableDecimal("100.00")));
+        Assertions.assertFalse(set.add(100, 0));
+        Assertions.assertFalse(set.add(10000, 2));
+        Assertions.assertTrue(set.contains(1000, 1));
+        Assertions.assertEquals(1, set.size());
+        // negative scales are the same keys as their plain form
+        Assertions.assertFalse(set.add(1, -2));
+        Assertions.assertTrue(set.contains(new MutableDecimal(10, -1)));
+        Assertions.assertEquals(1, set.size());
+        Assertions.assertNull(map.put(7, -19, "7E+19"));
+        Assertions.assertEquals("7E+19", map.put(70, -18, "70E+18"));
+        Assertions.assertEquals(1, map.size());
+    }
+
+    // random operations checked against java.util.HashMap keyed by stripped BigDecimal
+    @Test
+    public void randomOperationTest() {
+        Random random = new Random(42);
+        DecimalHashMap<Integer> map = new DecimalHashMap<>(4);
+        Map<BigDecimal, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long unscaledValue = random.nextInt(2_000) - 1_000;
+            int scale = random.nextInt(3);
+            if (random.nextBoolean()) unscaledValue *= 10;
+            BigDecimal key = BigDecimal.valueOf(unscaledValue, scale).stripTrailingZeros();
+            switch (random.nextInt(4)) {
+                case 0, 1 -> Assertions.assertEquals(expected.put(key, i), map.put(unscaledValue, scale, i));
+                case 2 -> Assertions.assertEquals(expected.remove(key), map.remove(unscaledValue, scale));
+                default -> Assertions.assertEquals(expected.get(key), map.get(unscaledValue, scale));
+            }
+            Assertions.assertEquals(expected.size(), map.size());
+        }
+        int[] count = {0};
+        map.forEach((unscaledValue, scale, value) -> {
+            Assertions.assertEquals(expected.get(BigDecimal.valueOf(unscaledValue, scale).stripTrailingZeros()), value);
+            count[0]++;
+        });
+        Assertions.assertEquals(expected.size(), count[0]);
+    }
+
+    @Test
+    public void computeIfAbsentTest() {
+        DecimalHashMap<long[]> countByAmount = new DecimalHashMap<>();
+        long[][] amounts = {{1050, 2}, {105, 1}, {2000, 3}, {2, 0}, {7, 0}};
+        for (long[] amount : amounts) {
+            countByAmount.computeIfAbsent(amount[0], (int) amount[1], () -> new long[1])[0]++;
+        }
+        Assertions.assertEquals(3, countByAmount.size());
+        Assertions.assertEquals(2, countByAmount.get(new MutableDecimal("10.5"))[0]);
+        Assertions.assertEquals(2, countByAmount.get(2, 0)[0]);
+        Assertions.assertEquals(1, countByAmount.get(7, 0)[0]);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.mutableDecimal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class DecimalVectorTest {
+
+    private static final int LENGTH = 10_000;
+
+    @Test
+    public void kernelsMatchMutableDecimalTest() {
+        Random random = new Random(15);
+        DecimalVector x = new DecimalVector(LENGTH);
+        DecimalVector y = new DecimalVector(LENGTH);
+        for (int i = 0; i < LENGTH; i++) {
+            x.set(i, random.nextInt(2_000_000) - 1_000_000, random.nextInt(5));
+            y.set(i, random.nextInt(2_000_000) - 1_000_000 | 1, random.nextInt(5));
+        }
+        DecimalVector sum = x.add(y, new DecimalVector(LENGTH));
+        DecimalVector product = x.multiply(y, new DecimalVector(LENGTH));
+        DecimalVector quotient = x.divide(y, 2, new DecimalVector(LENGTH));
+        DecimalVector negation = x.negate(new DecimalVector(LENGTH));
+        DecimalVector fused = x.multiplyDivide(x, y, 2, new DecimalVector(LENGTH));
+        DecimalVector evenQuotient = x.divide(y, 3, RoundingMode.HALF_EVEN, new DecimalVector(LENGTH));
+        DecimalVector rounded = x.round(1, RoundingMode.FLOOR, new DecimalVector(LENGTH));
+        MutableDecimal a = new MutableDecimal(0, 0);
+        MutableDecimal b = new MutableDecimal(0, 0);
+        MutableDecimal expected = new MutableDecimal(0, 0);
+        MutableDecimal actual = new MutableDecimal(0, 0);
+        for (int i = 0; i < LENGTH; i++) {
+            x.get(i, a);
+            y.get(i, b);
+            assertSame(a.add(b, expected), sum.get(i, actual));
+            assertSame(a.multiply(b, expected), product.get(i, actual));
+            assertSame(a.divide(b, 2, expected), quotient.get(i, actual));
+            assertSame(a.negate(expected), negation.get(i, actual));
+            assertSame(a.multiplyDivide(a, b, 2, expected), fused.get(i, actual));
+            assertSame(a.divide(b, 3, RoundingMode.HALF_EVEN, expected), evenQuotient.get(i, actual));
+            assertSame(a.round(1, RoundingMode.FLOOR, expected), rounded.get(i, actual));
+        }
+    }
+
+    @Test
+    public void inPlaceTest() {
+        DecimalVector x = new DecimalVector(3).fill(15, 1);
+        x.add(x, x).multiply(x, x);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("9", x.get(i, new MutableDecimal(0, 0)).toString());
+        }
+    }
+
+    @Test
+    public void setNormalizesTest() {
+        DecimalVector x = new DecimalVector(2);
+        x.set(0, 1500, 3).set(1, new MutableDecimal("2.50"));
+        Assertions.assertEquals(15, x.getUnscaledValue(0));
+        Assertions.assertEquals(1, x.getScale(0));
+        Assertions.assertEquals(25, x.getUnscaledValue(1));
+        Assertions.assertEquals(1, x.getScale(1));
+    }
+
+    @Test
+    public void sliceSharesMemoryTest() {
+        DecimalVector x = new DecimalVector(10).fill(1, 0);
+        DecimalVector slice = x.slice(4, 3);
+        slice.fill(7, 1);
+        Assertions.assertEquals(3, slice.length());
+        Assertions.assertEquals(1, x.getUnscaledValue(3));
+        Assertions.assertEquals(7, x.getUnscaledValue(4));
+        Assertions.assertEquals(7, x.getUnscaledValue(6));
+        Assertions.assertEquals(1, x.getUnscaledValue(7));
+        Assertions.assertEquals("9.1", x.sum(new MutableDecimal(0, 0)).toString());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> x.slice(8, 3));
+    }
+
+    @Test
+    public void copyToTest() {
+        DecimalVector x = new DecimalVector(4).set(2, 123, 2);
+        DecimalVector copy = x.copyTo(new DecimalVector(4));
+        Assertions.assertEquals(123, copy.getUnscaledValue(2));
+        Assertions.assertEquals(2, copy.getScale(2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> x.copyTo(new DecimalVector(5)));
+    }
+
+    @Test
+    public void overflowTest() {
+        DecimalVector x = new DecimalVector(2).fill(Long.MAX_VALUE, 0);
+        Assertions.assertThrows(ArithmeticException.class, () -> x.add(x, new DecimalVector(2)));
+        Assertions.assertThrows(ArithmeticException.class, () -> x.multiply(x, new DecimalVector(2)));
+        Assertions.assertThrows(ArithmeticException.class, () -> x.sum(new MutableDecimal(0, 0)));
+        DecimalVector zero = new DecimalVector(2);
+        Assertions.assertThrows(ArithmeticException.class, () -> x.divide(zero, 2, new DecimalVector(2)));
+        Assertions.assertThrows(ArithmeticException.class, () -> new DecimalVector(1).fill(Long.MIN_VALUE, 0).negate(new DecimalVector(1)));
+    }
+
+    private static void assertSame(MutableDecimal expected, MutableDecimal actual) {
+        Assertions.assertEquals(expected.getUnscaledValue(), actual.getUnscaledValue());
+        Assertions.assertEquals(expected.getScale(), actual.getScale());
+    }
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.stream.Stream;
@@ -222,6 +224,87 @@ public class MutableDecimalTest {
         this.parallelDivideWithBigDecimal2dp("1001", "2.365");
     }
 
+    @Test
+    public void multiplyDivideTest() {
+        Random random = new Random(20);
+        for (int i = 0; i < 100_000; i++) {
+            MutableDecimal x = new MutableDecimal(random.nextLong() >> random.nextInt(64), random.nextInt(10));
+            MutableDecimal y = new MutableDecimal(random.nextLong() >> random.nextInt(64), random.nextInt(10));
+            MutableDecimal divisor = new MutableDecimal(random.nextLong() >> random.nextInt(64), random.nextInt(10));
+            if (divisor.getUnscaledValue() == 0) continue;
+            int scale = random.nextInt(7);
+            // same rounding as divide
+            BigDecimal expected = x.toBigDecimal().multiply(y.toBigDecimal()).divide(divisor.toBigDecimal(), scale, RoundingMode.HALF_UP);
+            if (expected.unscaledValue().bitLength() >= Long.SIZE) {
+                Assertions.assertThrows(ArithmeticException.class, () -> x.multiplyDivide(y, divisor, scale));
+            } else {
+                Assertions.assertEquals(0, expected.compareTo(x.multiplyDivide(y, divisor, scale).toBigDecimal()), x + "*" + y + "/" + divisor);
+            }
+        }
+        MutableDecimal amount = new MutableDecimal("9000000000000000.01");
+        Assertions.assertThrows(ArithmeticException.class, () -> amount.multiply(new MutableDecimal("365")));
+        Assertions.assertEquals(new MutableDecimal("9125000000000000.01"), amount.multiplyDivide(new MutableDecimal("365"), new MutableDecimal("360")));
+        Assertions.assertThrows(ArithmeticException.class, () -> amount.multiplyDivide(amount, new MutableDecimal(0, 0)));
+    }
+
+    @Test
+    public void roundingModesTest() {
+        Random random = new Random(21);
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY) continue;
+            for (int i = 0; i < 50_000; i++) {
+                MutableDecimal x = new MutableDecimal(random.nextLong() >> random.nextInt(64), random.nextInt(10));
+                // small divisors and quotients of 5, 25, ... give half way cases
+                MutableDecimal divisor = i % 2 == 0
+                        ? new MutableDecimal((random.nextBoolean() ? 2 : -8) * (1 + random.nextInt(4)), random.nextInt(3))
+                        : new MutableDecimal(random.nextLong() >> random.nextInt(64), random.nextInt(10));
+                if (divisor.getUnscaledValue() == 0) continue;
+                int scale = random.nextInt(9);
+                BigDecimal expected = x.toBigDecimal().divide(divisor.toBigDecimal(), scale, mode);
+                if (expected.unscaledValue().bitLength() >= Long.SIZE) {
+                    Assertions.assertThrows(ArithmeticException.class, () -> x.divide(divisor, scale, mode));
+                } else {
+                    Assertions.assertEquals(0, expected.compareTo(x.divide(divisor, scale, mode).toBigDecimal()), x + "/" + divisor + " " + mode);
+                }
+                BigDecimal value = x.toBigDecimal();
+                BigDecimal rounded = value.scale() <= scale ? value : value.setScale(scale, mode);
+                Assertions.assertEquals(0, rounded.compareTo(x.round(scale, mode).toBigDecimal()), x + " " + mode);
+            }
+        }
+        MutableDecimal third = new MutableDecimal(1, 0).divide(new MutableDecimal(3, 0), 4, RoundingMode.DOWN);
+        Assertions.assertEquals(new MutableDecimal("0.3333"), third);
+        Assertions.assertEquals(new MutableDecimal("0.3333"), third.round(6, RoundingMode.UNNECESSARY));
+        Assertions.assertThrows(ArithmeticException.class, () -> third.round(2, RoundingMode.UNNECESSARY));
+        Assertions.assertThrows(ArithmeticException.class, () -> new MutableDecimal(1, 0).divide(new MutableDecimal(3, 0), 4, RoundingMode.UNNECESSARY));
+        // half way cases round like BigDecimal, away from zero by default
+        Assertions.assertEquals(new MutableDecimal("0.13"), new MutableDecimal("0.25").divide(new MutableDecimal(2, 0)));
+        Assertions.assertEquals(new MutableDecimal("-0.13"), new MutableDecimal("-0.25").divide(new MutableDecimal(2, 0)));
+        Assertions.assertEquals(new MutableDecimal("0.12"), new MutableDecimal("0.25").divide(new MutableDecimal(2, 0), 2, RoundingMode.HALF_EVEN));
+        // BigDecimal has no long range, Long.MIN_VALUE / -1 overflows
+        for (RoundingMode roundingMode : List.of(RoundingMode.HALF_UP, RoundingMode.DOWN))
+            Assertions.assertThrows(ArithmeticException.class, () -> MutableDecimal.divideUnscaled(Long.MIN_VALUE, 0, -1, 0, 0, roundingMode));
+        Assertions.assertThrows(ArithmeticException.class, () -> new MutableDecimal(Long.MIN_VALUE, 0).divide(new MutableDecimal(-1, 0), 0));
+    }
+
+    @Test
+    public void minValueDivisorTest() {
+        // the magnitude of a Long.MIN_VALUE divisor does not fit a long, half way included
+        long[] dividends = {512, -512, 1, -1, 1L << 62, -(1L << 62), (1L << 62) + 1, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+        BigDecimal divisor = BigDecimal.valueOf(Long.MIN_VALUE, 10);
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY) continue;
+            for (long dividend : dividends) {
+                for (int dividendScale : new int[]{9, 10}) {
+                    BigDecimal x = BigDecimal.valueOf(dividend, dividendScale);
+                    Assertions.assertEquals(x.divide(divisor, 0, mode).longValueExact(),
+                            MutableDecimal.divideUnscaled(dividend, dividendScale, Long.MIN_VALUE, 10, 0, mode), dividend + " " + mode);
+                    Assertions.assertEquals(x.multiply(BigDecimal.valueOf(3)).divide(divisor, 0, mode).longValueExact(),
+                            MutableDecimal.multiplyDivideUnscaled(dividend, dividendScale, 3, 0, Long.MIN_VALUE, 10, 0, mode), dividend + " * 3 " + mode);
+                }
+            }
+        }
+    }
+
     @Test
     public void division4dp() {
         this.parallelDivideWithBigDecimal("1", "2", 4);
@@ -282,6 +365,153 @@ public class MutableDecimalTest {
         System.out.println();
     }
 
+    @Test
+    public void inPlaceArithmeticTest() {
+        MutableDecimal accumulator = new MutableDecimal("100.5");
+        Assertions.assertEquals("100.5", accumulator.toString());
+        Assertions.assertEquals(new BigDecimal("100.5"), accumulator.toBigDecimal());
+
+        Assertions.assertSame(accumulator, accumulator.addInPlace(new MutableDecimal("2.25")));
+        Assertions.assertEquals("102.75", accumulator.toString());
+        Assertions.assertEquals(new BigDecimal("102.75"), accumulator.toBigDecimal());
+
+        accumulator.subtractInPlace(new MutableDecimal("0.75"));
+        Assertions.assertEquals("102", accumulator.toString());
+
+        accumulator.multiplyInPlace(new MutableDecimal("1.5"));
+        Assertions.assertEquals("153", accumulator.toString());
+
+        accumulator.divideInPlace(new MutableDecimal("7"));
+        Assertions.assertEquals(new BigDecimal("153").divide(new BigDecimal("7"), 2, RoundingMode.HALF_UP), accumulator.toBigDecimal());
+
+        accumulator.divideInPlace(new MutableDecimal("3"), 4);
+        Assertions.assertEquals(new BigDecimal("21.86").divide(new BigDecimal("3"), 4, RoundingMode.HALF_UP), accumulator.toBigDecimal());
+
+        // the target may be either operand
+        MutableDecimal first = new MutableDecimal("1.1");
+        MutableDecimal second = new MutableDecimal("2.2");
+        first.add(second, second);
+        Assertions.assertEquals("1.1", first.toString());
+        Assertions.assertEquals("3.3", second.toString());
+        MutableDecimal target = new MutableDecimal(0, 0);
+        Assertions.assertSame(target, first.multiply(second, target));
+        Assertions.assertEquals("3.63", target.toString());
+
+        MutableDecimal sum = new MutableDecimal(0, 0);
+        MutableDecimal value = new MutableDecimal(0, 0);
+        for (String s : List.of("1.11", "2.2", "100.1111", "2.2999")) {
+            value.reset(s);
+            sum.addInPlace(value);
+        }
+        Assertions.assertEquals(new BigDecimal("105.721"), sum.toBigDecimal());
+    }
+
+    @Test
+    public void crossScaleCompareTest() {
+        long[][] values = {
+                {0, 0}, {0, 5}, {1, 0}, {-1, 0}, {5, 1}, {50, 2}, {-5, 1}, {123456789012345678L, 0},
+                {123456789012345678L, 18}, {-123456789012345678L, 9}, {Long.MAX_VALUE, 0}, {Long.MAX_VALUE, 30},
+                {Long.MIN_VALUE + 1, 3}, {1, 40}, {-1, 40}, {999999999999999999L, 17}, {10, 0}, {1, 19},
+                {1, -1}, {-5, -1}, {-50, 0}, {1, -18}, {1000000000000000000L, 0}, {1, -19}, {10, -18}, {0, -3}
+        };
+        for (long[] x : values) {
+            for (long[] y : values) {
+                BigDecimal bx = BigDecimal.valueOf(x[0], (int) x[1]);
+                BigDecimal by = BigDecimal.valueOf(y[0], (int) y[1]);
+                MutableDecimal mx = new MutableDecimal(x[0], (int) x[1]);
+                MutableDecimal my = new MutableDecimal(y[0], (int) y[1]);
+                Assertions.assertEquals(bx.compareTo(by), MutableDecimal.compare(x[0], (int) x[1], y[0], (int) y[1]), bx + " vs " + by);
+                Assertions.assertEquals(bx.compareTo(by), mx.compareTo(my), bx + " vs " + by);
+                Assertions.assertEquals(bx.compareTo(by) == 0, mx.equals(my), bx + " vs " + by);
+                if (mx.equals(my)) {
+                    Assertions.assertEquals(mx.hashCode(), my.hashCode());
+                    Assertions.assertEquals(MutableDecimal.hash(x[0], (int) x[1]), MutableDecimal.hash(y[0], (int) y[1]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parseTest() {
+        List<String> inputList = List.of("0", "-0", "007", "1.23", "-1.23", "+1.23", " 42.50 ", "0.05", "-0.0001", ".5", "5.",
+                "123456789012345678", "-999999999999999999", "0.000000000000000000000001", "1000000000.000000000000", "12.3400");
+        MutableDecimal fromChars = new MutableDecimal(0, 0);
+        MutableDecimal fromBytes = new MutableDecimal(0, 0);
+        MutableDecimal fromBuffer = new MutableDecimal(0, 0);
+        for (String input : inputList) {
+            BigDecimal expected = new BigDecimal(input.trim());
+            Assertions.assertEquals(0, expected.compareTo(new MutableDecimal(input).toBigDecimal()), input);
+            Assertions.assertEquals(expected.stripTrailingZeros().scale() < 0 ? 0 : expected.stripTrailingZeros().scale(), new MutableDecimal(input).getScale(), input);
+
+            String line = "id," + input + ",end";
+            fromChars.reset(line, 3, 3 + input.length());
+            Assertions.assertEquals(0, expected.compareTo(fromChars.toBigDecimal()), input);
+
+            byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+            fromBytes.reset(bytes, 3, input.length());
+            Assertions.assertEquals(fromChars, fromBytes, input);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+            fromBuffer.reset(buffer, 3, input.length());
+            Assertions.assertEquals(fromChars, fromBuffer, input);
+            Assertions.assertEquals(bytes.length, buffer.position());
+        }
+    }
+
+    @Test
+    public void invalidParseTest() {
+        for (String input : List.of("", " ", "-", ".", "1.2.3", "1-2", "12a", "--1", "1 2", "1234567890123456789", "0.1234567890123456789")) {
+            NumberFormatException e = Assertions.assertThrows(NumberFormatException.class, () -> new MutableDecimal(input), input);
+            System.out.printf("%s -> %s%n", input, e.getMessage());
+        }
+        Assertions.assertThrows(NumberFormatException.class, () -> new MutableDecimal((String) null));
+        Assertions.assertTrue(Assertions.assertThrows(NumberFormatException.class, () -> new MutableDecimal("1.2.3")).getMessage().contains("multiple decimal point at index: 3"));
+        Assertions.assertTrue(Assertions.assertThrows(NumberFormatException.class, () -> new MutableDecimal("12a")).getMessage().contains("invalid character at index: 2"));
+        Assertions.assertTrue(Assertions.assertThrows(NumberFormatException.class, () -> new MutableDecimal("1234567890123456789")).getMessage().startsWith("Max length"));
+    }
+
+    @Test
+    public void parseAllocationTest() {
+        byte[] bytes = "1234.5678,-0.25,99999999.99".getBytes(StandardCharsets.US_ASCII);
+        MutableDecimal value = new MutableDecimal(0, 0);
+        AllocationAssertions.assertAllocationFree(100_000, i -> {
+            value.reset(bytes, 0, 9);
+            value.reset(bytes, 10, 5);
+            value.reset(bytes, 16, 11);
+        });
+        Assertions.assertEquals(new MutableDecimal(9999999999L, 2), value);
+    }
+
+    @Test
+    public void formatTest() {
+        long[] unscaledValues = {0, 1, -1, 5, -5, 123, -123, 1000, 987654321, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+        int[] scales = {0, 1, 2, 3, 5, 19, 20, -2};
+        StringBuilder sb = new StringBuilder();
+        byte[] bytes = new byte[64];
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        for (long unscaledValue : unscaledValues) {
+            for (int scale : scales) {
+                String expected = BigDecimal.valueOf(unscaledValue, scale).toPlainString();
+                Assertions.assertEquals(expected, MutableDecimal.toString(unscaledValue, scale));
+                Assertions.assertEquals(expected.length(), MutableDecimal.asciiLength(unscaledValue, scale), expected);
+
+                sb.setLength(0);
+                Assertions.assertEquals(expected, MutableDecimal.appendTo(unscaledValue, scale, sb.append('[')).append(']').substring(1, expected.length() + 1));
+
+                int end = MutableDecimal.writeAscii(unscaledValue, scale, bytes, 3);
+                Assertions.assertEquals(expected, new String(bytes, 3, end - 3, StandardCharsets.US_ASCII));
+
+                end = MutableDecimal.writeAscii(unscaledValue, scale, buffer, 7);
+                Assertions.assertEquals(expected, new String(buffer.array(), 7, end - 7, StandardCharsets.US_ASCII));
+                Assertions.assertEquals(0, buffer.position());
+            }
+        }
+        Assertions.assertEquals("0.05", new MutableDecimal("0.05").toString());
+        Assertions.assertEquals("-0.5", new MutableDecimal("-0.50").toString());
+        Assertions.assertEquals("-12.5", new MutableDecimal(-125, 1).appendTo(new StringBuilder()).toString());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> new MutableDecimal("12.5").writeAscii(new byte[4], 1));
+    }
+
     @Test
     public void f2() {
 
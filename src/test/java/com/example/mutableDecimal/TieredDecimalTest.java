@@ -0,0 +1,143 @@
+package com.example.mutableDecimal;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+public class TieredDecimalTest {
+
+    @Test
+    public void exactOperationsTest() {
+        Random random = new Random(19);
+        TieredDecimal result = new TieredDecimal();
+        for (int i = 0; i < 20_000; i++) {
+            BigDecimal x = randomValue(random);
+            BigDecimal y = randomValue(random);
+            TieredDecimal a = new TieredDecimal(x);
+            TieredDecimal b = new TieredDecimal(y);
+            assertValue(x.add(y), a.add(b, result));
+            assertValue(x.subtract(y), a.subtract(b, result));
+            assertValue(x.multiply(y), a.multiply(b, result));
+            assertValue(x.negate(), a.negate(result));
+            if (y.signum() != 0)
+                assertValue(x.divide(y, 2, RoundingMode.HALF_UP), a.divide(b, 2, result));
+        }
+    }
+
+    @Test
+    public void tierTest() {
+        TieredDecimal max = new TieredDecimal(Long.MAX_VALUE, 0);
+        Assertions.assertEquals(TieredDecimal.Tier.LONG, max.getTier());
+        TieredDecimal sum = max.add(max, new TieredDecimal());
+        Assertions.assertEquals(TieredDecimal.Tier.INT128, sum.getTier());
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2)), sum.toBigDecimal());
+        TieredDecimal product = sum.multiply(sum, new TieredDecimal());
+        Assertions.assertEquals(TieredDecimal.Tier.BIG_DECIMAL, product.getTier());
+        // back to the narrowest tier as soon as the value fits
+        sum.subtract(max, sum);
+        Assertions.assertEquals(TieredDecimal.Tier.LONG, sum.getTier());
+        Assertions.assertEquals(max, sum);
+        product.divide(new TieredDecimal(sum.toBigDecimal().pow(2)), 0, product);
+        Assertions.assertEquals(TieredDecimal.Tier.LONG, product.getTier());
+        Assertions.assertEquals("4", product.toString());
+        Assertions.assertEquals(new MutableDecimal("4"), product.get(new MutableDecimal(0, 0)));
+        Assertions.assertThrows(ArithmeticException.class, () -> max.add(max, new TieredDecimal()).get(new MutableDecimal(0, 0)));
+    }
+
+    @Test
+    public void normalizationTest() {
+        // a 128 bit value with trailing zeros moves down once they are stripped
+        TieredDecimal wide = new TieredDecimal("100000000000000000000.00000");
+        Assertions.assertEquals(TieredDecimal.Tier.INT128, wide.getTier());
+        Assertions.assertEquals("100000000000000000000", wide.toString());
+        TieredDecimal scaled = new TieredDecimal(Long.MAX_VALUE, 0).multiply(new TieredDecimal(100, 2), new TieredDecimal());
+        Assertions.assertEquals(TieredDecimal.Tier.LONG, scaled.getTier());
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE), scaled.toBigDecimal());
+        TieredDecimal a = new TieredDecimal("-123456789012345678901234.5");
+        TieredDecimal b = new TieredDecimal("-123456789012345678901234.50").add(new TieredDecimal(0, 3), new TieredDecimal());
+        Assertions.assertEquals(a, b);
+        Assertions.assertEquals(a.hashCode(), b.hashCode());
+        Assertions.assertEquals(new TieredDecimal(15, 1).hashCode(), new TieredDecimal(150, 2).hashCode());
+        // negative scales hash like their plain form, on every tier
+        for (String[] pair : new String[][]{{"1E+3", "1000"}, {"1E+19", "10000000000000000000"}, {"-1E+40", "-10000000000000000000000000000000000000000.00"}}) {
+            TieredDecimal exponent = new TieredDecimal(pair[0]);
+            TieredDecimal plain = new TieredDecimal(pair[1]);
+            Assertions.assertEquals(plain, exponent);
+            Assertions.assertEquals(plain.getTier(), exponent.getTier());
+            Assertions.assertEquals(plain.hashCode(), exponent.hashCode(), pair[0]);
+        }
+        Assertions.assertEquals(new TieredDecimal("1E+19").hashCode(), new TieredDecimal(1, -19).hashCode());
+        Assertions.assertEquals(new TieredDecimal(1000, 0).hashCode(), new TieredDecimal(1, -3).hashCode());
+    }
+
+    @Test
+    public void divisionByZeroTest() {
+        Assertions.assertThrows(ArithmeticException.class, () -> new TieredDecimal(1, 0).divide(new TieredDecimal(), 2, new TieredDecimal()));
+        Assertions.assertThrows(ArithmeticException.class, () -> new TieredDecimal("1e30").divide(new TieredDecimal(0, 5), 2, new TieredDecimal()));
+    }
+
+    @Test
+    public void statsTest() {
+        TieredDecimal.Stats before = TieredDecimal.stats();
+        TieredDecimal max = new TieredDecimal(Long.MAX_VALUE, 0);
+        TieredDecimal result = new TieredDecimal();
+        new TieredDecimal(1, 0).add(new TieredDecimal(2, 1), result);
+        max.add(max, result);
+        result.multiply(result, result);
+        TieredDecimal.Stats after = TieredDecimal.stats();
+        Assertions.assertEquals(1, after.longOperations() - before.longOperations());
+        Assertions.assertEquals(1, after.int128Operations() - before.int128Operations());
+        Assertions.assertEquals(1, after.bigDecimalOperations() - before.bigDecimalOperations());
+        Assertions.assertEquals(3, after.operations() - before.operations());
+    }
+
+    @Test
+    public void fallbackEventTest() throws Exception {
+        Path file = Files.createTempFile("decimal", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.mutableDecimal.DecimalFallback");
+            recording.start();
+            TieredDecimal wide = new TieredDecimal(Long.MAX_VALUE, 0).multiply(new TieredDecimal(Long.MAX_VALUE, 0), new TieredDecimal());
+            TieredDecimal big = wide.multiply(wide, new TieredDecimal());
+            // already on BigDecimal, not a fallback
+            big.add(big, new TieredDecimal());
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("com.example.mutableDecimal.DecimalFallback")).toList();
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals("multiply", events.get(0).getString("operation"));
+            Assertions.assertEquals("INT128", events.get(0).getString("fromTier"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // values on all three tiers, mostly small ones
+    private static BigDecimal randomValue(Random random) {
+        int scale = random.nextInt(12);
+        return switch (random.nextInt(4)) {
+            case 0 -> BigDecimal.valueOf(random.nextInt(), scale);
+            case 1 -> BigDecimal.valueOf(random.nextLong(), scale);
+            case 2 -> new BigDecimal(new BigInteger(100, random), scale).negate();
+            default -> new BigDecimal(new BigInteger(200, random), scale);
+        };
+    }
+
+    private static void assertValue(BigDecimal expected, TieredDecimal actual) {
+        Assertions.assertEquals(0, expected.compareTo(actual.toBigDecimal()), () -> expected + " " + actual);
+        TieredDecimal canonical = new TieredDecimal(expected);
+        Assertions.assertEquals(canonical.getTier(), actual.getTier(), () -> expected + " " + actual);
+        Assertions.assertEquals(canonical.hashCode(), actual.hashCode(), () -> expected + " " + actual);
+    }
+}